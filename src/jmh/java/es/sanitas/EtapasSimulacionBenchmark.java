@@ -0,0 +1,139 @@
+package es.sanitas;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosContratacionPlan;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario;
+import es.sanitas.soporte.DatosAltaAsegurados;
+import es.sanitas.soporte.ExcepcionContratacion;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.TarificacionPoliza;
+import wscontratacion.contratacion.fuentes.parametros.DatosAsegurado;
+
+/**
+ * Etapas de la simulación por separado, con los mismos tamaños de familia y
+ * frecuencias que {@link RealizarSimulacionBenchmark}:
+ * <ul>
+ * <li>construcción de los beneficiarios de la petición
+ * ({@code obtenerBeneficiarios});</li>
+ * <li>llamada al servicio y tratamiento de la respuesta de cada frecuencia
+ * ({@code simular}, antes {@code ejecutarSimulacion});</li>
+ * <li>cálculo y combinación de los resultados por frecuencia
+ * ({@code procesarFrecuencia} y {@code combinarFrecuencias}, antes
+ * {@code generarResultadosSimulacion});</li>
+ * <li>conversión de las edades a fecha de nacimiento
+ * ({@code cambiarFecha}).</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EtapasSimulacionBenchmark {
+
+	@Param({ "1", "5", "50", "500" })
+	public int beneficiarios;
+
+	@Param({ "true", "false" })
+	public boolean soloMensual;
+
+	private RealizarSimulacion realizarSimulacion;
+	private DatosAltaAsegurados oDatosAlta;
+	private Map<String, Object> hmValores;
+	private DatosContratacionPlan oDatosPlan;
+	private Set<FrecuenciaEnum> frecuencias;
+	private PlantillaSimulacion plantilla;
+	private PlazoSimulacion plazo;
+	private List<TarificacionPoliza> tarificaciones;
+	private Map<FrecuenciaEnum, EstadoFrecuencia> estados;
+	private List<String> fechasNacimiento;
+
+	@Setup
+	public void setUp() throws ExcepcionContratacion {
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub());
+
+		oDatosAlta = DatosSimulacionFixture.crearAlta(beneficiarios - 1, null, DatosSimulacionFixture.PRODUCTOS_PLAN);
+		hmValores = DatosSimulacionFixture.crearValores(soloMensual);
+		oDatosPlan = DatosSimulacionFixture.crearDatosPlan();
+		frecuencias = soloMensual ? EnumSet.of(FrecuenciaEnum.MENSUAL) : EnumSet.allOf(FrecuenciaEnum.class);
+
+		plantilla = new PlantillaSimulacion(
+				realizarSimulacion.generarSimulacion(hmValores, oDatosAlta, null, null, FrecuenciaEnum.MENSUAL));
+		plazo = PlazoSimulacion.desdeAhora(1, TimeUnit.DAYS);
+		tarificaciones = ejecutarSimulacion();
+
+		estados = new EnumMap<FrecuenciaEnum, EstadoFrecuencia>(FrecuenciaEnum.class);
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			estados.put(frecuencia,
+					frecuencias.contains(frecuencia) ? EstadoFrecuencia.COMPLETA : EstadoFrecuencia.NO_SOLICITADA);
+		}
+
+		fechasNacimiento = new ArrayList<String>();
+		fechasNacimiento.add(oDatosAlta.getTitular().getDatosPersonales().getFNacimiento());
+		for (final Object asegurado : oDatosAlta.getAsegurados()) {
+			fechasNacimiento.add(((DatosAsegurado) asegurado).getDatosPersonales().getFNacimiento());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		realizarSimulacion.destroy();
+	}
+
+	@Benchmark
+	public Beneficiario[] obtenerBeneficiarios() {
+		return realizarSimulacion.obtenerBeneficiarios(oDatosAlta, null, null, oDatosPlan);
+	}
+
+	@Benchmark
+	public List<TarificacionPoliza> ejecutarSimulacion() throws ExcepcionContratacion {
+		final CoordinadorPromocion coordinador = new CoordinadorPromocion(plazo::vencido);
+		final List<TarificacionPoliza> resultado = new ArrayList<TarificacionPoliza>(frecuencias.size());
+		for (final FrecuenciaEnum frecuencia : frecuencias) {
+			resultado.add(realizarSimulacion.simular(plantilla, coordinador, frecuencia, plazo));
+		}
+		return resultado;
+	}
+
+	@Benchmark
+	public ResultadoSimulacion generarResultadosSimulacion() {
+		final ContextoSimulacion contexto = new ContextoSimulacion(hmValores, oDatosAlta);
+		final List<ResultadoFrecuencia> resultados = new ArrayList<ResultadoFrecuencia>(frecuencias.size());
+		int i = 0;
+		for (final FrecuenciaEnum frecuencia : frecuencias) {
+			resultados.add(realizarSimulacion.procesarFrecuencia(contexto, frecuencia, tarificaciones.get(i++)));
+		}
+		return new ResultadoSimulacion(contexto, false, realizarSimulacion.combinarFrecuencias(contexto, resultados),
+				estados, null);
+	}
+
+	@Benchmark
+	public void cambiarFecha(final Blackhole blackhole) {
+		for (final String fechaNacimiento : fechasNacimiento) {
+			blackhole.consume(realizarSimulacion.cambiarFecha(fechaNacimiento, oDatosAlta.getFAlta()));
+		}
+	}
+}
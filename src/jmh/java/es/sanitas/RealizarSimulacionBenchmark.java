@@ -0,0 +1,72 @@
+package es.sanitas;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.sanitas.soporte.DatosAltaAsegurados;
+
+/**
+ * Simulación completa de una póliza contra el {@link SimulacionWSStub} en el
+ * mismo proceso, de modo que se mide sólo el coste propio de la simulación: la
+ * petición, el pool, el tratamiento de las tarificaciones y el Map de
+ * resultados.
+ *
+ * Para familias de 1 a 500 beneficiarios, tarificando sólo la frecuencia
+ * mensual o todas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RealizarSimulacionBenchmark {
+
+	@Param({ "1", "5", "50", "500" })
+	public int beneficiarios;
+
+	@Param({ "true", "false" })
+	public boolean soloMensual;
+
+	private RealizarSimulacion realizarSimulacion;
+	private DatosAltaAsegurados oDatosAlta;
+	private Map<String, Object> hmValores;
+
+	@Setup
+	public void setUp() {
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub());
+
+		// El titular cuenta como beneficiario
+		oDatosAlta = DatosSimulacionFixture.crearAlta(beneficiarios - 1, null, DatosSimulacionFixture.PRODUCTOS_PLAN);
+		hmValores = DatosSimulacionFixture.crearValores(soloMensual);
+	}
+
+	@TearDown
+	public void tearDown() {
+		realizarSimulacion.destroy();
+	}
+
+	@Benchmark
+	public Map<String, Object> realizarSimulacion() throws Exception {
+		return realizarSimulacion.realizarSimulacion(oDatosAlta, null, null, false, hmValores);
+	}
+
+	@Benchmark
+	public Map<String, Object> realizarSimulacionDesglosada() throws Exception {
+		return realizarSimulacion.realizarSimulacion(oDatosAlta, null, null, true, hmValores);
+	}
+}
@@ -0,0 +1,129 @@
+package es.sanitas.carga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import es.sanitas.DatosSimulacionFixture;
+import es.sanitas.soporte.BeneficiarioPolizas;
+import es.sanitas.soporte.DatosAltaAsegurados;
+import es.sanitas.soporte.ProductoPolizas;
+import wscontratacion.contratacion.fuentes.parametros.DatosPersona;
+
+/**
+ * Tipos de simulación que componen la carga.
+ */
+public enum EscenarioCarga {
+
+	/** Alta de una familia, tarificando todas las frecuencias de pago. */
+	ALTA_TODAS_FRECUENCIAS {
+		@Override
+		Peticion crear(final SplittableRandom aleatorio) {
+			final DatosAltaAsegurados oDatosAlta = DatosSimulacionFixture.crearAlta(aleatorio.nextInt(5),
+					codigoPromocional(aleatorio), productos(aleatorio));
+			return new Peticion(this, oDatosAlta, null, DatosSimulacionFixture.crearValores(false));
+		}
+	},
+
+	/** Inclusión de beneficiarios en una póliza existente, en su frecuencia. */
+	INCLUSION_BENEFICIARIOS {
+		@Override
+		Peticion crear(final SplittableRandom aleatorio) {
+			final DatosAltaAsegurados oDatosAlta = DatosSimulacionFixture.crearAlta(0, null, productos(aleatorio));
+			oDatosAlta.setIdPoliza(Long.valueOf(100000 + aleatorio.nextInt(900000)));
+			oDatosAlta.setGenFrecuenciaPago(1 + aleatorio.nextInt(4));
+
+			final List<BeneficiarioPolizas> lBeneficiarios = new ArrayList<BeneficiarioPolizas>();
+			final int incluidos = 1 + aleatorio.nextInt(3);
+			for (int i = 0; i < incluidos; i++) {
+				final DatosPersona persona = new DatosPersona();
+				persona.setNombre("Incluido " + i);
+				persona.setFNacimiento(String.valueOf(aleatorio.nextInt(80)));
+				persona.setGenSexo(1 + aleatorio.nextInt(2));
+
+				final BeneficiarioPolizas beneficiario = new BeneficiarioPolizas();
+				beneficiario.setDatosPersonales(persona);
+				lBeneficiarios.add(beneficiario);
+			}
+
+			return new Peticion(this, oDatosAlta, lBeneficiarios, DatosSimulacionFixture.crearValores(false));
+		}
+	},
+
+	/** Alta de un colectivo de empresa con muchos asegurados. */
+	COLECTIVO_GRANDE {
+		@Override
+		Peticion crear(final SplittableRandom aleatorio) {
+			final DatosAltaAsegurados oDatosAlta = DatosSimulacionFixture.crearAlta(100 + aleatorio.nextInt(400),
+					null, productos(aleatorio));
+			oDatosAlta.setIdPoliza(Long.valueOf(100000 + aleatorio.nextInt(900000)));
+			oDatosAlta.setIdColectivo(1 + aleatorio.nextInt(1000));
+			oDatosAlta.setIdEmpresa(Long.valueOf(1 + aleatorio.nextInt(1000)));
+			oDatosAlta.setIdDepartamento(aleatorio.nextInt(10));
+			return new Peticion(this, oDatosAlta, null, DatosSimulacionFixture.crearValores(true));
+		}
+	};
+
+	abstract Peticion crear(SplittableRandom aleatorio);
+
+	/**
+	 * El producto obligatorio y, según el caso, alguno más del plan.
+	 */
+	private static int[] productos(final SplittableRandom aleatorio) {
+		final int[] productosPlan = DatosSimulacionFixture.PRODUCTOS_PLAN;
+		final int[] productos = new int[1 + aleatorio.nextInt(productosPlan.length)];
+		for (int i = 0; i < productos.length; i++) {
+			productos[i] = productosPlan[i];
+		}
+		return productos;
+	}
+
+	/**
+	 * Una de cada cuatro altas lleva código promocional.
+	 */
+	private static String codigoPromocional(final SplittableRandom aleatorio) {
+		return aleatorio.nextInt(4) == 0 ? String.valueOf(1 + aleatorio.nextInt(50)) : null;
+	}
+
+	/**
+	 * Datos de entrada de una simulación, construidos antes de la medida.
+	 */
+	static final class Peticion {
+
+		private final EscenarioCarga escenario;
+		private final DatosAltaAsegurados oDatosAlta;
+		private final List<ProductoPolizas> lProductos;
+		private final List<BeneficiarioPolizas> lBeneficiarios;
+		private final Map<String, Object> hmValores;
+
+		Peticion(final EscenarioCarga escenario, final DatosAltaAsegurados oDatosAlta,
+				final List<BeneficiarioPolizas> lBeneficiarios, final Map<String, Object> hmValores) {
+			this.escenario = escenario;
+			this.oDatosAlta = oDatosAlta;
+			this.lProductos = null;
+			this.lBeneficiarios = lBeneficiarios;
+			this.hmValores = hmValores;
+		}
+
+		EscenarioCarga getEscenario() {
+			return escenario;
+		}
+
+		DatosAltaAsegurados getDatosAlta() {
+			return oDatosAlta;
+		}
+
+		List<ProductoPolizas> getProductos() {
+			return lProductos;
+		}
+
+		List<BeneficiarioPolizas> getBeneficiarios() {
+			return lBeneficiarios;
+		}
+
+		Map<String, Object> getValores() {
+			return hmValores;
+		}
+	}
+}
@@ -0,0 +1,366 @@
+package es.sanitas.carga;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import es.sanitas.RealizarSimulacion;
+import es.sanitas.SimulacionWSSintetico;
+import es.sanitas.SimulacionWSSintetico.DistribucionLatencia;
+
+/**
+ * Generador de carga para {@link RealizarSimulacion} contra el
+ * {@link SimulacionWSSintetico}, para saber cuántas simulaciones por segundo
+ * sostiene una JVM y con qué latencias.
+ *
+ * Dos modos:
+ * <ul>
+ * <li><b>cerrado</b>: un número fijo de clientes, cada uno lanza una
+ * simulación en cuanto termina la anterior. Mide la capacidad máxima, pero
+ * cuando el sistema se atasca los clientes dejan de lanzar peticiones y la
+ * latencia medida se queda corta (omisión coordinada). Con
+ * {@code --intervaloEsperadoMs} se corrige suponiendo que cada cliente debería
+ * lanzar una petición cada ese tiempo;</li>
+ * <li><b>abierto</b>: las peticiones llegan a una tasa fija, independiente de
+ * lo que tarden las anteriores, y la latencia se mide desde el momento en que
+ * la petición debía lanzarse, de modo que la espera en cola cuenta.</li>
+ * </ul>
+ *
+ * La latencia y el tiempo de servicio se registran en histogramas HDR y cada
+ * ejecución deja un informe con la configuración, el rendimiento por segundo y
+ * los percentiles, junto con la distribución completa en formato hgrm:
+ *
+ * <pre>
+ * mvn -P jmh test-compile exec:exec@carga -Dcarga.args="--modo abierto --tasa 200 --segundos 60"
+ * </pre>
+ */
+public class GeneradorCarga {
+
+	/** Variantes de petición de cada escenario que se preparan al empezar. */
+	private static final int VARIANTES = 64;
+
+	private static final String MODO_CERRADO = "cerrado";
+	private static final String MODO_ABIERTO = "abierto";
+
+	private String modo = MODO_CERRADO;
+	private int concurrencia = 16;
+	private double tasa = 100.0;
+	private long intervaloEsperadoMs;
+	private long segundos = 60L;
+	private long segundosCalentamiento = 10L;
+	private long semilla = 42L;
+	private int[] mezcla = { 70, 20, 10 };
+	private long latenciaMs = 20L;
+	private double sigmaLatencia = 0.5;
+	private double probabilidadError = 0.001;
+	private double probabilidadTimeout;
+	private File directorioInforme = new File("target/carga");
+
+	private final Recorder latencia = new Recorder(3);
+	private final Recorder servicio = new Recorder(3);
+	private final AtomicLong completadas = new AtomicLong();
+	private final Map<String, AtomicLong> errores = new ConcurrentHashMap<String, AtomicLong>();
+
+	private List<EscenarioCarga.Peticion> peticiones;
+	private volatile boolean midiendo;
+
+	public static void main(final String[] args) throws Exception {
+		final GeneradorCarga generador = new GeneradorCarga();
+		generador.configurar(args);
+		generador.ejecutar();
+	}
+
+	private void configurar(final String[] args) {
+		final Map<String, String> opciones = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("Opción no válida: " + args[i]);
+			}
+			opciones.put(args[i].substring(2), args[i + 1]);
+		}
+
+		for (final Map.Entry<String, String> opcion : opciones.entrySet()) {
+			final String valor = opcion.getValue();
+			switch (opcion.getKey()) {
+			case "modo":
+				modo = valor;
+				break;
+			case "concurrencia":
+				concurrencia = Integer.parseInt(valor);
+				break;
+			case "tasa":
+				tasa = Double.parseDouble(valor);
+				break;
+			case "intervaloEsperadoMs":
+				intervaloEsperadoMs = Long.parseLong(valor);
+				break;
+			case "segundos":
+				segundos = Long.parseLong(valor);
+				break;
+			case "calentamiento":
+				segundosCalentamiento = Long.parseLong(valor);
+				break;
+			case "semilla":
+				semilla = Long.parseLong(valor);
+				break;
+			case "mezcla":
+				final String[] pesos = valor.split(",");
+				mezcla = new int[EscenarioCarga.values().length];
+				for (int i = 0; i < pesos.length && i < mezcla.length; i++) {
+					mezcla[i] = Integer.parseInt(pesos[i].trim());
+				}
+				break;
+			case "latenciaMs":
+				latenciaMs = Long.parseLong(valor);
+				break;
+			case "sigma":
+				sigmaLatencia = Double.parseDouble(valor);
+				break;
+			case "errores":
+				probabilidadError = Double.parseDouble(valor);
+				break;
+			case "timeouts":
+				probabilidadTimeout = Double.parseDouble(valor);
+				break;
+			case "informe":
+				directorioInforme = new File(valor);
+				break;
+			default:
+				throw new IllegalArgumentException("Opción desconocida: --" + opcion.getKey());
+			}
+		}
+
+		if (!MODO_CERRADO.equals(modo) && !MODO_ABIERTO.equals(modo)) {
+			throw new IllegalArgumentException("Modo desconocido: " + modo);
+		}
+	}
+
+	private void ejecutar() throws Exception {
+		final SimulacionWSSintetico backend = new SimulacionWSSintetico(semilla);
+		backend.setLatencia(DistribucionLatencia.logNormal(latenciaMs, TimeUnit.MILLISECONDS, sigmaLatencia));
+		backend.setProbabilidadError(probabilidadError);
+		backend.setProbabilidadTimeout(probabilidadTimeout);
+
+		final RealizarSimulacion realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(backend);
+
+		peticiones = prepararPeticiones();
+
+		final List<String> lineasSegundo = new ArrayList<String>();
+		final Histogram totalLatencia = new Histogram(3);
+		final long inicio;
+		final long fin;
+
+		try {
+			final ExecutorService clientes = Executors.newFixedThreadPool(concurrencia);
+			final long finCalentamiento = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundosCalentamiento);
+			fin = finCalentamiento + TimeUnit.SECONDS.toNanos(segundos);
+
+			final Thread generador = new Thread(() -> generar(realizarSimulacion, clientes, fin), "generador-carga");
+			generador.start();
+
+			esperarHasta(finCalentamiento);
+			latencia.getIntervalHistogram();
+			servicio.getIntervalHistogram();
+			completadas.set(0);
+			errores.clear();
+			midiendo = true;
+			inicio = System.nanoTime();
+
+			// Rendimiento y latencia de cada segundo de la medida
+			for (long segundo = 1; segundo <= segundos; segundo++) {
+				esperarHasta(inicio + TimeUnit.SECONDS.toNanos(segundo));
+				final Histogram intervalo = latencia.getIntervalHistogram();
+				totalLatencia.add(intervalo);
+				lineasSegundo.add(String.format("%6d %10d %12.3f %12.3f %12.3f", segundo, intervalo.getTotalCount(),
+						ms(intervalo.getValueAtPercentile(50)), ms(intervalo.getValueAtPercentile(99)),
+						ms(intervalo.getMaxValue())));
+			}
+
+			generador.join();
+			clientes.shutdown();
+			clientes.awaitTermination(1, TimeUnit.MINUTES);
+			midiendo = false;
+			totalLatencia.add(latencia.getIntervalHistogram());
+		} finally {
+			realizarSimulacion.destroy();
+		}
+
+		escribirInforme(totalLatencia, servicio.getIntervalHistogram(), lineasSegundo,
+				(System.nanoTime() - inicio) / 1e9, backend);
+	}
+
+	private List<EscenarioCarga.Peticion> prepararPeticiones() {
+		final SplittableRandom aleatorio = new SplittableRandom(semilla);
+		final List<EscenarioCarga.Peticion> preparadas = new ArrayList<EscenarioCarga.Peticion>();
+		final EscenarioCarga[] escenarios = EscenarioCarga.values();
+
+		// Cada escenario aparece en la lista en proporción a su peso
+		for (int i = 0; i < escenarios.length; i++) {
+			final List<EscenarioCarga.Peticion> variantes = new ArrayList<EscenarioCarga.Peticion>();
+			for (int v = 0; v < Math.min(VARIANTES, Math.max(1, mezcla[i])); v++) {
+				variantes.add(escenarios[i].crear(aleatorio));
+			}
+			for (int p = 0; p < mezcla[i]; p++) {
+				preparadas.add(variantes.get(p % variantes.size()));
+			}
+		}
+		return preparadas;
+	}
+
+	private void generar(final RealizarSimulacion realizarSimulacion, final ExecutorService clientes, final long fin) {
+		if (MODO_CERRADO.equals(modo)) {
+			for (int c = 0; c < concurrencia; c++) {
+				final SplittableRandom aleatorio = new SplittableRandom(semilla + c);
+				clientes.execute(() -> {
+					while (System.nanoTime() < fin) {
+						final long lanzada = System.nanoTime();
+						simular(realizarSimulacion, siguiente(aleatorio), lanzada, lanzada);
+					}
+				});
+			}
+			return;
+		}
+
+		// Bucle abierto: cada petición tiene su momento previsto y la latencia se
+		// mide desde él aunque los clientes estén ocupados y tenga que esperar
+		final SplittableRandom aleatorio = new SplittableRandom(semilla);
+		final long intervalo = (long) (TimeUnit.SECONDS.toNanos(1) / tasa);
+		final long inicio = System.nanoTime();
+		for (long i = 0;; i++) {
+			final long prevista = inicio + i * intervalo;
+			if (prevista >= fin) {
+				return;
+			}
+			esperarHasta(prevista);
+			final EscenarioCarga.Peticion peticion = siguiente(aleatorio);
+			clientes.execute(() -> simular(realizarSimulacion, peticion, prevista, System.nanoTime()));
+		}
+	}
+
+	private EscenarioCarga.Peticion siguiente(final SplittableRandom aleatorio) {
+		return peticiones.get(aleatorio.nextInt(peticiones.size()));
+	}
+
+	private void simular(final RealizarSimulacion realizarSimulacion, final EscenarioCarga.Peticion peticion,
+			final long prevista, final long lanzada) {
+		try {
+			realizarSimulacion.realizarSimulacion(peticion.getDatosAlta(), peticion.getProductos(),
+					peticion.getBeneficiarios(), false, peticion.getValores());
+		} catch (final Exception e) {
+			if (midiendo) {
+				// Los mensajes de error de la simulación son fijos: sirven para agruparlos
+				final AtomicLong contador = errores.computeIfAbsent(e.getClass().getSimpleName() + ": " + e.getMessage(),
+						clase -> new AtomicLong());
+				contador.incrementAndGet();
+			}
+		}
+
+		final long terminada = System.nanoTime();
+		if (intervaloEsperadoMs > 0 && MODO_CERRADO.equals(modo)) {
+			latencia.recordValueWithExpectedInterval(terminada - prevista,
+					TimeUnit.MILLISECONDS.toNanos(intervaloEsperadoMs));
+		} else {
+			latencia.recordValue(terminada - prevista);
+		}
+		servicio.recordValue(terminada - lanzada);
+		if (midiendo) {
+			completadas.incrementAndGet();
+		}
+	}
+
+	private void escribirInforme(final Histogram totalLatencia, final Histogram totalServicio,
+			final List<String> lineasSegundo, final double segundosMedidos, final SimulacionWSSintetico backend)
+			throws IOException {
+		if (!directorioInforme.isDirectory() && !directorioInforme.mkdirs()) {
+			throw new IOException("No se puede crear el directorio " + directorioInforme);
+		}
+
+		final String nombre = "carga-" + modo + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		final File informe = new File(directorioInforme, nombre + ".txt");
+
+		try (PrintStream salida = new PrintStream(new FileOutputStream(informe), true, "UTF-8")) {
+			salida.println("Modo: " + modo);
+			if (MODO_ABIERTO.equals(modo)) {
+				salida.println("Tasa objetivo: " + tasa + " simulaciones/s");
+			}
+			salida.println("Concurrencia: " + concurrencia);
+			if (intervaloEsperadoMs > 0 && MODO_CERRADO.equals(modo)) {
+				salida.println("Corrección de omisión coordinada: intervalo esperado " + intervaloEsperadoMs + " ms");
+			}
+			salida.println("Duración: " + segundos + " s (calentamiento " + segundosCalentamiento + " s)");
+			salida.println("Semilla: " + semilla);
+			salida.println("Mezcla: " + mezclaComoTexto());
+			salida.println("Servicio sintético: mediana " + latenciaMs + " ms, sigma " + sigmaLatencia + ", errores "
+					+ probabilidadError + ", timeouts " + probabilidadTimeout + ", llamadas " + backend.getLlamadas());
+			salida.println();
+
+			salida.println(String.format("Completadas: %d (%.1f simulaciones/s)", completadas.get(),
+					completadas.get() / segundosMedidos));
+			salida.println("Errores: " + errores);
+			salida.println();
+
+			imprimirPercentiles(salida, "Latencia (desde el lanzamiento previsto)", totalLatencia);
+			imprimirPercentiles(salida, "Tiempo de servicio", totalServicio);
+
+			salida.println(String.format("%6s %10s %12s %12s %12s", "seg", "simul.", "p50 ms", "p99 ms", "max ms"));
+			for (final String linea : lineasSegundo) {
+				salida.println(linea);
+			}
+		}
+
+		try (PrintStream salida = new PrintStream(new FileOutputStream(new File(directorioInforme, nombre + ".hgrm")),
+				true, "UTF-8")) {
+			totalLatencia.outputPercentileDistribution(salida, 1e6);
+		}
+
+		imprimirPercentiles(System.out, "Latencia", totalLatencia);
+		System.out.println("Informe: " + informe.getPath());
+	}
+
+	private String mezclaComoTexto() {
+		final StringBuilder texto = new StringBuilder();
+		final EscenarioCarga[] escenarios = EscenarioCarga.values();
+		for (int i = 0; i < escenarios.length; i++) {
+			texto.append(i > 0 ? ", " : "").append(escenarios[i]).append('=').append(mezcla[i]);
+		}
+		return texto.toString();
+	}
+
+	private static void imprimirPercentiles(final PrintStream salida, final String titulo, final Histogram histograma) {
+		salida.println(titulo + " (ms):");
+		salida.println(String.format("  p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  max %.3f  (n=%d)",
+				ms(histograma.getValueAtPercentile(50)), ms(histograma.getValueAtPercentile(90)),
+				ms(histograma.getValueAtPercentile(99)), ms(histograma.getValueAtPercentile(99.9)),
+				ms(histograma.getMaxValue()), histograma.getTotalCount()));
+		salida.println();
+	}
+
+	private static double ms(final long nanos) {
+		return nanos / 1e6;
+	}
+
+	private static void esperarHasta(final long momento) {
+		long restante;
+		while ((restante = momento - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(restante);
+		}
+	}
+}
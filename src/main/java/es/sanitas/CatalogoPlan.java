@@ -0,0 +1,82 @@
+package es.sanitas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosCobertura;
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosContratacionPlan;
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosPlanProducto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Cobertura;
+
+/**
+ * Índice inmutable de un {@link DatosContratacionPlan}: acceso directo por
+ * identificador de producto a sus datos en el plan y a sus coberturas
+ * obligatorias ya convertidas al formato del servicio de simulación.
+ *
+ * Los arrays de coberturas se comparten entre todas las simulaciones que usan
+ * el plan y no deben modificarse.
+ */
+final class CatalogoPlan {
+
+	private static final Cobertura[] SIN_COBERTURAS = new Cobertura[0];
+
+	private final Long idPlan;
+	private final Map<Long, DatosPlanProducto> productos;
+	private final Map<Long, Cobertura[]> coberturasObligatorias;
+
+	CatalogoPlan(final DatosContratacionPlan oDatosPlan) {
+		final Map<Long, DatosPlanProducto> productosPlan = new HashMap<Long, DatosPlanProducto>();
+		final Map<Long, Cobertura[]> coberturasPlan = new HashMap<Long, Cobertura[]>();
+
+		for (final DatosPlanProducto producto : oDatosPlan.getProductos()) {
+			// Como en la búsqueda secuencial, si un producto se repite prevalece el primero
+			if (producto.getIdProducto() != null && !productosPlan.containsKey(producto.getIdProducto())) {
+				productosPlan.put(producto.getIdProducto(), producto);
+				coberturasPlan.put(producto.getIdProducto(), compilarCoberturas(producto));
+			}
+		}
+
+		idPlan = oDatosPlan.getIdPlan();
+		productos = Collections.unmodifiableMap(productosPlan);
+		coberturasObligatorias = Collections.unmodifiableMap(coberturasPlan);
+	}
+
+	Long getIdPlan() {
+		return idPlan;
+	}
+
+	/**
+	 * @return los datos del producto en el plan, o null si el plan no lo incluye
+	 */
+	DatosPlanProducto getProducto(final long idProducto) {
+		return productos.get(idProducto);
+	}
+
+	/**
+	 * @return las coberturas obligatorias con capital mínimo del producto; vacío
+	 *         si el plan no incluye el producto
+	 */
+	Cobertura[] getCoberturasObligatorias(final long idProducto) {
+		final Cobertura[] coberturas = coberturasObligatorias.get(idProducto);
+		return coberturas != null ? coberturas : SIN_COBERTURAS;
+	}
+
+	private static Cobertura[] compilarCoberturas(final DatosPlanProducto producto) {
+		final List<Cobertura> coberturas = new ArrayList<Cobertura>();
+
+		for (final DatosCobertura oDatosCobertura : producto.getCoberturas()) {
+			if (Boolean.TRUE.equals(oDatosCobertura.isSwObligatorio()) && oDatosCobertura.getCapitalMinimo() != null
+					&& oDatosCobertura.getCapitalMinimo() > 0) {
+				final Cobertura cobertura = new Cobertura();
+				cobertura.setCapital(Double.valueOf(oDatosCobertura.getCapitalMinimo()));
+				cobertura.setIdCobertura(oDatosCobertura.getIdCobertura().intValue());
+				coberturas.add(cobertura);
+			}
+		}
+
+		return coberturas.isEmpty() ? SIN_COBERTURAS : coberturas.toArray(new Cobertura[coberturas.size()]);
+	}
+}
@@ -0,0 +1,69 @@
+package es.sanitas;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosContratacionPlan;
+
+/**
+ * Caché de planes compilados ({@link CatalogoPlan}) compartida entre
+ * simulaciones y clave por identificador de plan.
+ *
+ * Un plan se compila la primera vez que se simula y se reutiliza hasta que se
+ * invalida expresamente. Cuando cambie la configuración de un plan debe
+ * llamarse a {@link #invalidar(Long)} o a {@link #invalidarTodos()}; hasta
+ * entonces se siguen usando los productos y coberturas compilados.
+ */
+public class CatalogoPlanes {
+
+	private final ConcurrentMap<Long, CatalogoPlan> catalogos = new ConcurrentHashMap<Long, CatalogoPlan>();
+
+	/**
+	 * @return el plan compilado. Los planes sin identificador no se guardan en la
+	 *         caché y se compilan en cada llamada
+	 */
+	CatalogoPlan obtener(final DatosContratacionPlan oDatosPlan) {
+		final Long idPlan = oDatosPlan.getIdPlan();
+
+		if (idPlan == null) {
+			return new CatalogoPlan(oDatosPlan);
+		}
+
+		CatalogoPlan catalogo = catalogos.get(idPlan);
+		if (catalogo == null) {
+			catalogo = new CatalogoPlan(oDatosPlan);
+			final CatalogoPlan existente = catalogos.putIfAbsent(idPlan, catalogo);
+			if (existente != null) {
+				catalogo = existente;
+			}
+		}
+
+		return catalogo;
+	}
+
+	/**
+	 * Descarta el plan compilado; la siguiente simulación lo vuelve a compilar.
+	 *
+	 * @param idPlan
+	 *            identificador del plan
+	 */
+	public void invalidar(final Long idPlan) {
+		if (idPlan != null) {
+			catalogos.remove(idPlan);
+		}
+	}
+
+	/**
+	 * Descarta todos los planes compilados.
+	 */
+	public void invalidarTodos() {
+		catalogos.clear();
+	}
+
+	/**
+	 * @return número de planes compilados en la caché
+	 */
+	public int getTamano() {
+		return catalogos.size();
+	}
+}
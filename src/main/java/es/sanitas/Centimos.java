@@ -0,0 +1,45 @@
+package es.sanitas;
+
+/**
+ * Importes en céntimos de euro representados como long.
+ *
+ * Las tarifas del servicio de simulación llegan en euros como double; se
+ * redondean a céntimos (la mitad hacia arriba) al recibirlas y todas las sumas
+ * se hacen en céntimos, de modo que los totales son exactos y cuadran con los
+ * recibos. Sólo se vuelve a euros al devolver el resultado.
+ */
+final class Centimos {
+
+	private static final double CENTIMOS_POR_EURO = 100.0;
+
+	/** Ulps que se suman antes de redondear para los importes en la mitad exacta. */
+	private static final int ULPS_CORRECCION = 4;
+
+	private Centimos() {
+	}
+
+	/**
+	 * Redondea al céntimo, la mitad lejos de cero, sin reservar memoria. Un
+	 * importe como 1.005 no es representable y su double queda unos ulp por
+	 * debajo de la mitad del céntimo ({@code 1.005 * 100} es
+	 * {@code 100.49999999999999}); se compensa sumando esos ulp antes de
+	 * redondear, una cantidad muy inferior a cualquier diferencia entre
+	 * importes con sentido.
+	 */
+	static long desdeEuros(final double euros) {
+		final double escalado = Math.abs(euros) * CENTIMOS_POR_EURO;
+		final long centimos = (long) Math.floor(escalado + 0.5 + ULPS_CORRECCION * Math.ulp(escalado));
+		return euros < 0 ? -centimos : centimos;
+	}
+
+	static double aEuros(final long centimos) {
+		return centimos / CENTIMOS_POR_EURO;
+	}
+
+	/**
+	 * @return el importe en euros con el mismo formato que {@code "" + double}
+	 */
+	static String formatear(final long centimos) {
+		return String.valueOf(aEuros(centimos));
+	}
+}
@@ -0,0 +1,153 @@
+package es.sanitas;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoContratacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promocion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+
+/**
+ * Caché negativa de códigos promocionales rechazados por el servicio de
+ * simulación, compartida entre simulaciones.
+ *
+ * Un código se recuerda por código, plan y fecha de efecto durante la vigencia
+ * configurada. Mientras se recuerda, las simulaciones con ese código piden
+ * directamente la tarificación sin él en lugar de hacer primero una llamada que
+ * se sabe que va a ser rechazada.
+ */
+public class CodigosPromocionalesRechazados {
+
+	/** Número máximo de códigos recordados; se descartan los más antiguos. */
+	private int tamanoMaximo = 1000;
+
+	/** Tiempo durante el que se recuerda un código rechazado. */
+	private long milisegundosVigencia = TimeUnit.MINUTES.toMillis(10);
+
+	private final Map<String, Long> rechazados = new LinkedHashMap<String, Long>();
+
+	private final AtomicLong llamadasEvitadas = new AtomicLong();
+
+	/**
+	 * @return true si el código promocional de la petición se ha rechazado
+	 *         recientemente para el mismo plan y fecha de efecto
+	 */
+	boolean estaRechazado(final Simulacion simulacion) {
+		final String clave = clave(simulacion);
+		if (clave == null) {
+			return false;
+		}
+
+		synchronized (rechazados) {
+			final Long caducidad = rechazados.get(clave);
+			if (caducidad == null) {
+				return false;
+			}
+			if (ahoraNanos() - caducidad >= 0) {
+				rechazados.remove(clave);
+				return false;
+			}
+		}
+
+		llamadasEvitadas.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Recuerda el código promocional de la petición como rechazado.
+	 */
+	void registrarRechazo(final Simulacion simulacion) {
+		final String clave = clave(simulacion);
+		if (clave == null) {
+			return;
+		}
+
+		final long caducidad = ahoraNanos() + TimeUnit.MILLISECONDS.toNanos(milisegundosVigencia);
+		synchronized (rechazados) {
+			// Se reinserta para que el orden siga siendo el de caducidad
+			rechazados.remove(clave);
+			rechazados.put(clave, caducidad);
+
+			final Iterator<Long> iterador = rechazados.values().iterator();
+			while (rechazados.size() > tamanoMaximo && iterador.hasNext()) {
+				iterador.next();
+				iterador.remove();
+			}
+		}
+	}
+
+	private static String clave(final Simulacion simulacion) {
+		final Promocion[] promociones = simulacion.getInfoPromociones() != null
+				? simulacion.getInfoPromociones().getPromociones()
+				: null;
+		if (promociones == null || promociones.length == 0 || promociones[0].getIdPromocion() == null) {
+			return null;
+		}
+
+		final InfoContratacion info = simulacion.getInfoContratacion();
+		return promociones[0].getIdPromocion() + '\u0000' + (info != null ? info.getIdPlan() : null) + '\u0000'
+				+ (info != null ? info.getFechaEfecto() : null);
+	}
+
+	long ahoraNanos() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Olvida todos los códigos rechazados.
+	 */
+	public void invalidarTodos() {
+		synchronized (rechazados) {
+			rechazados.clear();
+		}
+	}
+
+	/**
+	 * @return número de códigos recordados
+	 */
+	public int getTamano() {
+		synchronized (rechazados) {
+			return rechazados.size();
+		}
+	}
+
+	/**
+	 * @return simulaciones que han evitado enviar un código ya rechazado
+	 */
+	public long getLlamadasEvitadas() {
+		return llamadasEvitadas.get();
+	}
+
+	/**
+	 * @return the tamanoMaximo
+	 */
+	public int getTamanoMaximo() {
+		return tamanoMaximo;
+	}
+
+	/**
+	 * @param tamanoMaximo
+	 *            the tamanoMaximo to set
+	 */
+	public void setTamanoMaximo(final int tamanoMaximo) {
+		this.tamanoMaximo = tamanoMaximo;
+	}
+
+	/**
+	 * @return the milisegundosVigencia
+	 */
+	public long getMilisegundosVigencia() {
+		return milisegundosVigencia;
+	}
+
+	/**
+	 * @param milisegundosVigencia
+	 *            the milisegundosVigencia to set
+	 */
+	public void setMilisegundosVigencia(final long milisegundosVigencia) {
+		this.milisegundosVigencia = milisegundosVigencia;
+	}
+}
@@ -0,0 +1,204 @@
+package es.sanitas;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Configuración del pool de hilos en el que se ejecutan las simulaciones por
+ * frecuencia de {@link RealizarSimulacion}.
+ *
+ * La cola es acotada: cuando está llena las nuevas simulaciones se rechazan en
+ * lugar de acumularse, y el rechazo se traduce en una
+ * {@link es.sanitas.soporte.ExcepcionContratacion} inmediata.
+ *
+ * Opcionalmente cada simulación puede ejecutarse en su propio hilo virtual
+ * (Java 21 o superior). Como las simulaciones pasan casi todo su tiempo
+ * bloqueadas en la llamada al servicio, en ese modo no hay pool que limite las
+ * llamadas en curso y no se aplican ni los tamaños ni la cola.
+ */
+public class ConfiguracionPoolSimulacion {
+
+	private static final String PREFIJO_HILOS = "simulacion-poliza-";
+
+	/** Número de hilos que se mantienen siempre activos. */
+	private int tamanoNucleo = 4;
+
+	/** Número máximo de hilos cuando la cola está llena. */
+	private int tamanoMaximo = 4;
+
+	/** Número máximo de simulaciones a la espera de un hilo. */
+	private int capacidadCola = 64;
+
+	/** Segundos que un hilo por encima del núcleo puede estar ocioso. */
+	private long segundosInactividad = 60;
+
+	/** Segundos que se espera a las simulaciones en curso al cerrar el pool. */
+	private long segundosCierre = 30;
+
+	/** Ejecuta cada simulación en un hilo virtual en lugar de en el pool. */
+	private boolean hilosVirtuales;
+
+	/**
+	 * Crea un pool con la configuración actual.
+	 *
+	 * @return pool acotado con política de rechazo inmediato, o un ejecutor de un
+	 *         hilo virtual por tarea si se han activado los hilos virtuales
+	 * @throws IllegalStateException
+	 *             si se piden hilos virtuales y la JVM no los soporta
+	 */
+	public ExecutorService crearPool() {
+		if (hilosVirtuales) {
+			return crearPoolHilosVirtuales();
+		}
+
+		return new ThreadPoolExecutor(tamanoNucleo, Math.max(tamanoNucleo, tamanoMaximo), segundosInactividad,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(capacidadCola), crearFactoriaHilos(),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * @return true si la JVM en ejecución dispone de hilos virtuales
+	 */
+	public static boolean soportaHilosVirtuales() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (final NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * El proyecto compila para Java 8, por lo que la API de hilos virtuales se
+	 * invoca por reflexión: Thread.ofVirtual().name(prefijo, 1).factory() y
+	 * Executors.newThreadPerTaskExecutor(factoria).
+	 */
+	private ExecutorService crearPoolHilosVirtuales() {
+		if (!soportaHilosVirtuales()) {
+			throw new IllegalStateException("Los hilos virtuales requieren Java 21 o superior");
+		}
+
+		try {
+			final Object constructor = Thread.class.getMethod("ofVirtual").invoke(null);
+			final Class<?> claseConstructor = Class.forName("java.lang.Thread$Builder");
+			claseConstructor.getMethod("name", String.class, long.class).invoke(constructor, PREFIJO_HILOS, 1L);
+			final ThreadFactory factoria = (ThreadFactory) claseConstructor.getMethod("factory").invoke(constructor);
+
+			final Method crearEjecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return (ExecutorService) crearEjecutor.invoke(null, factoria);
+		} catch (final ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalStateException("No se ha podido crear el ejecutor de hilos virtuales", e);
+		} catch (final InvocationTargetException e) {
+			throw new IllegalStateException("No se ha podido crear el ejecutor de hilos virtuales", e.getCause());
+		}
+	}
+
+	private ThreadFactory crearFactoriaHilos() {
+		return new ThreadFactory() {
+			private final AtomicInteger contador = new AtomicInteger();
+
+			public Thread newThread(final Runnable r) {
+				final Thread hilo = new Thread(r, PREFIJO_HILOS + contador.incrementAndGet());
+				hilo.setDaemon(true);
+				return hilo;
+			}
+		};
+	}
+
+	/**
+	 * @return the tamanoNucleo
+	 */
+	public int getTamanoNucleo() {
+		return tamanoNucleo;
+	}
+
+	/**
+	 * @param tamanoNucleo
+	 *            the tamanoNucleo to set
+	 */
+	public void setTamanoNucleo(final int tamanoNucleo) {
+		this.tamanoNucleo = tamanoNucleo;
+	}
+
+	/**
+	 * @return the tamanoMaximo
+	 */
+	public int getTamanoMaximo() {
+		return tamanoMaximo;
+	}
+
+	/**
+	 * @param tamanoMaximo
+	 *            the tamanoMaximo to set
+	 */
+	public void setTamanoMaximo(final int tamanoMaximo) {
+		this.tamanoMaximo = tamanoMaximo;
+	}
+
+	/**
+	 * @return the capacidadCola
+	 */
+	public int getCapacidadCola() {
+		return capacidadCola;
+	}
+
+	/**
+	 * @param capacidadCola
+	 *            the capacidadCola to set
+	 */
+	public void setCapacidadCola(final int capacidadCola) {
+		this.capacidadCola = capacidadCola;
+	}
+
+	/**
+	 * @return the segundosInactividad
+	 */
+	public long getSegundosInactividad() {
+		return segundosInactividad;
+	}
+
+	/**
+	 * @param segundosInactividad
+	 *            the segundosInactividad to set
+	 */
+	public void setSegundosInactividad(final long segundosInactividad) {
+		this.segundosInactividad = segundosInactividad;
+	}
+
+	/**
+	 * @return the segundosCierre
+	 */
+	public long getSegundosCierre() {
+		return segundosCierre;
+	}
+
+	/**
+	 * @param segundosCierre
+	 *            the segundosCierre to set
+	 */
+	public void setSegundosCierre(final long segundosCierre) {
+		this.segundosCierre = segundosCierre;
+	}
+
+	/**
+	 * @return the hilosVirtuales
+	 */
+	public boolean isHilosVirtuales() {
+		return hilosVirtuales;
+	}
+
+	/**
+	 * @param hilosVirtuales
+	 *            the hilosVirtuales to set
+	 */
+	public void setHilosVirtuales(final boolean hilosVirtuales) {
+		this.hilosVirtuales = hilosVirtuales;
+	}
+}
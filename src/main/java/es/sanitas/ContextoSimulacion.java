@@ -0,0 +1,139 @@
+package es.sanitas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosContratacionPlan;
+import es.sanitas.bravo.ws.stubs.contratacionws.documentacion.Primas;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.PrimasPorProducto;
+import es.sanitas.soporte.PromocionAplicada;
+import es.sanitas.soporte.Recibo;
+import es.sanitas.soporte.StaticVarsContratacion;
+import es.sanitas.soporte.TipoPromocionEnum;
+import wscontratacion.contratacion.fuentes.parametros.DatosAlta;
+
+/**
+ * Estado de cálculo de una única invocación de
+ * {@link RealizarSimulacion#realizarSimulacion}.
+ *
+ * Cada llamada crea su propio contexto, de modo que un mismo bean puede atender
+ * simulaciones concurrentes sin compartir acumuladores entre ellas.
+ */
+final class ContextoSimulacion {
+
+	private final DatosContratacionPlan oDatosPlan;
+	private final List<String> lExcepciones;
+	private final ReglasPromocion reglasPromocion;
+
+	private final List<List<PrimasPorProducto>> primasDesglosadas = new ArrayList<List<PrimasPorProducto>>();
+	private final List<Primas> primas = new ArrayList<Primas>();
+
+	// Totales por frecuencia en céntimos, indexados por frecuencia.getValor() - 1
+	private final long[] descuentosTotales = new long[FrecuenciaEnum.values().length];
+	private final long[] pagoTotal = new long[FrecuenciaEnum.values().length];
+	private final long[] precioConPromocion = new long[FrecuenciaEnum.values().length];
+
+	private final List<List<PromocionAplicada>> promociones = new ArrayList<List<PromocionAplicada>>();
+	private boolean promocionDescuento;
+	private final List<List<Recibo>> recibos = new ArrayList<List<Recibo>>();
+
+	/** Se han pedido menos frecuencias de las habituales por saturación. */
+	private boolean reducida;
+
+	@SuppressWarnings("unchecked")
+	ContextoSimulacion(final Map<String, Object> hmValores, final DatosAlta oDatosAlta) {
+		oDatosPlan = (DatosContratacionPlan) hmValores.get(StaticVarsContratacion.DATOS_PLAN);
+		lExcepciones = (List<String>) hmValores.get("EXCEPCIONES");
+		reglasPromocion = ReglasPromocion.compilar(lExcepciones, oDatosAlta);
+	}
+
+	private ContextoSimulacion(final ContextoSimulacion origen) {
+		oDatosPlan = origen.oDatosPlan;
+		lExcepciones = origen.lExcepciones;
+		reglasPromocion = origen.reglasPromocion;
+		reducida = origen.reducida;
+	}
+
+	/**
+	 * @return contexto de la misma simulación sin ningún resultado acumulado
+	 */
+	ContextoSimulacion sinResultados() {
+		return new ContextoSimulacion(this);
+	}
+
+	DatosContratacionPlan getDatosPlan() {
+		return oDatosPlan;
+	}
+
+	List<String> getExcepciones() {
+		return lExcepciones;
+	}
+
+	ReglasPromocion getReglasPromocion() {
+		return reglasPromocion;
+	}
+
+	List<List<PrimasPorProducto>> getPrimasDesglosadas() {
+		return primasDesglosadas;
+	}
+
+	List<Primas> getPrimas() {
+		return primas;
+	}
+
+	long[] getDescuentosTotales() {
+		return descuentosTotales;
+	}
+
+	long[] getPagoTotal() {
+		return pagoTotal;
+	}
+
+	long[] getPrecioConPromocion() {
+		return precioConPromocion;
+	}
+
+	List<List<PromocionAplicada>> getPromociones() {
+		return promociones;
+	}
+
+	/**
+	 * Añade las promociones aplicadas en una frecuencia y anota si alguna es un
+	 * descuento en la prima.
+	 */
+	void agregarPromociones(final List<PromocionAplicada> promocionesFrecuencia) {
+		promociones.add(promocionesFrecuencia);
+
+		for (final PromocionAplicada promocion : promocionesFrecuencia) {
+			if (promocion != null && TipoPromocionEnum.DESCUENTO_PORCENTAJE.equals(promocion.getTipoPromocion())) {
+				promocionDescuento = true;
+			}
+		}
+	}
+
+	/**
+	 * @return true si alguna de las promociones aplicadas es un descuento en la
+	 *         prima
+	 */
+	boolean hayPromocionDescuento() {
+		return promocionDescuento;
+	}
+
+	List<List<Recibo>> getRecibos() {
+		return recibos;
+	}
+
+	void marcarReducida() {
+		reducida = true;
+	}
+
+	/**
+	 * @return true si se han pedido menos frecuencias de las habituales por
+	 *         saturación
+	 */
+	boolean isReducida() {
+		return reducida;
+	}
+}
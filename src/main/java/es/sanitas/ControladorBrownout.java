@@ -0,0 +1,176 @@
+package es.sanitas;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decide cuándo las simulaciones deben reducirse a una sola frecuencia de
+ * pago para aliviar la carga (brownout).
+ *
+ * Se observa la cola del pool de simulaciones al empezar cada simulación y la
+ * media reciente de su duración. Si alguna supera su máximo las simulaciones
+ * que pedirían todas las frecuencias piden sólo una, lo que divide por cuatro
+ * las llamadas al servicio. Se vuelve a pedir todas cuando ambas bajan de una
+ * fracción de su máximo y ha pasado un tiempo mínimo, para no oscilar entre un
+ * modo y otro.
+ */
+public class ControladorBrownout {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ControladorBrownout.class);
+
+	/** Peso de cada simulación en la media de duración. */
+	private static final double PESO_LATENCIA = 0.2;
+
+	/** Tareas en cola a partir de las que se reducen las simulaciones. */
+	private int colaMaxima = 50;
+
+	/** Duración media a partir de la que se reducen las simulaciones. */
+	private long milisegundosLatenciaMaxima = TimeUnit.SECONDS.toMillis(5);
+
+	/** Fracción de los máximos por debajo de la que se vuelve al modo normal. */
+	private double factorRecuperacion = 0.5;
+
+	/** Tiempo mínimo que se mantiene el modo reducido. */
+	private long milisegundosMinimoReducido = TimeUnit.SECONDS.toMillis(10);
+
+	private boolean reducido;
+	private long reducidoDesde;
+	private double latenciaMedia = -1;
+
+	private final AtomicLong activaciones = new AtomicLong();
+	private final AtomicLong simulacionesReducidas = new AtomicLong();
+
+	/**
+	 * @param tareasEnCola
+	 *            tareas esperando en el pool de simulaciones
+	 * @return true si la simulación que empieza debe pedir una sola frecuencia
+	 */
+	synchronized boolean reducir(final int tareasEnCola) {
+		final long ahora = ahoraNanos();
+		final long latenciaMaxima = TimeUnit.MILLISECONDS.toNanos(milisegundosLatenciaMaxima);
+
+		if (!reducido) {
+			if (tareasEnCola >= colaMaxima || latenciaMedia >= latenciaMaxima) {
+				reducido = true;
+				reducidoDesde = ahora;
+				activaciones.incrementAndGet();
+				LOG.warn("Simulaciones reducidas a una frecuencia: {} tareas en cola, {} ms de media", tareasEnCola,
+						TimeUnit.NANOSECONDS.toMillis((long) latenciaMedia));
+			}
+		} else if (ahora - reducidoDesde >= TimeUnit.MILLISECONDS.toNanos(milisegundosMinimoReducido)
+				&& tareasEnCola <= colaMaxima * factorRecuperacion
+				&& latenciaMedia <= latenciaMaxima * factorRecuperacion) {
+			reducido = false;
+			LOG.info("Las simulaciones vuelven a pedir todas las frecuencias");
+		}
+
+		if (reducido) {
+			simulacionesReducidas.incrementAndGet();
+		}
+		return reducido;
+	}
+
+	/**
+	 * Anota la duración de una simulación terminada.
+	 */
+	synchronized void registrarLatencia(final long nanos) {
+		latenciaMedia = latenciaMedia < 0 ? nanos : latenciaMedia + PESO_LATENCIA * (nanos - latenciaMedia);
+	}
+
+	long ahoraNanos() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * @return true si las simulaciones se están reduciendo
+	 */
+	public synchronized boolean isReducido() {
+		return reducido;
+	}
+
+	/**
+	 * @return duración media reciente de las simulaciones en milisegundos, o -1
+	 *         si todavía no ha terminado ninguna
+	 */
+	public synchronized long getLatenciaMediaMs() {
+		return latenciaMedia < 0 ? -1L : TimeUnit.NANOSECONDS.toMillis((long) latenciaMedia);
+	}
+
+	/**
+	 * @return veces que se ha entrado en el modo reducido
+	 */
+	public long getActivaciones() {
+		return activaciones.get();
+	}
+
+	/**
+	 * @return simulaciones que se han reducido a una frecuencia
+	 */
+	public long getSimulacionesReducidas() {
+		return simulacionesReducidas.get();
+	}
+
+	/**
+	 * @return the colaMaxima
+	 */
+	public int getColaMaxima() {
+		return colaMaxima;
+	}
+
+	/**
+	 * @param colaMaxima
+	 *            the colaMaxima to set
+	 */
+	public void setColaMaxima(final int colaMaxima) {
+		this.colaMaxima = colaMaxima;
+	}
+
+	/**
+	 * @return the milisegundosLatenciaMaxima
+	 */
+	public long getMilisegundosLatenciaMaxima() {
+		return milisegundosLatenciaMaxima;
+	}
+
+	/**
+	 * @param milisegundosLatenciaMaxima
+	 *            the milisegundosLatenciaMaxima to set
+	 */
+	public void setMilisegundosLatenciaMaxima(final long milisegundosLatenciaMaxima) {
+		this.milisegundosLatenciaMaxima = milisegundosLatenciaMaxima;
+	}
+
+	/**
+	 * @return the factorRecuperacion
+	 */
+	public double getFactorRecuperacion() {
+		return factorRecuperacion;
+	}
+
+	/**
+	 * @param factorRecuperacion
+	 *            fracción, entre 0 y 1, de los máximos por debajo de la que se
+	 *            vuelve al modo normal
+	 */
+	public void setFactorRecuperacion(final double factorRecuperacion) {
+		this.factorRecuperacion = factorRecuperacion;
+	}
+
+	/**
+	 * @return the milisegundosMinimoReducido
+	 */
+	public long getMilisegundosMinimoReducido() {
+		return milisegundosMinimoReducido;
+	}
+
+	/**
+	 * @param milisegundosMinimoReducido
+	 *            the milisegundosMinimoReducido to set
+	 */
+	public void setMilisegundosMinimoReducido(final long milisegundosMinimoReducido) {
+		this.milisegundosMinimoReducido = milisegundosMinimoReducido;
+	}
+}
@@ -0,0 +1,161 @@
+package es.sanitas;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+/**
+ * Coordina entre las simulaciones por frecuencia de una misma llamada el
+ * rechazo del código promocional.
+ *
+ * El código es el mismo en todas las frecuencias, así que en cuanto el servicio
+ * lo rechaza en una se publica el rechazo: las frecuencias que aún no han
+ * llamado al servicio piden directamente la simulación sin código, y las que
+ * están esperando una respuesta con el código se interrumpen para que repitan
+ * sin él en lugar de esperar a un rechazo seguro.
+ *
+ * El hilo no distingue quién le ha interrumpido: si al consumir la
+ * interrupción propia la simulación está además cancelada desde fuera (plazo
+ * vencido o pool cerrado), se restablece para no perder esa cancelación.
+ */
+final class CoordinadorPromocion {
+
+	private final AtomicBoolean rechazado = new AtomicBoolean();
+	private volatile boolean rechazoConocido;
+	private final Set<Llamada> enCurso = ConcurrentHashMap.newKeySet();
+	private final BooleanSupplier cancelada;
+
+	/**
+	 * @param cancelada
+	 *            indica si la simulación se ha cancelado desde fuera del
+	 *            coordinador
+	 */
+	CoordinadorPromocion(final BooleanSupplier cancelada) {
+		this.cancelada = cancelada;
+	}
+
+	/**
+	 * @return true si el servicio ha rechazado ya el código promocional
+	 */
+	boolean isCodigoRechazado() {
+		return rechazado.get();
+	}
+
+	/**
+	 * @return true si el código ya estaba rechazado antes de empezar la
+	 *         simulación y ninguna frecuencia lo ha enviado
+	 */
+	boolean isRechazoConocido() {
+		return rechazoConocido;
+	}
+
+	/**
+	 * Marca el código como rechazado antes de lanzar las frecuencias, por un
+	 * rechazo reciente del servicio en otra simulación.
+	 */
+	void rechazarCodigoConocido() {
+		rechazoConocido = true;
+		rechazado.set(true);
+	}
+
+	/**
+	 * Publica el rechazo del código e interrumpe las llamadas con código en curso
+	 * de las demás frecuencias.
+	 *
+	 * @return true si es el primer rechazo
+	 */
+	boolean rechazarCodigo() {
+		if (!rechazado.compareAndSet(false, true)) {
+			return false;
+		}
+		for (final Llamada llamada : enCurso) {
+			llamada.interrumpir();
+		}
+		return true;
+	}
+
+	/**
+	 * Llama al servicio con la petición que lleva el código promocional.
+	 *
+	 * @return la respuesta del servicio, o null si el código se ha rechazado en
+	 *         otra frecuencia antes o durante la llamada y ésta ya no sirve
+	 */
+	RESTResponse<Tarificacion, Error> simularConCodigo(final SimulacionWS servicio, final Simulacion simulacion) {
+		final Llamada llamada = new Llamada(Thread.currentThread(), cancelada);
+		enCurso.add(llamada);
+
+		try {
+			// Se comprueba después de registrarse para no perder un rechazo simultáneo
+			if (rechazado.get()) {
+				return null;
+			}
+
+			final RESTResponse<Tarificacion, Error> respuesta;
+			try {
+				respuesta = servicio.simular(simulacion);
+			} catch (final RuntimeException e) {
+				if (llamada.terminar()) {
+					return null;
+				}
+				throw e;
+			}
+
+			llamada.terminar();
+			return respuesta;
+		} finally {
+			enCurso.remove(llamada);
+			llamada.terminar();
+		}
+	}
+
+	/**
+	 * Llamada con código en curso. La interrupción y su limpieza se hacen bajo el
+	 * mismo cerrojo, de modo que una interrupción de este coordinador nunca se
+	 * escapa a lo que el hilo haga después de la llamada.
+	 */
+	private static final class Llamada {
+
+		private final BooleanSupplier cancelada;
+		private Thread hilo;
+		private boolean interrumpida;
+
+		Llamada(final Thread hilo, final BooleanSupplier cancelada) {
+			this.hilo = hilo;
+			this.cancelada = cancelada;
+		}
+
+		synchronized void interrumpir() {
+			if (hilo != null && !interrumpida) {
+				interrumpida = true;
+				hilo.interrupt();
+			}
+		}
+
+		/**
+		 * Debe llamarse desde el hilo de la llamada.
+		 *
+		 * @return true si la llamada se ha interrumpido por el rechazo del código
+		 */
+		synchronized boolean terminar() {
+			hilo = null;
+			if (interrumpida) {
+				interrumpida = false;
+				// Se consume la interrupción propia para que no afecte al reintento,
+				// salvo que coincida con una cancelación de la simulación
+				Thread.interrupted();
+				if (cancelada.getAsBoolean()) {
+					Thread.currentThread().interrupt();
+				}
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package es.sanitas;
+
+/**
+ * Estado de cada frecuencia de pago en un {@link ResultadoSimulacion}.
+ */
+public enum EstadoFrecuencia {
+
+	/** La frecuencia se ha simulado y sus totales están en el resultado. */
+	COMPLETA,
+
+	/** No se ha pedido la frecuencia en esta simulación. */
+	NO_SOLICITADA,
+
+	/** La simulación de la frecuencia ha fallado. */
+	FALLIDA,
+
+	/** La frecuencia no ha terminado dentro del plazo de la simulación. */
+	PLAZO_VENCIDO,
+
+	/**
+	 * La frecuencia no había terminado dentro del plazo y se sigue simulando en
+	 * segundo plano; su resultado estará en
+	 * {@link ResultadoSimulacion#getResultadoCompleto()}.
+	 */
+	PENDIENTE
+}
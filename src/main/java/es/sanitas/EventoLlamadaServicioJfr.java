@@ -0,0 +1,29 @@
+package es.sanitas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de una llamada al servicio de simulación.
+ */
+@Name("es.sanitas.LlamadaServicioSimulacion")
+@Label("Llamada al servicio de simulación")
+@Category({ "Sanitas", "Simulación" })
+@Description("Ida y vuelta de SimulacionWS.simular para una frecuencia")
+@StackTrace(false)
+final class EventoLlamadaServicioJfr extends Event {
+
+	@Label("Frecuencia")
+	String frecuencia;
+
+	@Label("Con código promocional")
+	boolean conCodigoPromocional;
+
+	@Label("Código de error")
+	@Description("Código de error del servicio, o clase de la excepción de la llamada")
+	String codigoError;
+}
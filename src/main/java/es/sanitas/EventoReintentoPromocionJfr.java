@@ -0,0 +1,26 @@
+package es.sanitas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de la repetición de una frecuencia sin el código promocional
+ * rechazado.
+ */
+@Name("es.sanitas.ReintentoSinCodigoPromocional")
+@Label("Reintento sin código promocional")
+@Category({ "Sanitas", "Simulación" })
+@Description("Repetición de la simulación de una frecuencia tras rechazarse el código promocional")
+@StackTrace(false)
+final class EventoReintentoPromocionJfr extends Event {
+
+	@Label("Frecuencia")
+	String frecuencia;
+
+	@Label("Código promocional")
+	String codigoPromocional;
+}
@@ -0,0 +1,43 @@
+package es.sanitas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de una simulación completa, desde la petición hasta que se
+ * completa su future. Se emite desde el hilo que completa la simulación.
+ */
+@Name("es.sanitas.Simulacion")
+@Label("Simulación de póliza")
+@Category({ "Sanitas", "Simulación" })
+@Description("Simulación completa de una póliza, con todas sus frecuencias")
+@StackTrace(false)
+final class EventoSimulacionJfr extends Event {
+
+	@Label("Operación")
+	@Description("ALTA_POLIZA o INCLUSION_BENEFICIARIO")
+	String operacion;
+
+	@Label("Beneficiarios")
+	int beneficiarios;
+
+	@Label("Frecuencias")
+	@Description("Frecuencias de pago tarificadas")
+	int frecuencias;
+
+	@Label("Resultado")
+	@Description("COMPLETA, PARCIAL o FALLIDA")
+	String resultado;
+
+	@Label("Causa")
+	@Description("Excepción con la que ha fallado la simulación")
+	String causa;
+
+	@Label("Reducida")
+	@Description("Se han tarificado menos frecuencias por saturación")
+	boolean reducida;
+}
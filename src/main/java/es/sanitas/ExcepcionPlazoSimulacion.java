@@ -0,0 +1,23 @@
+package es.sanitas;
+
+import es.sanitas.soporte.ExcepcionContratacion;
+
+/**
+ * La simulación no ha terminado dentro de su plazo. Permite distinguir un
+ * agotamiento del tiempo de cualquier otro error de contratación.
+ */
+public class ExcepcionPlazoSimulacion extends ExcepcionContratacion {
+
+	/** La constante serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instancia una nueva excepción de plazo de simulación.
+	 *
+	 * @param msg
+	 *            el msg
+	 */
+	public ExcepcionPlazoSimulacion(final String msg) {
+		super(msg);
+	}
+}
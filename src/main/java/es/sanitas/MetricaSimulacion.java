@@ -0,0 +1,65 @@
+package es.sanitas;
+
+/**
+ * Métricas que {@link RealizarSimulacion} envía a su {@link RegistroMetricas}.
+ */
+public enum MetricaSimulacion {
+
+	/** Tiempo: simulación completa, etiquetada como completa o fallida. */
+	SIMULACION("simulacion.total"),
+
+	/** Tiempo: construcción de la petición al servicio. */
+	PETICION("simulacion.peticion"),
+
+	/** Tiempo: espera de una frecuencia en la cola del pool. */
+	ESPERA_POOL("simulacion.pool.espera"),
+
+	/** Tiempo: llamada al servicio de simulación, etiquetada por frecuencia. */
+	LLAMADA_SERVICIO("simulacion.servicio"),
+
+	/**
+	 * Tiempo: repetición de la simulación sin el código promocional rechazado,
+	 * etiquetada por frecuencia.
+	 */
+	REINTENTO_SIN_CODIGO("simulacion.servicio.reintentoSinCodigo"),
+
+	/** Tiempo: tratamiento de la tarificación de una frecuencia. */
+	PROCESAR_FRECUENCIA("simulacion.procesarFrecuencia"),
+
+	/** Tiempo: combinación de los resultados de todas las frecuencias. */
+	COMBINAR_FRECUENCIAS("simulacion.combinarFrecuencias"),
+
+	/**
+	 * Contador: respuestas de error del servicio, etiquetadas por código, y
+	 * excepciones de la llamada, etiquetadas por clase.
+	 */
+	ERRORES_SERVICIO("simulacion.servicio.errores"),
+
+	/**
+	 * Contador: simulaciones que no envían el código promocional por estar ya
+	 * entre los rechazados recientemente.
+	 */
+	CODIGO_RECHAZADO_CONOCIDO("simulacion.promocion.rechazoConocido"),
+
+	/** Contador: frecuencias rechazadas por el pool lleno. */
+	RECHAZOS_POOL("simulacion.pool.rechazos"),
+
+	/** Indicador: hilos del pool ejecutando simulaciones. */
+	HILOS_ACTIVOS("simulacion.pool.hilosActivos"),
+
+	/** Indicador: frecuencias esperando en la cola del pool. */
+	TAREAS_EN_COLA("simulacion.pool.cola");
+
+	private final String nombre;
+
+	private MetricaSimulacion(final String nombre) {
+		this.nombre = nombre;
+	}
+
+	/**
+	 * @return nombre de la métrica para los sistemas de monitorización
+	 */
+	public String getNombre() {
+		return nombre;
+	}
+}
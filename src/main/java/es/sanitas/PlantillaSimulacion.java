@@ -0,0 +1,97 @@
+package es.sanitas;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoContratacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoPromociones;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promocion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.soporte.FrecuenciaEnum;
+
+/**
+ * Petición de simulación construida una sola vez por llamada, de la que se
+ * derivan las peticiones de cada frecuencia.
+ *
+ * Las copias son superficiales: comparten beneficiarios, productos, tier y
+ * promociones con la plantilla y sólo tienen propio el {@link InfoContratacion},
+ * que es donde va la frecuencia de pago. Ninguna de las partes compartidas se
+ * modifica después de construir la plantilla.
+ */
+final class PlantillaSimulacion {
+
+	private final Simulacion plantilla;
+
+	private volatile PlantillaSimulacion plantillaSinCodigo;
+
+	PlantillaSimulacion(final Simulacion plantilla) {
+		this.plantilla = plantilla;
+	}
+
+	/**
+	 * @return la petición de la que se derivan las demás; no debe modificarse
+	 */
+	Simulacion getSimulacion() {
+		return plantilla;
+	}
+
+	/**
+	 * @return petición igual a la plantilla con la frecuencia de pago indicada
+	 */
+	Simulacion paraFrecuencia(final FrecuenciaEnum frecuencia) {
+		final Simulacion simulacion = copiar(plantilla);
+		simulacion.setInfoContratacion(copiar(plantilla.getInfoContratacion()));
+		simulacion.getInfoContratacion().setFrecuenciaPago(frecuencia.getValor());
+		return simulacion;
+	}
+
+	/**
+	 * @return plantilla igual a ésta pero sin código promocional. Se construye la
+	 *         primera vez que se pide y la comparten todas las frecuencias
+	 */
+	PlantillaSimulacion sinCodigoPromocional() {
+		PlantillaSimulacion sinCodigo = plantillaSinCodigo;
+		if (sinCodigo == null) {
+			final Simulacion copia = copiar(plantilla);
+
+			if (plantilla.getInfoPromociones() != null) {
+				final InfoPromociones infoPromociones = new InfoPromociones();
+				infoPromociones.setAutomaticas(plantilla.getInfoPromociones().getAutomaticas());
+				infoPromociones.setListaPromociones(new Promocion[0]);
+				copia.setInfoPromociones(infoPromociones);
+			}
+
+			// Si dos frecuencias la construyen a la vez ambas copias son equivalentes
+			sinCodigo = new PlantillaSimulacion(copia);
+			plantillaSinCodigo = sinCodigo;
+		}
+		return sinCodigo;
+	}
+
+	private static Simulacion copiar(final Simulacion origen) {
+		final Simulacion copia = new Simulacion();
+
+		copia.setOperacion(origen.getOperacion());
+		copia.setTipo(origen.getTipo());
+		copia.setInfoPromociones(origen.getInfoPromociones());
+		copia.setInfoTier(origen.getInfoTier());
+		copia.setListaBeneficiarios(origen.getBeneficiarios());
+		copia.setInfoContratacion(origen.getInfoContratacion());
+
+		return copia;
+	}
+
+	private static InfoContratacion copiar(final InfoContratacion origen) {
+		final InfoContratacion copia = new InfoContratacion();
+
+		copia.setCodigoPostal(origen.getCodigoPostal());
+		copia.setFechaEfecto(origen.getFechaEfecto());
+		copia.setFrecuenciaPago(origen.getFrecuenciaPago());
+		copia.setIdColectivo(origen.getIdColectivo());
+		copia.setIdDepartamento(origen.getIdDepartamento());
+		copia.setIdEmpresa(origen.getIdEmpresa());
+		copia.setIdGrupoParticular(origen.getIdGrupoParticular());
+		copia.setIdMediador(origen.getIdMediador());
+		copia.setIdPlan(origen.getIdPlan());
+		copia.setIdPoliza(origen.getIdPoliza());
+
+		return copia;
+	}
+}
@@ -0,0 +1,34 @@
+package es.sanitas;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plazo máximo de una simulación completa. Se fija al empezar la llamada y cada
+ * fase consume el tiempo que queda en lugar de disponer de su propio timeout.
+ */
+final class PlazoSimulacion {
+
+	private final long limiteNanos;
+
+	private PlazoSimulacion(final long limiteNanos) {
+		this.limiteNanos = limiteNanos;
+	}
+
+	/**
+	 * @return plazo que vence cuando transcurra la duración indicada desde ahora
+	 */
+	static PlazoSimulacion desdeAhora(final long duracion, final TimeUnit unidad) {
+		return new PlazoSimulacion(System.nanoTime() + unidad.toNanos(duracion));
+	}
+
+	/**
+	 * @return nanosegundos que quedan hasta el vencimiento, nunca negativo
+	 */
+	long restanteNanos() {
+		return Math.max(0L, limiteNanos - System.nanoTime());
+	}
+
+	boolean vencido() {
+		return restanteNanos() == 0L;
+	}
+}
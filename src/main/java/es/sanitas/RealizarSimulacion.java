@@ -6,33 +6,33 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
-import org.apache.commons.collections4.IterableUtils;
-import org.apache.commons.collections4.Predicate;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosCobertura;
 import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosContratacionPlan;
 import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosPlanProducto;
 import es.sanitas.bravo.ws.stubs.contratacionws.documentacion.Primas;
@@ -65,41 +65,68 @@ import es.sanitas.soporte.TarificacionPoliza;
 import es.sanitas.soporte.TipoPromocionEnum;
 import wscontratacion.beneficiario.vo.ProductoCobertura;
 import wscontratacion.contratacion.fuentes.parametros.DatosAlta;
-import wscontratacion.contratacion.fuentes.parametros.DatosAsegurado;
 import wscontratacion.contratacion.fuentes.parametros.DatosDomicilio;
 import wscontratacion.contratacion.fuentes.parametros.DatosProductoAlta;
 
-public class RealizarSimulacion {
+public class RealizarSimulacion implements DisposableBean {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RealizarSimulacion.class);
 
 	private static final String LINE_BREAK = "<br/>";
 	private static final String DATE_FORMAT = "dd/MM/yyyy";
 
-	private static final int NUMERO_HILOS = 4;
 	private static final int TIMEOUT = 30;
+	private static final String MENSAJE_PLAZO_VENCIDO = "No se ha podido obtener un precio para el presupuesto en el tiempo previsto. Por favor, inténtelo de nuevo más tarde.";
 
 	private static final List<String> TIER_PRODUCTS_LIST = Arrays.asList("producto-1", "producto-5", "producto-3");
 	private static final String SEPARADOR_TIER = "#";
 
-	private final ExecutorService pool = Executors.newFixedThreadPool(NUMERO_HILOS);
+	/** Inicio de una medida que no se registra porque las métricas están desactivadas. */
+	private static final long SIN_MEDIDA = Long.MIN_VALUE;
 
-	private final SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+	/** La JVM dispone de JDK Flight Recorder para los eventos de la simulación. */
+	private static final boolean JFR_DISPONIBLE = jfrDisponible();
 
-	private SimulacionWS servicioSimulacion;
+	private ConfiguracionPoolSimulacion configuracionPool = new ConfiguracionPoolSimulacion();
+
+	/** Pool de las simulaciones por frecuencia; se crea al primer uso si no se inyecta. */
+	private volatile ExecutorService pool;
+
+	/** Indica si el pool lo ha creado este bean y, por tanto, debe cerrarlo. */
+	private boolean poolPropio;
+
+	/** Tiempo máximo de una simulación completa, incluidas todas sus frecuencias. */
+	private long milisegundosPlazo = TimeUnit.SECONDS.toMillis(TIMEOUT);
+
+	/** Planes compilados, compartidos entre simulaciones. */
+	private CatalogoPlanes catalogoPlanes = new CatalogoPlanes();
+
+	/**
+	 * Devuelve las frecuencias que han terminado bien aunque otras fallen o no
+	 * terminen en el plazo, en lugar de fallar la simulación completa.
+	 */
+	private boolean resultadosParciales;
+
+	/**
+	 * Con resultados parciales, las frecuencias que no terminan en el plazo se
+	 * siguen simulando y completan {@link ResultadoSimulacion#getResultadoCompleto()}.
+	 * Mientras tanto ocupan hilos del pool.
+	 */
+	private boolean completarEnSegundoPlano;
 
-	private DatosContratacionPlan oDatosPlan;
-	private List<String> lExcepciones;
+	/** Tiempo máximo que se sigue esperando a las frecuencias pendientes. */
+	private long milisegundosSegundoPlano = TimeUnit.SECONDS.toMillis(TIMEOUT);
 
-	private List<List<PrimasPorProducto>> primasDesglosadas;
-	private List<Primas> primas;
+	/** Reduce las simulaciones a una frecuencia bajo saturación; sin él no se reducen. */
+	private ControladorBrownout controladorBrownout;
 
-	private Double[] descuentosTotales;
-	private Double[] pagoTotal;
-	private Double[] precioConPromocion;
+	/** Códigos promocionales rechazados recientemente por el servicio. */
+	private CodigosPromocionalesRechazados codigosRechazados = new CodigosPromocionalesRechazados();
 
-	private List<List<PromocionAplicada>> promociones;
-	private List<List<es.sanitas.soporte.Recibo>> recibos;
+	/** Destino de las métricas por fase; por defecto se descartan. */
+	private RegistroMetricas registroMetricas = RegistroMetricas.NINGUNO;
+
+	private SimulacionWS servicioSimulacion;
 
 	/**
 	 * Método que realiza las llamadas a las diferentes clases de simulación, para
@@ -120,32 +147,391 @@ public class RealizarSimulacion {
 	public Map<String, Object> realizarSimulacion(final DatosAlta oDatosAlta, final List<ProductoPolizas> lProductos,
 			final List<BeneficiarioPolizas> lBeneficiarios, final boolean desglosar,
 			final Map<String, Object> hmValores) throws Exception, ExcepcionContratacion {
-		inicializarObjetosDeCalculo(hmValores);
+		try {
+			return realizarSimulacionAsync(oDatosAlta, lProductos, lBeneficiarios, desglosar, hmValores).join();
+		} catch (final CompletionException e) {
+			throw desenvolver(e);
+		}
+	}
+
+	/**
+	 * Versión no bloqueante de {@link #realizarSimulacion}. Las simulaciones por
+	 * frecuencia se lanzan en el pool y el tratamiento de la tarificación se
+	 * encadena a su finalización, de modo que el hilo llamante queda libre
+	 * mientras se espera al servicio de simulación.
+	 *
+	 * La simulación completa dispone de un único plazo. Si vence antes de que
+	 * terminen todas las frecuencias, las pendientes se cancelan y el future se
+	 * completa con una {@link ExcepcionPlazoSimulacion}.
+	 *
+	 * @return future con el Map de resultados de la simulación. Si la simulación
+	 *         no puede realizarse se completa excepcionalmente con una
+	 *         {@link ExcepcionContratacion}
+	 */
+	public CompletableFuture<Map<String, Object>> realizarSimulacionAsync(final DatosAlta oDatosAlta,
+			final List<ProductoPolizas> lProductos, final List<BeneficiarioPolizas> lBeneficiarios,
+			final boolean desglosar, final Map<String, Object> hmValores) {
+		return obtenerResultadoSimulacionAsync(oDatosAlta, lProductos, lBeneficiarios, desglosar, hmValores)
+				.thenApply(ResultadoSimulacion::comoMapa);
+	}
+
+	/**
+	 * Igual que {@link #realizarSimulacionAsync} pero devuelve el resultado
+	 * tipado, con los totales por frecuencia sin convertir a objetos.
+	 *
+	 * Con {@link #setResultadosParciales(boolean)} activado, una frecuencia que
+	 * falla o no termina en el plazo no hace fallar la simulación: el resultado
+	 * incluye las demás y el estado de cada una.
+	 *
+	 * @return future con el resultado de la simulación. Si la simulación no
+	 *         puede realizarse se completa excepcionalmente con una
+	 *         {@link ExcepcionContratacion}
+	 */
+	public CompletableFuture<ResultadoSimulacion> obtenerResultadoSimulacionAsync(final DatosAlta oDatosAlta,
+			final List<ProductoPolizas> lProductos, final List<BeneficiarioPolizas> lBeneficiarios,
+			final boolean desglosar, final Map<String, Object> hmValores) {
+		final long inicioSimulacion = iniciarMedida();
+		final EventoSimulacionJfr evento = JFR_DISPONIBLE ? new EventoSimulacionJfr() : null;
+		if (evento != null) {
+			evento.begin();
+		}
+		final PlazoSimulacion plazo = PlazoSimulacion.desdeAhora(milisegundosPlazo, TimeUnit.MILLISECONDS);
+		final ContextoSimulacion contexto = new ContextoSimulacion(hmValores, oDatosAlta);
+
+		final Set<FrecuenciaEnum> frecuenciasTarificar = limitarPorSaturacion(contexto, oDatosAlta,
+				calcularFrecuenciasTarificar(oDatosAlta, lBeneficiarios, hmValores));
+
+		// La petición es la misma para todas las frecuencias salvo la frecuencia de
+		// pago: se construye una vez y cada solver obtiene su copia
+		final PlantillaSimulacion plantilla;
+		try {
+			final long inicioPeticion = iniciarMedida();
+			plantilla = new PlantillaSimulacion(generarSimulacion(hmValores, oDatosAlta, lProductos, lBeneficiarios,
+					frecuenciasTarificar.iterator().next()));
+			registrarTiempo(MetricaSimulacion.PETICION, null, inicioPeticion);
+		} catch (final RuntimeException e) {
+			LOG.error("No se ha podido generar la petición de simulación", e);
+			return emitirEventoSimulacion(evento, fallida(new ExcepcionContratacion(e.getMessage())), oDatosAlta,
+					lBeneficiarios, frecuenciasTarificar.size());
+		}
+
+		// Un código rechazado hace poco no se vuelve a enviar: todas las frecuencias
+		// piden directamente la tarificación sin él
+		final CoordinadorPromocion coordinador = new CoordinadorPromocion(() -> plazo.vencido() || poolCerrado());
+		if (codigosRechazados.estaRechazado(plantilla.getSimulacion())) {
+			coordinador.rechazarCodigoConocido();
+			registroMetricas.incrementar(MetricaSimulacion.CODIGO_RECHAZADO_CONOCIDO, null);
+		}
+
+		final CompletableFuture<ResultadoSimulacion> resultado;
+
+		if (resultadosParciales) {
+			resultado = simularConResultadosParciales(contexto, plantilla, coordinador, frecuenciasTarificar,
+					desglosar, plazo);
+		} else {
+			resultado = calcularResultadosFrecuencias(contexto, plantilla, coordinador, frecuenciasTarificar, plazo)
+					.thenApply(resultados -> combinarFrecuencias(contexto, resultados))
+					.thenApply(errores -> new ResultadoSimulacion(contexto, desglosar, errores,
+							estadosCompletos(frecuenciasTarificar), null));
+		}
+
+		final ControladorBrownout controlador = controladorBrownout;
+		if (controlador != null) {
+			final long inicio = System.nanoTime();
+			resultado.whenComplete((simulacion, error) -> controlador.registrarLatencia(System.nanoTime() - inicio));
+		}
+
+		if (inicioSimulacion != SIN_MEDIDA) {
+			resultado.whenComplete((simulacion, error) -> registrarTiempo(MetricaSimulacion.SIMULACION,
+					error == null ? "completa" : "fallida", inicioSimulacion));
+		}
+
+		return emitirEventoSimulacion(evento, resultado, oDatosAlta, lBeneficiarios, frecuenciasTarificar.size());
+	}
+
+	/**
+	 * Emite el evento JFR de la simulación al completarse su future, si se está
+	 * grabando.
+	 *
+	 * @return future que se completa con el mismo resultado una vez emitido el
+	 *         evento
+	 */
+	private CompletableFuture<ResultadoSimulacion> emitirEventoSimulacion(final EventoSimulacionJfr evento,
+			final CompletableFuture<ResultadoSimulacion> resultado, final DatosAlta oDatosAlta,
+			final List<BeneficiarioPolizas> lBeneficiarios, final int frecuencias) {
+		if (evento == null) {
+			return resultado;
+		}
+
+		return resultado.whenComplete((simulacion, error) -> {
+			evento.end();
+			if (evento.shouldCommit()) {
+				evento.operacion = obtenerOperacion(lBeneficiarios) == StaticVarsContratacion.ALTA_POLIZA
+						? "ALTA_POLIZA"
+						: "INCLUSION_BENEFICIARIO";
+				evento.beneficiarios = lBeneficiarios != null ? lBeneficiarios.size()
+						: 1 + (oDatosAlta.getAsegurados() != null ? oDatosAlta.getAsegurados().size() : 0);
+				evento.frecuencias = frecuencias;
+				if (error == null) {
+					evento.resultado = simulacion.isParcial() ? "PARCIAL" : "COMPLETA";
+					evento.reducida = simulacion.isReducida();
+				} else {
+					evento.resultado = "FALLIDA";
+					evento.causa = (error instanceof CompletionException && error.getCause() != null
+							? error.getCause()
+							: error).getClass().getSimpleName();
+				}
+				evento.commit();
+			}
+		});
+	}
+
+	/**
+	 * Bajo saturación una simulación que pediría varias frecuencias pide sólo la
+	 * preferida del alta, o la mensual si no tiene, y el resultado queda marcado
+	 * como reducido.
+	 */
+	private Set<FrecuenciaEnum> limitarPorSaturacion(final ContextoSimulacion contexto, final DatosAlta oDatosAlta,
+			final Set<FrecuenciaEnum> frecuenciasTarificar) {
+		final ControladorBrownout controlador = controladorBrownout;
+
+		if (controlador == null || frecuenciasTarificar.size() <= 1 || !controlador.reducir(tareasEnCola())) {
+			return frecuenciasTarificar;
+		}
+
+		FrecuenciaEnum preferida = FrecuenciaEnum.obtenerFrecuencia(oDatosAlta.getGenFrecuenciaPago());
+		if (preferida == null || !frecuenciasTarificar.contains(preferida)) {
+			preferida = FrecuenciaEnum.MENSUAL;
+		}
+
+		contexto.marcarReducida();
+		return EnumSet.of(preferida);
+	}
+
+	/**
+	 * @return tareas esperando en el pool, o 0 si el pool no tiene cola
+	 */
+	private int tareasEnCola() {
+		final ExecutorService actual = pool;
+		return actual instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) actual).getQueue().size() : 0;
+	}
+
+	/**
+	 * @return true si el pool se está cerrando y sus tareas pueden haberse
+	 *         interrumpido
+	 */
+	private boolean poolCerrado() {
+		final ExecutorService actual = pool;
+		return actual != null && actual.isShutdown();
+	}
+
+	private int hilosActivos() {
+		final ExecutorService actual = pool;
+		return actual instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) actual).getActiveCount() : 0;
+	}
+
+	/**
+	 * JFR existe desde Java 11 y en Java 8 a partir de la 8u262: en JVM
+	 * anteriores no se crean los eventos.
+	 */
+	private static boolean jfrDisponible() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (final ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Sin registro de métricas no se lee el reloj: la medida queda en
+	 * {@link #SIN_MEDIDA} y {@link #registrarTiempo} no hace nada.
+	 */
+	private long iniciarMedida() {
+		return registroMetricas.isActivo() ? System.nanoTime() : SIN_MEDIDA;
+	}
+
+	private void registrarTiempo(final MetricaSimulacion metrica, final String etiqueta, final long inicio) {
+		if (inicio != SIN_MEDIDA) {
+			registroMetricas.registrarTiempo(metrica, etiqueta, System.nanoTime() - inicio);
+		}
+	}
+
+	/**
+	 * Con resultados parciales el resultado se construye con las frecuencias que
+	 * han terminado bien dentro del plazo; sólo falla si no ha terminado ninguna.
+	 */
+	private CompletableFuture<ResultadoSimulacion> simularConResultadosParciales(final ContextoSimulacion contexto,
+			final PlantillaSimulacion plantilla, final CoordinadorPromocion coordinador,
+			final Set<FrecuenciaEnum> frecuenciasTarificar, final boolean desglosar, final PlazoSimulacion plazo) {
+		final List<FrecuenciaEnum> frecuencias = new ArrayList<FrecuenciaEnum>(frecuenciasTarificar);
+		final List<CompletableFuture<ResultadoFrecuencia>> simulaciones;
+
+		try {
+			simulaciones = sumbitSolvers(calcularSolvers(contexto, plantilla, coordinador, frecuenciasTarificar, plazo),
+					obtenerPool());
+		} catch (final ExcepcionContratacion e) {
+			return fallida(e);
+		}
+
+		final CompletableFuture<Void> todas = Temporizador.conPlazo(terminacion(simulaciones), plazo.restanteNanos(),
+				TimeUnit.NANOSECONDS);
+
+		return todas.handle((ignorado, error) -> {
+			final boolean vencido = error instanceof TimeoutException;
+			final boolean enSegundoPlano = vencido && completarEnSegundoPlano;
+
+			if (vencido) {
+				LOG.warn("La simulación ha superado su plazo de {} ms, se devuelven las frecuencias terminadas",
+						milisegundosPlazo);
+				if (!enSegundoPlano) {
+					cancelarSolvers(simulaciones);
+				}
+			}
+
+			final Map<FrecuenciaEnum, EstadoFrecuencia> estados = new EnumMap<FrecuenciaEnum, EstadoFrecuencia>(
+					FrecuenciaEnum.class);
+			final List<ResultadoFrecuencia> resultados = recogerTerminadas(frecuencias, simulaciones, estados,
+					enSegundoPlano);
+
+			if (!estados.containsValue(EstadoFrecuencia.COMPLETA)) {
+				cancelarSolvers(simulaciones);
+				throw causaSinResultados(simulaciones);
+			}
+
+			final CompletableFuture<ResultadoSimulacion> resultadoCompleto = enSegundoPlano
+					? completarPendientes(contexto, frecuencias, simulaciones, desglosar)
+					: null;
+
+			return new ResultadoSimulacion(contexto, desglosar, combinarFrecuencias(contexto, resultados), estados,
+					resultadoCompleto);
+		});
+	}
 
-		Set<FrecuenciaEnum> frecuenciasTarificar = calcularFrecuenciasTarificar(oDatosAlta, lBeneficiarios, hmValores);
+	/**
+	 * Las frecuencias pendientes siguen en el pool hasta que terminan o vence el
+	 * plazo en segundo plano; entonces se construye de nuevo el resultado con
+	 * todas las que hayan terminado bien.
+	 */
+	private CompletableFuture<ResultadoSimulacion> completarPendientes(final ContextoSimulacion contexto,
+			final List<FrecuenciaEnum> frecuencias, final List<CompletableFuture<ResultadoFrecuencia>> simulaciones,
+			final boolean desglosar) {
+		final CompletableFuture<Void> todas = Temporizador.conPlazo(terminacion(simulaciones),
+				milisegundosSegundoPlano, TimeUnit.MILLISECONDS);
+
+		return todas.handle((ignorado, error) -> {
+			if (error != null) {
+				cancelarSolvers(simulaciones);
+			}
+
+			final ContextoSimulacion contextoCompleto = contexto.sinResultados();
+			final Map<FrecuenciaEnum, EstadoFrecuencia> estados = new EnumMap<FrecuenciaEnum, EstadoFrecuencia>(
+					FrecuenciaEnum.class);
+			final List<ResultadoFrecuencia> resultados = recogerTerminadas(frecuencias, simulaciones, estados, false);
 
-		final TarificacionPoliza retornoPoliza = calcularRetornoPoliza(oDatosAlta, lProductos, lBeneficiarios,
-				hmValores, frecuenciasTarificar);
+			return new ResultadoSimulacion(contextoCompleto, desglosar,
+					combinarFrecuencias(contextoCompleto, resultados), estados, null);
+		});
+	}
+
+	/**
+	 * @return future que se completa cuando todas las simulaciones han terminado,
+	 *         bien o mal
+	 */
+	private CompletableFuture<Void> terminacion(final List<CompletableFuture<ResultadoFrecuencia>> simulaciones) {
+		final CompletableFuture<?>[] terminadas = new CompletableFuture<?>[simulaciones.size()];
 
-		List<String> errores = ejecutarSimulacion(oDatosAlta, frecuenciasTarificar, retornoPoliza);
+		for (int i = 0; i < terminadas.length; i++) {
+			terminadas[i] = simulaciones.get(i).handle((resultado, error) -> null);
+		}
 
-		return generarResultadosSimulacion(desglosar, errores);
+		return CompletableFuture.allOf(terminadas);
 	}
 
-	@SuppressWarnings("unchecked")
-	private void inicializarObjetosDeCalculo(final Map<String, Object> hmValores) {
-		oDatosPlan = (DatosContratacionPlan) hmValores.get(StaticVarsContratacion.DATOS_PLAN);
-		lExcepciones = (List<String>) hmValores.get("EXCEPCIONES");
+	/**
+	 * Anota el estado de cada frecuencia.
+	 *
+	 * @return un resultado por frecuencia pedida, en su orden. Las que no han
+	 *         terminado bien aportan un resultado vacío para que las promociones
+	 *         y los recibos de las demás conserven su posición
+	 */
+	private List<ResultadoFrecuencia> recogerTerminadas(final List<FrecuenciaEnum> frecuencias,
+			final List<CompletableFuture<ResultadoFrecuencia>> simulaciones,
+			final Map<FrecuenciaEnum, EstadoFrecuencia> estados, final boolean enSegundoPlano) {
+		final List<ResultadoFrecuencia> resultados = new ArrayList<ResultadoFrecuencia>();
 
-		primasDesglosadas = new ArrayList<List<PrimasPorProducto>>();
-		primas = new ArrayList<Primas>();
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			estados.put(frecuencia, EstadoFrecuencia.NO_SOLICITADA);
+		}
 
-		descuentosTotales = new Double[] { 0.0, 0.0, 0.0, 0.0 };
-		pagoTotal = new Double[] { 0.0, 0.0, 0.0, 0.0 };
-		precioConPromocion = new Double[] { 0.0, 0.0, 0.0, 0.0 };
+		for (int i = 0; i < simulaciones.size(); i++) {
+			final CompletableFuture<ResultadoFrecuencia> simulacion = simulaciones.get(i);
+			final FrecuenciaEnum frecuencia = frecuencias.get(i);
 
-		promociones = new ArrayList<List<PromocionAplicada>>();
-		recibos = new ArrayList<List<es.sanitas.soporte.Recibo>>();
+			if (!simulacion.isDone()) {
+				estados.put(frecuencia, enSegundoPlano ? EstadoFrecuencia.PENDIENTE : EstadoFrecuencia.PLAZO_VENCIDO);
+			} else if (simulacion.isCancelled()) {
+				estados.put(frecuencia, EstadoFrecuencia.PLAZO_VENCIDO);
+			} else {
+				try {
+					resultados.add(simulacion.join());
+					estados.put(frecuencia, EstadoFrecuencia.COMPLETA);
+					continue;
+				} catch (final CompletionException e) {
+					LOG.warn("No se ha podido simular la frecuencia " + frecuencia, e.getCause());
+					estados.put(frecuencia, e.getCause() instanceof ExcepcionPlazoSimulacion
+							? EstadoFrecuencia.PLAZO_VENCIDO
+							: EstadoFrecuencia.FALLIDA);
+				}
+			}
+			resultados.add(ResultadoFrecuencia.sinResultado(frecuencia));
+		}
+
+		return resultados;
+	}
+
+	/**
+	 * @return la excepción con la que falla la simulación si no ha terminado bien
+	 *         ninguna frecuencia: la de la primera que ha fallado, o la de plazo
+	 *         vencido si ninguna ha fallado
+	 */
+	private CompletionException causaSinResultados(final List<CompletableFuture<ResultadoFrecuencia>> simulaciones) {
+		for (final CompletableFuture<ResultadoFrecuencia> simulacion : simulaciones) {
+			if (simulacion.isCompletedExceptionally() && !simulacion.isCancelled()) {
+				try {
+					simulacion.handle((resultado, error) -> tratarResultadoSimulacion(resultado, error)).join();
+				} catch (final CompletionException e) {
+					return e;
+				}
+			}
+		}
+
+		return new CompletionException(new ExcepcionPlazoSimulacion(MENSAJE_PLAZO_VENCIDO));
+	}
+
+	private static Map<FrecuenciaEnum, EstadoFrecuencia> estadosCompletos(
+			final Set<FrecuenciaEnum> frecuenciasTarificar) {
+		final Map<FrecuenciaEnum, EstadoFrecuencia> estados = new EnumMap<FrecuenciaEnum, EstadoFrecuencia>(
+				FrecuenciaEnum.class);
+
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			estados.put(frecuencia, frecuenciasTarificar.contains(frecuencia) ? EstadoFrecuencia.COMPLETA
+					: EstadoFrecuencia.NO_SOLICITADA);
+		}
+
+		return estados;
+	}
+
+	private Exception desenvolver(final CompletionException e) {
+		final Throwable causa = e.getCause();
+
+		if (causa instanceof Exception) {
+			return (Exception) causa;
+		}
+		if (causa instanceof Error) {
+			throw (Error) causa;
+		}
+		return e;
 	}
 
 	private Set<FrecuenciaEnum> calcularFrecuenciasTarificar(final DatosAlta oDatosAlta,
@@ -165,79 +551,199 @@ public class RealizarSimulacion {
 		return frecuenciasTarificar;
 	}
 
-	private TarificacionPoliza calcularRetornoPoliza(final DatosAlta oDatosAlta, final List<ProductoPolizas> lProductos,
-			final List<BeneficiarioPolizas> lBeneficiarios, final Map<String, Object> hmValores,
-			Set<FrecuenciaEnum> frecuenciasTarificar) throws ExcepcionContratacion {
+	/**
+	 * @return future con el resultado de cada frecuencia, en el orden de las
+	 *         frecuencias
+	 */
+	private CompletableFuture<List<ResultadoFrecuencia>> calcularResultadosFrecuencias(
+			final ContextoSimulacion contexto, final PlantillaSimulacion plantilla,
+			final CoordinadorPromocion coordinador, Set<FrecuenciaEnum> frecuenciasTarificar,
+			final PlazoSimulacion plazo) {
+
+		Collection<Callable<ResultadoFrecuencia>> solvers = calcularSolvers(contexto, plantilla, coordinador,
+				frecuenciasTarificar, plazo);
+
+		return calcularResultadoSimulaciones(solvers, plazo).thenApply(resultadoSimulaciones -> {
+			if (resultadoSimulaciones.isEmpty()) {
+				throw new CompletionException(new ExcepcionContratacion(
+						"No se ha podido obtener un precio para el presupuesto. Por favor, inténtelo de nuevo más tarde."));
+			}
 
-		Collection<Callable<TarificacionPoliza>> solvers = calcularSolvers(oDatosAlta, lProductos, lBeneficiarios,
-				hmValores, frecuenciasTarificar);
-		final List<TarificacionPoliza> resultadoSimulaciones = calcularResultadoSimulaciones(solvers);
+			return resultadoSimulaciones;
+		});
+	}
 
-		Predicate<TarificacionPoliza> evaluarTarificacionPolizaPredicate = new Predicate<TarificacionPoliza>() {
-			public boolean evaluate(final TarificacionPoliza object) {
-				return object != null && object.getTarificacion() != null;
-			}
-		};
+	private Collection<Callable<ResultadoFrecuencia>> calcularSolvers(final ContextoSimulacion contexto,
+			final PlantillaSimulacion plantilla, final CoordinadorPromocion coordinador,
+			Set<FrecuenciaEnum> frecuenciasTarificar, final PlazoSimulacion plazo) {
 
-		final TarificacionPoliza retornoPoliza = IterableUtils.find(resultadoSimulaciones,
-				evaluarTarificacionPolizaPredicate);
+		Collection<Callable<ResultadoFrecuencia>> solvers = new ArrayList<Callable<ResultadoFrecuencia>>();
 
-		if (retornoPoliza == null) {
-			throw new ExcepcionContratacion(
-					"No se ha podido obtener un precio para el presupuesto. Por favor, inténtelo de nuevo más tarde.");
+		for (final FrecuenciaEnum frecuencia : frecuenciasTarificar) {
+			solvers.add(simularPolizaFrecuencia(contexto, plantilla, coordinador, frecuencia, plazo));
 		}
 
-		return retornoPoliza;
+		return solvers;
 	}
 
-	private Collection<Callable<TarificacionPoliza>> calcularSolvers(final DatosAlta oDatosAlta,
-			final List<ProductoPolizas> lProductos, final List<BeneficiarioPolizas> lBeneficiarios,
-			final Map<String, Object> hmValores, Set<FrecuenciaEnum> frecuenciasTarificar) {
+	/**
+	 * Cada frecuencia trata su propia tarificación en cuanto la recibe, en el
+	 * mismo hilo del pool y mientras las demás siguen esperando al servicio.
+	 */
+	private Callable<ResultadoFrecuencia> simularPolizaFrecuencia(final ContextoSimulacion contexto,
+			final PlantillaSimulacion plantilla, final CoordinadorPromocion coordinador,
+			final FrecuenciaEnum frecuencia, final PlazoSimulacion plazo) {
+		return new Callable<ResultadoFrecuencia>() {
+
+			public ResultadoFrecuencia call() throws ExcepcionContratacion {
+				final TarificacionPoliza tarificacion = simular(plantilla, coordinador, frecuencia, plazo);
+
+				final long inicio = iniciarMedida();
+				final ResultadoFrecuencia resultado = procesarFrecuencia(contexto, frecuencia, tarificacion);
+				registrarTiempo(MetricaSimulacion.PROCESAR_FRECUENCIA, frecuencia.name(), inicio);
+				return resultado;
+			}
+		};
+	}
 
-		Collection<Callable<TarificacionPoliza>> solvers = new ArrayList<Callable<TarificacionPoliza>>();
+	TarificacionPoliza simular(final PlantillaSimulacion plantilla, final CoordinadorPromocion coordinador,
+			final FrecuenciaEnum frecuencia, final PlazoSimulacion plazo) throws ExcepcionContratacion {
+		// Un código ya rechazado en otra simulación no llega a enviarse: no hay
+		// reintento, sino la simulación sin código directamente
+		if (coordinador.isRechazoConocido()) {
+			comprobarPlazo(plazo);
+			return simularSinCodigoPromocional(plantilla, frecuencia, MetricaSimulacion.LLAMADA_SERVICIO);
+		}
 
-		for (final FrecuenciaEnum frecuencia : frecuenciasTarificar) {
-			solvers.add(simularPolizaFrecuencia(hmValores, oDatosAlta, lProductos, lBeneficiarios, frecuencia));
+		// Si otra frecuencia ya ha visto rechazado el código promocional no se
+		// vuelve a enviar
+		if (!coordinador.isCodigoRechazado()) {
+			comprobarPlazo(plazo);
+
+			final Simulacion simulacion = plantilla.paraFrecuencia(frecuencia);
+			final RESTResponse<Tarificacion, es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error> resultadoSimulacion = llamarServicio(
+					() -> coordinador.simularConCodigo(servicioSimulacion, simulacion),
+					MetricaSimulacion.LLAMADA_SERVICIO, frecuencia, true);
+
+			if (resultadoSimulacion != null) {
+				if (!comprobarCodigoPromocionalInvalido(resultadoSimulacion)) {
+					return tratarRespuesta(simulacion, resultadoSimulacion);
+				}
+
+				LOG.info(generarMensajeLog(simulacion, resultadoSimulacion.rawResponse));
+				registroMetricas.incrementar(MetricaSimulacion.ERRORES_SERVICIO, resultadoSimulacion.error.getCodigo());
+				if (coordinador.rechazarCodigo()) {
+					codigosRechazados.registrarRechazo(simulacion);
+				}
+			}
 		}
 
-		return solvers;
+		return repetirSimulacionSinCodigoPromocional(plantilla, frecuencia, plazo);
 	}
 
-	private Callable<TarificacionPoliza> simularPolizaFrecuencia(final Map<String, Object> hmValores,
-			final DatosAlta oDatosAlta, final List<ProductoPolizas> lProductos,
-			final List<BeneficiarioPolizas> lBeneficiarios, final FrecuenciaEnum frecuencia) {
-		return new Callable<TarificacionPoliza>() {
+	private TarificacionPoliza repetirSimulacionSinCodigoPromocional(final PlantillaSimulacion plantilla,
+			final FrecuenciaEnum frecuencia, final PlazoSimulacion plazo) throws ExcepcionContratacion {
+		comprobarPlazo(plazo);
 
-			public TarificacionPoliza call() throws ExcepcionContratacion {
-				return simular(hmValores, oDatosAlta, lProductos, lBeneficiarios, frecuencia);
+		final EventoReintentoPromocionJfr evento = JFR_DISPONIBLE ? new EventoReintentoPromocionJfr() : null;
+		if (evento != null) {
+			evento.begin();
+		}
+
+		try {
+			return simularSinCodigoPromocional(plantilla, frecuencia, MetricaSimulacion.REINTENTO_SIN_CODIGO);
+		} finally {
+			if (evento != null) {
+				evento.end();
+				if (evento.shouldCommit()) {
+					evento.frecuencia = frecuencia.name();
+					evento.codigoPromocional = obtenerCodigoPromocional(plantilla.getSimulacion());
+					evento.commit();
+				}
 			}
-		};
+		}
 	}
 
-	private TarificacionPoliza simular(final Map<String, Object> hmValores, final DatosAlta oDatosAlta,
-			final List<ProductoPolizas> lProductos, final List<BeneficiarioPolizas> lBeneficiarios,
-			final FrecuenciaEnum frecuencia) throws ExcepcionContratacion {
-		Simulacion simulacion = generarSimulacion(hmValores, oDatosAlta, lProductos, lBeneficiarios, frecuencia);
+	private TarificacionPoliza simularSinCodigoPromocional(final PlantillaSimulacion plantilla,
+			final FrecuenciaEnum frecuencia, final MetricaSimulacion metrica) throws ExcepcionContratacion {
+		final Simulacion simulacion = plantilla.sinCodigoPromocional().paraFrecuencia(frecuencia);
+		final TarificacionPoliza resultado = tratarRespuesta(simulacion,
+				llamarServicio(() -> servicioSimulacion.simular(simulacion), metrica, frecuencia, false));
+		resultado.setCodigoError(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL);
 
-		final RESTResponse<Tarificacion, es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error> resultadoSimulacion = servicioSimulacion
-				.simular(simulacion);
+		return resultado;
+	}
 
-		TarificacionPoliza tarificacionPoliza = new TarificacionPoliza();
+	/**
+	 * Llamada al servicio de simulación con su métrica y su evento JFR.
+	 */
+	private RESTResponse<Tarificacion, es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error> llamarServicio(
+			final Supplier<RESTResponse<Tarificacion, es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error>> llamada,
+			final MetricaSimulacion metrica, final FrecuenciaEnum frecuencia, final boolean conCodigoPromocional) {
+		final EventoLlamadaServicioJfr evento = JFR_DISPONIBLE ? new EventoLlamadaServicioJfr() : null;
+		if (evento != null) {
+			evento.begin();
+		}
+		final long inicio = iniciarMedida();
+		String codigoError = null;
 
-		if (comprobarTarificacionCorrecta(resultadoSimulacion)) {
-			tarificacionPoliza.setTarificacion(resultadoSimulacion.out);
-		} else if (comprobarCodigoPromocionalInvalido(resultadoSimulacion)) {
-			tarificacionPoliza = repetirSimulacionSinCodigoPromocional(hmValores, oDatosAlta, lProductos,
-					lBeneficiarios, frecuencia, simulacion, resultadoSimulacion);
-		} else {
+		try {
+			final RESTResponse<Tarificacion, es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error> respuesta = llamada.get();
+			if (respuesta != null && respuesta.hasError()) {
+				codigoError = respuesta.error.getCodigo();
+			}
+			return respuesta;
+		} catch (final RuntimeException e) {
+			codigoError = e.getClass().getSimpleName();
+			registroMetricas.incrementar(MetricaSimulacion.ERRORES_SERVICIO, codigoError);
+			throw e;
+		} finally {
+			registrarTiempo(metrica, frecuencia.name(), inicio);
+			if (evento != null) {
+				evento.end();
+				if (evento.shouldCommit()) {
+					evento.frecuencia = frecuencia.name();
+					evento.conCodigoPromocional = conCodigoPromocional;
+					evento.codigoError = codigoError;
+					evento.commit();
+				}
+			}
+		}
+	}
+
+	private String obtenerCodigoPromocional(final Simulacion simulacion) {
+		final InfoPromociones infoPromociones = simulacion.getInfoPromociones();
+		return infoPromociones != null && infoPromociones.getPromociones() != null
+				&& infoPromociones.getPromociones().length > 0 ? infoPromociones.getPromociones()[0].getIdPromocion()
+						: null;
+	}
+
+	private TarificacionPoliza tratarRespuesta(final Simulacion simulacion,
+			final RESTResponse<Tarificacion, es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error> resultadoSimulacion)
+			throws ExcepcionContratacion {
+		if (!comprobarTarificacionCorrecta(resultadoSimulacion)) {
+			registroMetricas.incrementar(MetricaSimulacion.ERRORES_SERVICIO,
+					resultadoSimulacion.error != null ? resultadoSimulacion.error.getCodigo() : null);
 			System.err.println(generarMensajeLog(simulacion, resultadoSimulacion.rawResponse));
 			throw new ExcepcionContratacion(resultadoSimulacion.error.getDescripcion());
 		}
 
+		final TarificacionPoliza tarificacionPoliza = new TarificacionPoliza();
+		tarificacionPoliza.setTarificacion(resultadoSimulacion.out);
 		return tarificacionPoliza;
 	}
 
-	private Simulacion generarSimulacion(final Map<String, Object> hmValores, final DatosAlta oDatosAlta,
+	/**
+	 * Una simulación que ha esperado en cola o un reintento pueden encontrarse el
+	 * plazo ya vencido: no tiene sentido llamar al servicio.
+	 */
+	private void comprobarPlazo(final PlazoSimulacion plazo) throws ExcepcionPlazoSimulacion {
+		if (plazo.vencido()) {
+			throw new ExcepcionPlazoSimulacion(MENSAJE_PLAZO_VENCIDO);
+		}
+	}
+
+	Simulacion generarSimulacion(final Map<String, Object> hmValores, final DatosAlta oDatosAlta,
 			final List<ProductoPolizas> lProductos, final List<BeneficiarioPolizas> lBeneficiarios,
 			final FrecuenciaEnum frecuencia) {
 		Simulacion simulacion = new Simulacion();
@@ -527,26 +1033,6 @@ public class RealizarSimulacion {
 				&& StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL.equalsIgnoreCase(response.error.getCodigo());
 	}
 
-	private TarificacionPoliza repetirSimulacionSinCodigoPromocional(final Map<String, Object> hmValores,
-			final DatosAlta oDatosAlta, final List<ProductoPolizas> lProductos,
-			final List<BeneficiarioPolizas> lBeneficiarios, final FrecuenciaEnum frecuencia, final Simulacion in,
-			final RESTResponse<Tarificacion, es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error> response)
-			throws ExcepcionContratacion {
-		TarificacionPoliza resultado;
-
-		if (oDatosAlta instanceof DatosAltaAsegurados) {
-			final DatosAltaAsegurados oDatosAltaAsegurados = (DatosAltaAsegurados) oDatosAlta;
-			oDatosAltaAsegurados.setCodigoPromocional(null);
-		}
-
-		LOG.info(generarMensajeLog(in, response.rawResponse));
-
-		resultado = simular(hmValores, oDatosAlta, lProductos, lBeneficiarios, frecuencia);
-		resultado.setCodigoError(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL);
-
-		return resultado;
-	}
-
 	private String generarMensajeLog(final Simulacion in, final String error) {
 		final StringBuffer sb = new StringBuffer();
 
@@ -562,155 +1048,314 @@ public class RealizarSimulacion {
 		return sb.toString();
 	}
 
-	private List<TarificacionPoliza> calcularResultadoSimulaciones(Collection<Callable<TarificacionPoliza>> solvers)
-			throws ExcepcionContratacion {
-		List<TarificacionPoliza> resultadoSimulaciones = new ArrayList<TarificacionPoliza>();
+	/**
+	 * Si alguna simulación falla, el future resultante se completa con la causa
+	 * del fallo una vez han terminado todas. Si el plazo vence antes, se cancelan
+	 * las simulaciones pendientes.
+	 */
+	private CompletableFuture<List<ResultadoFrecuencia>> calcularResultadoSimulaciones(
+			Collection<Callable<ResultadoFrecuencia>> solvers, final PlazoSimulacion plazo) {
+		final List<CompletableFuture<ResultadoFrecuencia>> simulaciones;
+
+		try {
+			simulaciones = sumbitSolvers(solvers, obtenerPool());
+		} catch (final ExcepcionContratacion e) {
+			return fallida(e);
+		}
 
-		CompletionService<TarificacionPoliza> ecs = new ExecutorCompletionService<TarificacionPoliza>(pool);
-		int solverExistoso = sumbitSolvers(solvers, ecs);
-		List<ExecutionException> resultadoExcepciones = new ArrayList<ExecutionException>();
+		final List<CompletableFuture<ResultadoFrecuencia>> resultados = new ArrayList<CompletableFuture<ResultadoFrecuencia>>();
 
-		for (int i = 0; i < solverExistoso; ++i) {
-			try {
-				final Future<TarificacionPoliza> future = ecs.poll(TIMEOUT, TimeUnit.SECONDS);
+		for (final CompletableFuture<ResultadoFrecuencia> simulacion : simulaciones) {
+			resultados.add(simulacion.handle((resultado, error) -> tratarResultadoSimulacion(resultado, error)));
+		}
 
-				if (future != null) {
-					resultadoSimulaciones.add(future.get());
-				} else {
-					LOG.error("La llamada asincrona al servicio de simulacion ha fallado por timeout");
+		final CompletableFuture<Void> todas = Temporizador.conPlazo(
+				CompletableFuture.allOf(resultados.toArray(new CompletableFuture<?>[0])), plazo.restanteNanos(),
+				TimeUnit.NANOSECONDS);
+
+		return todas.handle((ignorado, error) -> {
+			if (error instanceof TimeoutException) {
+				LOG.error("La simulación ha superado su plazo de {} ms, se cancelan las frecuencias pendientes",
+						milisegundosPlazo);
+				cancelarSolvers(simulaciones);
+				throw new CompletionException(new ExcepcionPlazoSimulacion(MENSAJE_PLAZO_VENCIDO));
+			}
+			if (error != null) {
+				throw error instanceof CompletionException ? (CompletionException) error
+						: new CompletionException(error);
+			}
+
+			final List<ResultadoFrecuencia> resultadoSimulaciones = new ArrayList<ResultadoFrecuencia>();
+
+			for (final CompletableFuture<ResultadoFrecuencia> resultado : resultados) {
+				if (resultado.join() != null) {
+					resultadoSimulaciones.add(resultado.join());
 				}
-			} catch (final InterruptedException e) {
-				LOG.error("InterruptedException", e);
-			} catch (final ExecutionException e) {
-				LOG.error("ExecutionException", e);
-				resultadoExcepciones.add(e);
 			}
+
+			return resultadoSimulaciones;
+		});
+	}
+
+	private ResultadoFrecuencia tratarResultadoSimulacion(final ResultadoFrecuencia resultado, final Throwable error) {
+		if (error == null) {
+			return resultado;
 		}
 
-		if (!resultadoExcepciones.isEmpty()) {
-			throw new ExcepcionContratacion(resultadoExcepciones.get(0).getCause().getMessage());
+		final Throwable causa = error instanceof CompletionException ? error.getCause() : error;
+
+		if (causa instanceof ExcepcionPlazoSimulacion) {
+			throw new CompletionException(causa);
 		}
 
-		return resultadoSimulaciones;
+		LOG.error("ExecutionException", causa);
+		throw new CompletionException(new ExcepcionContratacion(causa.getMessage()));
 	}
 
-	private int sumbitSolvers(Collection<Callable<TarificacionPoliza>> solvers,
-			CompletionService<TarificacionPoliza> ecs) {
-		int solverExistoso = 0;
+	private List<CompletableFuture<ResultadoFrecuencia>> sumbitSolvers(
+			Collection<Callable<ResultadoFrecuencia>> solvers, final ExecutorService pool)
+			throws ExcepcionContratacion {
+		final List<CompletableFuture<ResultadoFrecuencia>> enviados = new ArrayList<CompletableFuture<ResultadoFrecuencia>>();
 
-		for (final Callable<TarificacionPoliza> s : solvers) {
+		for (final Callable<ResultadoFrecuencia> s : solvers) {
 			try {
-				ecs.submit(s);
-				solverExistoso++;
-			} catch (final RuntimeException ree) {
+				enviados.add(enviarSolver(s, pool));
+			} catch (final RejectedExecutionException ree) {
 				LOG.error("RejectedExecutionException con el metodo " + s.toString(), ree);
+				registroMetricas.incrementar(MetricaSimulacion.RECHAZOS_POOL, null);
+				// Sin todas las frecuencias la simulación no está completa: se libera lo
+				// ya encolado y se falla rápido en lugar de esperar
+				cancelarSolvers(enviados);
+				throw new ExcepcionContratacion(
+						"El servicio de simulación está saturado. Por favor, inténtelo de nuevo más tarde.");
 			}
 		}
 
-		return solverExistoso;
+		return enviados;
 	}
 
-	private List<String> ejecutarSimulacion(final DatosAlta oDatosAlta, Set<FrecuenciaEnum> frecuenciasTarificar,
-			final TarificacionPoliza retornoPoliza) {
-		List<String> errores = new ArrayList<String>();
+	/**
+	 * Ejecuta el solver en el pool. Cancelar el future devuelto interrumpe la
+	 * tarea en el pool.
+	 */
+	private CompletableFuture<ResultadoFrecuencia> enviarSolver(final Callable<ResultadoFrecuencia> solver,
+			final ExecutorService pool) {
+		final CompletableFuture<ResultadoFrecuencia> simulacion = new CompletableFuture<ResultadoFrecuencia>();
+		final long encolada = iniciarMedida();
 
-		for (final FrecuenciaEnum frecuencia : frecuenciasTarificar) {
-			final Tarificacion retorno = validarTarificacionPoliza(retornoPoliza, errores);
+		final Future<?> tarea = pool.submit(() -> {
+			registrarTiempo(MetricaSimulacion.ESPERA_POOL, null, encolada);
+			try {
+				simulacion.complete(solver.call());
+			} catch (final Throwable e) {
+				simulacion.completeExceptionally(e);
+			}
+		});
 
-			int contadorBeneficiario = 0;
-			double css = 0;
+		simulacion.whenComplete((resultado, error) -> {
+			if (simulacion.isCancelled()) {
+				tarea.cancel(true);
+			}
+		});
 
-			for (final TarifaBeneficiario tarifaBeneficiario : retorno.getTarifas().getTarifaBeneficiarios()) {
-				List<PrimasPorProducto> listaProductoPorAseg = new ArrayList<PrimasPorProducto>();
+		return simulacion;
+	}
 
-				listaProductoPorAseg = procesarPrimas(contadorBeneficiario, listaProductoPorAseg);
+	private void cancelarSolvers(final List<CompletableFuture<ResultadoFrecuencia>> enviados) {
+		for (final CompletableFuture<ResultadoFrecuencia> future : enviados) {
+			future.cancel(true);
+		}
+	}
 
-				int contadorProducto = 0;
+	private static <T> CompletableFuture<T> fallida(final Throwable error) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(error);
+		return future;
+	}
 
-				for (final TarifaProducto tarifaProducto : tarifaBeneficiario.getTarifasProductos()) {
-					if (comprobarPromocionAplica(oDatosAlta, tarifaProducto)) {
-						css = aplicarPromocion(frecuencia, css, listaProductoPorAseg, contadorProducto, tarifaProducto);
-					}
+	private ExecutorService obtenerPool() {
+		ExecutorService resultado = pool;
 
-					contadorProducto++;
+		if (resultado == null) {
+			synchronized (this) {
+				resultado = pool;
+				if (resultado == null) {
+					resultado = configuracionPool.crearPool();
+					poolPropio = true;
+					pool = resultado;
 				}
-
-				contadorBeneficiario++;
 			}
-
-			// Promociones aplicadas a la simulación
-			promociones.add(recuperarPromocionesAgrupadas(retorno.getPromociones().getListaPromocionesPoliza(),
-					contadorBeneficiario));
-
-			procesarRecibosPrimerAño(precioConPromocion, recibos, frecuencia, retorno, css);
 		}
 
-		return errores;
+		return resultado;
 	}
 
-	private Tarificacion validarTarificacionPoliza(final TarificacionPoliza retornoPoliza, final List<String> errores) {
-		final String codigoError = retornoPoliza.getCodigoError();
+	/**
+	 * Cierra el pool creado por el bean al cerrarse el contexto de Spring. Las
+	 * simulaciones en curso disponen del tiempo de cierre configurado para
+	 * terminar; las que no lo hagan se interrumpen. Un pool inyectado lo cierra
+	 * quien lo haya creado.
+	 */
+	public void destroy() {
+		final ExecutorService poolACerrar;
+
+		synchronized (this) {
+			poolACerrar = poolPropio ? pool : null;
+		}
 
-		if (codigoError != null && !StringUtils.isEmpty(codigoError)) {
-			errores.add(codigoError);
+		if (poolACerrar == null) {
+			return;
 		}
 
-		return retornoPoliza.getTarificacion();
+		poolACerrar.shutdown();
+		try {
+			if (!poolACerrar.awaitTermination(configuracionPool.getSegundosCierre(), TimeUnit.SECONDS)) {
+				LOG.warn("Las simulaciones en curso no han terminado a tiempo, se interrumpen");
+				poolACerrar.shutdownNow();
+			}
+		} catch (final InterruptedException e) {
+			poolACerrar.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	private List<PrimasPorProducto> procesarPrimas(int contadorBeneficiario,
-			List<PrimasPorProducto> listaProductoPorAseg) {
-		if (primas.size() <= contadorBeneficiario) {
-			primas.add(new Primas());
+	/**
+	 * Calcula el resultado de una frecuencia con su propia tarificación. Sólo lee
+	 * del contexto: los acumuladores se rellenan al combinar las frecuencias.
+	 */
+	ResultadoFrecuencia procesarFrecuencia(final ContextoSimulacion contexto,
+			final FrecuenciaEnum frecuencia, final TarificacionPoliza tarificacionPoliza) {
+		final Tarificacion retorno = tarificacionPoliza.getTarificacion();
+		final List<List<ResultadoFrecuencia.PrimaProducto>> primasProducto = new ArrayList<List<ResultadoFrecuencia.PrimaProducto>>();
+
+		long descuentoTotal = 0;
+		long pagoTotal = 0;
+		long css = 0;
+
+		for (final TarifaBeneficiario tarifaBeneficiario : retorno.getTarifas().getTarifaBeneficiarios()) {
+			final List<ResultadoFrecuencia.PrimaProducto> primasAsegurado = new ArrayList<ResultadoFrecuencia.PrimaProducto>();
+
+			int contadorProducto = 0;
+
+			for (final TarifaProducto tarifaProducto : tarifaBeneficiario.getTarifasProductos()) {
+				if (contexto.getReglasPromocion().aplica(tarifaProducto.getIdProducto())) {
+					final TarifaDesglosada tarifaDesglosada = tarifaProducto.getTarifaDesglosada();
+					final long descuento = Centimos.desdeEuros(tarifaDesglosada.getDescuento());
+
+					css += Centimos.desdeEuros(tarifaDesglosada.getCss());// Se calcula el CSS total para poder calcular el precio con promoción
+
+					primasAsegurado.add(new ResultadoFrecuencia.PrimaProducto(contadorProducto, tarifaProducto,
+							calcularPrima(frecuencia, descuento)));
+
+					descuentoTotal += descuento;
+					pagoTotal += calcularPago(tarifaDesglosada) + descuento;
+				}
+
+				contadorProducto++;
+			}
+
+			primasProducto.add(primasAsegurado);
 		}
 
-		if (primasDesglosadas.size() > contadorBeneficiario) {
-			listaProductoPorAseg = primasDesglosadas.get(contadorBeneficiario);
-		} else {
-			primasDesglosadas.add(listaProductoPorAseg);
+		// Promociones aplicadas a la simulación
+		final List<PromocionAplicada> promociones = recuperarPromocionesAgrupadas(
+				retorno.getPromociones().getListaPromocionesPoliza(), primasProducto.size());
+
+		final Recibos recibosPrimerAño = retorno.getRecibos();
+		List<es.sanitas.soporte.Recibo> recibos = null;
+		long precioConPromocion = 0;
+
+		if (recibosPrimerAño != null) {
+			recibos = toReciboList(recibosPrimerAño.getListaRecibosProductos());
+			// Se calcula el precio total con promoción. Es el importe del primer recibo sin
+			// el impuesto del consorcio
+			precioConPromocion = Centimos
+					.desdeEuros(recibosPrimerAño.getReciboPoliza().getRecibos()[0].getImporte()) - css;
 		}
 
-		return listaProductoPorAseg;
+		return new ResultadoFrecuencia(frecuencia, tarificacionPoliza.getCodigoError(), primasProducto,
+				descuentoTotal, pagoTotal, promociones, recibos, precioConPromocion);
 	}
 
-	private boolean comprobarPromocionAplica(final DatosAlta oDatosAlta, final TarifaProducto tarifaProducto) {
-		return (tarifaProducto.getIdProducto() != 389
-				|| !listaContiene(lExcepciones, StaticVarsContratacion.PROMO_ECI_COLECTIVOS) || hayTarjetas(oDatosAlta))
-				&& tarifaProducto.getIdProducto() != 670
-				|| !listaContiene(lExcepciones, StaticVarsContratacion.PROMO_FARMACIA) || hayTarjetas(oDatosAlta);
-	}
+	/**
+	 * Vuelca en el contexto los resultados de las frecuencias en su orden. Las
+	 * primas por producto se comparten entre frecuencias y quedan con el valor de
+	 * la última.
+	 *
+	 * @return los códigos de error de las frecuencias
+	 */
+	List<String> combinarFrecuencias(final ContextoSimulacion contexto,
+			final List<ResultadoFrecuencia> resultados) {
+		final long inicio = iniciarMedida();
+		final List<String> errores = new ArrayList<String>();
 
-	private double aplicarPromocion(final FrecuenciaEnum frecuencia, double css,
-			List<PrimasPorProducto> listaProductoPorAseg, int contadorProducto, final TarifaProducto tarifaProducto) {
-		PrimasPorProducto oPrimasProducto;
+		for (final ResultadoFrecuencia resultado : resultados) {
+			final int indice = resultado.getFrecuencia().getValor() - 1;
+			final String codigoError = resultado.getCodigoError();
 
-		if (listaProductoPorAseg.size() > contadorProducto) {
-			oPrimasProducto = listaProductoPorAseg.get(contadorProducto);
-		} else {
-			oPrimasProducto = generarNuevaPrimaPorProducto(tarifaProducto);
-			listaProductoPorAseg.add(oPrimasProducto);
+			if (codigoError != null && !StringUtils.isEmpty(codigoError)) {
+				errores.add(codigoError);
+			}
+
+			int contadorBeneficiario = 0;
+
+			for (final List<ResultadoFrecuencia.PrimaProducto> primasAsegurado : resultado.getPrimasProducto()) {
+				final List<PrimasPorProducto> listaProductoPorAseg = procesarPrimas(contexto, contadorBeneficiario);
+
+				for (final ResultadoFrecuencia.PrimaProducto primaProducto : primasAsegurado) {
+					final PrimasPorProducto oPrimasProducto;
+
+					if (listaProductoPorAseg.size() > primaProducto.getPosicion()) {
+						oPrimasProducto = listaProductoPorAseg.get(primaProducto.getPosicion());
+					} else {
+						oPrimasProducto = generarNuevaPrimaPorProducto(contexto, primaProducto.getTarifaProducto());
+						listaProductoPorAseg.add(oPrimasProducto);
+					}
+
+					oPrimasProducto.getPrimaProducto().setPrima(Centimos.formatear(primaProducto.getCentimos()));
+				}
+
+				contadorBeneficiario++;
+			}
+
+			contexto.getDescuentosTotales()[indice] = resultado.getDescuentoTotal();
+			contexto.getPagoTotal()[indice] = resultado.getPagoTotal();
+			contexto.agregarPromociones(resultado.getPromociones());
+
+			if (resultado.getRecibos() != null) {
+				contexto.getRecibos().add(resultado.getRecibos());
+				contexto.getPrecioConPromocion()[indice] = resultado.getPrecioConPromocion();
+			}
 		}
 
-		final Primas primaProducto = oPrimasProducto.getPrimaProducto();
-		final TarifaDesglosada tarifaDesglosada = tarifaProducto.getTarifaDesglosada();
+		registrarTiempo(MetricaSimulacion.COMBINAR_FRECUENCIAS, null, inicio);
+		return errores;
+	}
 
-		css += tarifaDesglosada.getCss();// Se calcula el CSS total para poder calcular el precio con promoción
+	private List<PrimasPorProducto> procesarPrimas(final ContextoSimulacion contexto, int contadorBeneficiario) {
+		final List<Primas> primas = contexto.getPrimas();
+		final List<List<PrimasPorProducto>> primasDesglosadas = contexto.getPrimasDesglosadas();
 
-		aplicarDescuento(frecuencia, primaProducto, tarifaDesglosada);
+		if (primas.size() <= contadorBeneficiario) {
+			primas.add(new Primas());
+		}
 
-		descuentosTotales[frecuencia.getValor() - 1] += tarifaDesglosada.getDescuento();
-		pagoTotal[frecuencia.getValor() - 1] += calcularPago(tarifaDesglosada) + tarifaDesglosada.getDescuento();
+		if (primasDesglosadas.size() <= contadorBeneficiario) {
+			primasDesglosadas.add(new ArrayList<PrimasPorProducto>());
+		}
 
-		return css;
+		return primasDesglosadas.get(contadorBeneficiario);
 	}
 
-	private PrimasPorProducto generarNuevaPrimaPorProducto(final TarifaProducto tarifaProducto) {
+	private PrimasPorProducto generarNuevaPrimaPorProducto(final ContextoSimulacion contexto,
+			final TarifaProducto tarifaProducto) {
 		PrimasPorProducto oPrimasProducto = new PrimasPorProducto();
 
+		oPrimasProducto.setPrimaProducto(new Primas());
 		oPrimasProducto.setCodigoProducto(tarifaProducto.getIdProducto().intValue());
 		oPrimasProducto.setNombreProducto(tarifaProducto.getDescripcion());
 
-		final DatosPlanProducto producto = getDatosProducto(tarifaProducto.getIdProducto());
+		final DatosPlanProducto producto = getDatosProducto(contexto.getDatosPlan(), tarifaProducto.getIdProducto());
 
 		if (producto != null) {
 			oPrimasProducto.setObligatorio(producto.isSwObligatorio() ? "S" : "N");
@@ -720,37 +1365,26 @@ public class RealizarSimulacion {
 		return oPrimasProducto;
 	}
 
-	private DatosPlanProducto getDatosProducto(final long idProducto) {
-		for (final DatosPlanProducto producto : oDatosPlan.getProductos()) {
-			if (producto.getIdProducto() == idProducto) {
-				return producto;
-			}
-		}
-
-		return null;
+	private DatosPlanProducto getDatosProducto(final DatosContratacionPlan oDatosPlan, final long idProducto) {
+		return catalogoPlanes.obtener(oDatosPlan).getProducto(idProducto);
 	}
 
-	private void aplicarDescuento(final FrecuenciaEnum frecuencia, final Primas primaProducto,
-			final TarifaDesglosada tarifaDesglosada) {
-		final double descuento = tarifaDesglosada.getDescuento();
-
+	private long calcularPrima(final FrecuenciaEnum frecuencia, final long descuento) {
 		switch (frecuencia.getValor()) {
 		case 1:
 			// Mensual
-			primaProducto.setPrima("" + descuento);
-			break;
+			return descuento;
 		case 2:
 			// Trimestral
-			primaProducto.setPrima("" + descuento);
-			break;
+			return descuento;
 		case 3:
 			// Semestral
-			primaProducto.setPrima("" + descuento * 2);
-			break;
+			return descuento * 2;
 		case 4:
 			// Anual
-			primaProducto.setPrima("" + descuento * 2);
-			break;
+			return descuento * 2;
+		default:
+			return 0;
 		}
 	}
 
@@ -759,67 +1393,8 @@ public class RealizarSimulacion {
 	 * Compensación del Consorcio de Seguros sólo se aplica en la primera
 	 * mensualidad. Y queremos mostrar al usuario el precio de todos los meses.
 	 */
-	private double calcularPago(TarifaDesglosada tarifaDesglosada) {
-		return tarifaDesglosada.getPrima() + tarifaDesglosada.getISPrima();
-	}
-
-	private void procesarRecibosPrimerAño(Double[] precioConPromocion, List<List<es.sanitas.soporte.Recibo>> recibos,
-			final FrecuenciaEnum frecuencia, final Tarificacion retorno, double css) {
-		Recibos recibosPrimerAño = retorno.getRecibos();
-
-		if (recibosPrimerAño != null) {
-			recibos.add(toReciboList(recibosPrimerAño.getListaRecibosProductos()));
-			// Se calcula el precio total con promoción. Es el importe del primer recibo sin
-			// el impuesto del consorcio
-			precioConPromocion[frecuencia.getValor() - 1] = recibosPrimerAño.getReciboPoliza().getRecibos()[0]
-					.getImporte() - css;
-		}
-	}
-
-	private Map<String, Object> generarResultadosSimulacion(final boolean desglosar, final List<String> errores) {
-		final Map<String, Object> hmSimulacion = new HashMap<String, Object>();
-
-		hmSimulacion.put(StaticVarsContratacion.PRIMAS_SIMULACION, primas);
-		hmSimulacion.put(StaticVarsContratacion.PRIMAS_SIMULACION_DESGLOSE, primasDesglosadas);
-		hmSimulacion.put(StaticVarsContratacion.SIMULACION_PROVINCIA, "Madrid");
-		hmSimulacion.put(StaticVarsContratacion.HAY_DESGLOSE, desglosar);
-		hmSimulacion.put(StaticVarsContratacion.DESCUENTOS_TOTALES, descuentosTotales);
-		hmSimulacion.put(StaticVarsContratacion.TOTAL_ASEGURADOS, primas);
-		hmSimulacion.put(StaticVarsContratacion.PROMOCIONES_SIMULACION, promociones);
-		hmSimulacion.put(StaticVarsContratacion.RECIBOS_SIMULACION, recibos);
-		hmSimulacion.put(StaticVarsContratacion.PAGO_TOTAL, pagoTotal);
-		hmSimulacion.put(StaticVarsContratacion.ERROR, errores);
-
-		if (hayPromocionDescuento(promociones)) {
-			hmSimulacion.put(StaticVarsContratacion.PAGO_TOTAL, precioConPromocion);
-			hmSimulacion.put(StaticVarsContratacion.PRECIOS_SIN_PROMOCION_SIMULACION, pagoTotal);
-		}
-
-		return hmSimulacion;
-	}
-
-	/**
-	 * Comprueba si alguna de las promociones aplicadas en la simulación es un
-	 * descuento en la prima.
-	 *
-	 * @param out
-	 *            simulación múltiple realizada
-	 */
-	private boolean hayPromocionDescuento(final List<List<PromocionAplicada>> promocionesAplicadas) {
-		boolean codigoAplicado = Boolean.FALSE;
-
-		if (promocionesAplicadas != null) {
-			for (final List<PromocionAplicada> promociones : promocionesAplicadas) {
-				for (final PromocionAplicada promocion : promociones) {
-					if (promocion != null
-							&& TipoPromocionEnum.DESCUENTO_PORCENTAJE.equals(promocion.getTipoPromocion())) {
-						codigoAplicado = Boolean.TRUE;
-					}
-				}
-			}
-		}
-
-		return codigoAplicado;
+	private long calcularPago(TarifaDesglosada tarifaDesglosada) {
+		return Centimos.desdeEuros(tarifaDesglosada.getPrima()) + Centimos.desdeEuros(tarifaDesglosada.getISPrima());
 	}
 
 	private Producto[] obtenerProductos(final List<ProductoCobertura> productosCobertura,
@@ -864,27 +1439,7 @@ public class RealizarSimulacion {
 	}
 
 	private Cobertura[] obtenerCoberturas(final int idProducto, final DatosContratacionPlan oDatosPlan) {
-		final List<Cobertura> coberturas = new ArrayList<Cobertura>();
-
-		final Iterator<DatosPlanProducto> iteradorProdsPlan = oDatosPlan.getProductos().iterator();
-		boolean found = false;
-		while (iteradorProdsPlan.hasNext() && !found) {
-			final DatosPlanProducto productoPlan = iteradorProdsPlan.next();
-			if (idProducto == productoPlan.getIdProducto()) {
-				found = true;
-				for (final DatosCobertura oDatosCobertura : productoPlan.getCoberturas()) {
-					if (oDatosCobertura.isSwObligatorio() && oDatosCobertura.getCapitalMinimo() != null
-							&& oDatosCobertura.getCapitalMinimo() > 0) {
-						final Cobertura cobertura = new Cobertura();
-						cobertura.setCapital(Double.valueOf(oDatosCobertura.getCapitalMinimo()));
-						cobertura.setIdCobertura(oDatosCobertura.getIdCobertura().intValue());
-						coberturas.add(cobertura);
-					}
-				}
-			}
-		}
-
-		return coberturas.toArray(new Cobertura[0]);
+		return catalogoPlanes.obtener(oDatosPlan).getCoberturasObligatorias(idProducto);
 	}
 
 	/*
@@ -925,7 +1480,7 @@ public class RealizarSimulacion {
 	 * @param fecha
 	 * @return la nueva fecha
 	 **/
-	private String cambiarFecha(String fecha, final String fechaAlta) {
+	String cambiarFecha(String fecha, final String fechaAlta) {
 		String convertida = fecha;
 
 		if (fecha == null || "//".equals(fecha)) {
@@ -944,31 +1499,6 @@ public class RealizarSimulacion {
 		return convertida;
 	}
 
-	/**
-	 * @param oDatosAlta
-	 * @return true si el titular o alguno de los asegurados tiene tarjeta de
-	 *         sanitas.
-	 */
-	private boolean hayTarjetas(final DatosAlta oDatosAlta) {
-		boolean tieneTarjeta = false;
-		if (oDatosAlta != null && oDatosAlta.getTitular() != null) {
-			if ("S".equals(oDatosAlta.getTitular().getSwPolizaAnterior())) {
-				tieneTarjeta = true;
-			}
-		}
-		if (oDatosAlta != null && oDatosAlta.getAsegurados() != null && oDatosAlta.getAsegurados().size() > 0) {
-			@SuppressWarnings("unchecked")
-			final Iterator<DatosAseguradoInclusion> iterAseg = oDatosAlta.getAsegurados().iterator();
-			while (iterAseg.hasNext()) {
-				final DatosAsegurado aseg = iterAseg.next();
-				if ("S".equals(aseg.getSwPolizaAnterior())) {
-					tieneTarjeta = true;
-				}
-			}
-		}
-		return tieneTarjeta;
-	}
-
 	/**
 	 * Popula una lista de objetos PromocionAplicada con la información de las
 	 * promociones aplicadas.
@@ -1068,6 +1598,8 @@ public class RealizarSimulacion {
 		if (recibo != null) {
 			reciboParam = new es.sanitas.soporte.Recibo();
 			final Calendar fechaEmision = Calendar.getInstance();
+			// SimpleDateFormat no es thread-safe: se crea uno por uso
+			final SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
 			try {
 				fechaEmision.setTime(sdf.parse("25/12/2016"));
 			} catch (final ParseException e) {
@@ -1095,6 +1627,167 @@ public class RealizarSimulacion {
 		this.servicioSimulacion = servicioSimulacion;
 	}
 
+	/**
+	 * @return the catalogoPlanes
+	 */
+	public CatalogoPlanes getCatalogoPlanes() {
+		return catalogoPlanes;
+	}
+
+	/**
+	 * @param catalogoPlanes
+	 *            the catalogoPlanes to set
+	 */
+	public void setCatalogoPlanes(final CatalogoPlanes catalogoPlanes) {
+		this.catalogoPlanes = catalogoPlanes;
+	}
+
+	/**
+	 * @return the resultadosParciales
+	 */
+	public boolean isResultadosParciales() {
+		return resultadosParciales;
+	}
+
+	/**
+	 * @param resultadosParciales
+	 *            the resultadosParciales to set
+	 */
+	public void setResultadosParciales(final boolean resultadosParciales) {
+		this.resultadosParciales = resultadosParciales;
+	}
+
+	/**
+	 * @return the completarEnSegundoPlano
+	 */
+	public boolean isCompletarEnSegundoPlano() {
+		return completarEnSegundoPlano;
+	}
+
+	/**
+	 * @param completarEnSegundoPlano
+	 *            the completarEnSegundoPlano to set
+	 */
+	public void setCompletarEnSegundoPlano(final boolean completarEnSegundoPlano) {
+		this.completarEnSegundoPlano = completarEnSegundoPlano;
+	}
+
+	/**
+	 * @return the milisegundosSegundoPlano
+	 */
+	public long getMilisegundosSegundoPlano() {
+		return milisegundosSegundoPlano;
+	}
+
+	/**
+	 * @param milisegundosSegundoPlano
+	 *            the milisegundosSegundoPlano to set
+	 */
+	public void setMilisegundosSegundoPlano(final long milisegundosSegundoPlano) {
+		this.milisegundosSegundoPlano = milisegundosSegundoPlano;
+	}
+
+	/**
+	 * @return the controladorBrownout
+	 */
+	public ControladorBrownout getControladorBrownout() {
+		return controladorBrownout;
+	}
+
+	/**
+	 * @param controladorBrownout
+	 *            the controladorBrownout to set
+	 */
+	public void setControladorBrownout(final ControladorBrownout controladorBrownout) {
+		this.controladorBrownout = controladorBrownout;
+	}
+
+	/**
+	 * @return the codigosRechazados
+	 */
+	public CodigosPromocionalesRechazados getCodigosRechazados() {
+		return codigosRechazados;
+	}
+
+	/**
+	 * @param codigosRechazados
+	 *            the codigosRechazados to set
+	 */
+	public void setCodigosRechazados(final CodigosPromocionalesRechazados codigosRechazados) {
+		this.codigosRechazados = codigosRechazados;
+	}
+
+	/**
+	 * @return the registroMetricas
+	 */
+	public RegistroMetricas getRegistroMetricas() {
+		return registroMetricas;
+	}
+
+	/**
+	 * Registro al que se envían los tiempos por fase y los contadores de la
+	 * simulación. Registra también los indicadores del pool.
+	 *
+	 * @param registroMetricas
+	 *            the registroMetricas to set
+	 */
+	public void setRegistroMetricas(final RegistroMetricas registroMetricas) {
+		this.registroMetricas = registroMetricas;
+		registroMetricas.registrarIndicador(MetricaSimulacion.HILOS_ACTIVOS, this::hilosActivos);
+		registroMetricas.registrarIndicador(MetricaSimulacion.TAREAS_EN_COLA, this::tareasEnCola);
+	}
+
+	/**
+	 * @return the milisegundosPlazo
+	 */
+	public long getMilisegundosPlazo() {
+		return milisegundosPlazo;
+	}
+
+	/**
+	 * @param milisegundosPlazo
+	 *            tiempo máximo de una simulación completa, incluidas todas sus
+	 *            frecuencias
+	 */
+	public void setMilisegundosPlazo(final long milisegundosPlazo) {
+		this.milisegundosPlazo = milisegundosPlazo;
+	}
+
+	/**
+	 * @return the configuracionPool
+	 */
+	public ConfiguracionPoolSimulacion getConfiguracionPool() {
+		return configuracionPool;
+	}
+
+	/**
+	 * Configuración con la que se crea el pool propio del bean. No tiene efecto si
+	 * se inyecta un pool con {@link #setPool(ExecutorService)} o si el pool ya se
+	 * ha creado.
+	 *
+	 * @param configuracionPool
+	 *            the configuracionPool to set
+	 */
+	public void setConfiguracionPool(final ConfiguracionPoolSimulacion configuracionPool) {
+		this.configuracionPool = configuracionPool;
+	}
+
+	/**
+	 * Inyecta el pool en el que se ejecutan las simulaciones por frecuencia. Su
+	 * ciclo de vida corresponde a quien lo inyecta. Si el bean ya había creado su
+	 * propio pool, éste se cierra dejando terminar las simulaciones en curso.
+	 *
+	 * @param pool
+	 *            the pool to set
+	 */
+	public synchronized void setPool(final ExecutorService pool) {
+		if (poolPropio && this.pool != null && this.pool != pool) {
+			this.pool.shutdown();
+		}
+		this.pool = pool;
+		this.poolPropio = false;
+	}
+
 	/**
 	 * Comprueba si pertenece la excepcion a la lista.
 	 *
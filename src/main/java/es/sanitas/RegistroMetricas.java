@@ -0,0 +1,58 @@
+package es.sanitas;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Destino de las métricas de la simulación. Se implementa para adaptarlas al
+ * sistema de monitorización que se use.
+ *
+ * Las llamadas llegan desde los hilos del pool y desde los que completan las
+ * simulaciones: las implementaciones deben ser thread-safe y no bloquear.
+ */
+public interface RegistroMetricas {
+
+	/**
+	 * Registro que descarta todas las métricas. Con él la simulación ni siquiera
+	 * lee el reloj.
+	 */
+	RegistroMetricas NINGUNO = new RegistroMetricas() {
+
+		public boolean isActivo() {
+			return false;
+		}
+
+		public void registrarTiempo(final MetricaSimulacion metrica, final String etiqueta, final long nanos) {
+		}
+
+		public void incrementar(final MetricaSimulacion metrica, final String etiqueta) {
+		}
+
+		public void registrarIndicador(final MetricaSimulacion metrica, final LongSupplier valor) {
+		}
+	};
+
+	/**
+	 * @return false si las métricas se descartan y no merece la pena medir
+	 */
+	boolean isActivo();
+
+	/**
+	 * @param etiqueta
+	 *            subdivisión de la métrica, por ejemplo la frecuencia; puede ser
+	 *            null
+	 */
+	void registrarTiempo(MetricaSimulacion metrica, String etiqueta, long nanos);
+
+	/**
+	 * @param etiqueta
+	 *            subdivisión de la métrica, por ejemplo el código de error; puede
+	 *            ser null
+	 */
+	void incrementar(MetricaSimulacion metrica, String etiqueta);
+
+	/**
+	 * Registra un valor que el sistema de monitorización consulta cuando lo
+	 * necesita.
+	 */
+	void registrarIndicador(MetricaSimulacion metrica, LongSupplier valor);
+}
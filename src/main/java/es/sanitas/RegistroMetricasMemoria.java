@@ -0,0 +1,76 @@
+package es.sanitas;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link RegistroMetricas} que acumula en memoria el número y el tiempo total de
+ * cada métrica y etiqueta. Sirve para pruebas y para publicar las métricas a
+ * mano, por ejemplo desde JMX o un endpoint de estado.
+ */
+public class RegistroMetricasMemoria implements RegistroMetricas {
+
+	private final Map<String, LongAdder> numeros = new ConcurrentHashMap<String, LongAdder>();
+	private final Map<String, LongAdder> nanos = new ConcurrentHashMap<String, LongAdder>();
+	private final Map<MetricaSimulacion, LongSupplier> indicadores = new ConcurrentHashMap<MetricaSimulacion, LongSupplier>();
+
+	public boolean isActivo() {
+		return true;
+	}
+
+	public void registrarTiempo(final MetricaSimulacion metrica, final String etiqueta, final long nanos) {
+		final String clave = clave(metrica, etiqueta);
+		acumulador(this.numeros, clave).increment();
+		acumulador(this.nanos, clave).add(nanos);
+	}
+
+	public void incrementar(final MetricaSimulacion metrica, final String etiqueta) {
+		acumulador(numeros, clave(metrica, etiqueta)).increment();
+	}
+
+	public void registrarIndicador(final MetricaSimulacion metrica, final LongSupplier valor) {
+		indicadores.put(metrica, valor);
+	}
+
+	/**
+	 * @return veces que se ha registrado la métrica con la etiqueta
+	 */
+	public long getNumero(final MetricaSimulacion metrica, final String etiqueta) {
+		final LongAdder numero = numeros.get(clave(metrica, etiqueta));
+		return numero != null ? numero.sum() : 0L;
+	}
+
+	/**
+	 * @return tiempo total registrado para la métrica con la etiqueta
+	 */
+	public long getNanos(final MetricaSimulacion metrica, final String etiqueta) {
+		final LongAdder total = nanos.get(clave(metrica, etiqueta));
+		return total != null ? total.sum() : 0L;
+	}
+
+	/**
+	 * @return valor actual del indicador, o -1 si no se ha registrado
+	 */
+	public long getIndicador(final MetricaSimulacion metrica) {
+		final LongSupplier indicador = indicadores.get(metrica);
+		return indicador != null ? indicador.getAsLong() : -1L;
+	}
+
+	private static String clave(final MetricaSimulacion metrica, final String etiqueta) {
+		return etiqueta == null ? metrica.getNombre() : metrica.getNombre() + '.' + etiqueta;
+	}
+
+	private static LongAdder acumulador(final Map<String, LongAdder> acumuladores, final String clave) {
+		LongAdder acumulador = acumuladores.get(clave);
+		if (acumulador == null) {
+			final LongAdder nuevo = new LongAdder();
+			acumulador = acumuladores.putIfAbsent(clave, nuevo);
+			if (acumulador == null) {
+				acumulador = nuevo;
+			}
+		}
+		return acumulador;
+	}
+}
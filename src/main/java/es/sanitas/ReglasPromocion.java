@@ -0,0 +1,81 @@
+package es.sanitas;
+
+import java.util.Iterator;
+import java.util.List;
+
+import es.sanitas.soporte.DatosAseguradoInclusion;
+import es.sanitas.soporte.StaticVarsContratacion;
+import wscontratacion.contratacion.fuentes.parametros.DatosAlta;
+import wscontratacion.contratacion.fuentes.parametros.DatosAsegurado;
+
+/**
+ * Reglas que deciden si las promociones se aplican a un producto, evaluadas una
+ * sola vez por simulación a partir de las excepciones del plan y de los
+ * asegurados.
+ *
+ * Las promociones se aplican a todos los productos salvo cuando está activa la
+ * excepción de farmacia y ningún asegurado tiene tarjeta (póliza anterior). En
+ * ese caso se excluye el producto de farmacia y, si además está activa la
+ * excepción de colectivos ECI, también el producto ECI.
+ */
+final class ReglasPromocion {
+
+	static final long ID_PRODUCTO_ECI_COLECTIVOS = 389L;
+	static final long ID_PRODUCTO_FARMACIA = 670L;
+
+	private static final ReglasPromocion TODOS = new ReglasPromocion(false, false);
+
+	// Como mucho se excluyen dos productos: se comparan directamente para no
+	// envolver el identificador en cada producto simulado
+	private final boolean excluyeFarmacia;
+	private final boolean excluyeEci;
+
+	private ReglasPromocion(final boolean excluyeFarmacia, final boolean excluyeEci) {
+		this.excluyeFarmacia = excluyeFarmacia;
+		this.excluyeEci = excluyeEci;
+	}
+
+	/**
+	 * @param lExcepciones
+	 *            excepciones del plan; puede ser null
+	 * @param oDatosAlta
+	 *            datos del alta; puede ser null
+	 */
+	static ReglasPromocion compilar(final List<String> lExcepciones, final DatosAlta oDatosAlta) {
+		if (!RealizarSimulacion.listaContiene(lExcepciones, StaticVarsContratacion.PROMO_FARMACIA)
+				|| hayTarjetas(oDatosAlta)) {
+			return TODOS;
+		}
+
+		return new ReglasPromocion(true,
+				RealizarSimulacion.listaContiene(lExcepciones, StaticVarsContratacion.PROMO_ECI_COLECTIVOS));
+	}
+
+	/**
+	 * @return true si las promociones se aplican al producto
+	 */
+	boolean aplica(final long idProducto) {
+		return !(excluyeFarmacia && idProducto == ID_PRODUCTO_FARMACIA)
+				&& !(excluyeEci && idProducto == ID_PRODUCTO_ECI_COLECTIVOS);
+	}
+
+	private static boolean hayTarjetas(final DatosAlta oDatosAlta) {
+		boolean tieneTarjeta = false;
+		if (oDatosAlta != null && oDatosAlta.getTitular() != null) {
+			if ("S".equals(oDatosAlta.getTitular().getSwPolizaAnterior())) {
+				tieneTarjeta = true;
+			}
+		}
+		if (oDatosAlta != null && oDatosAlta.getAsegurados() != null && oDatosAlta.getAsegurados().size() > 0) {
+			@SuppressWarnings("unchecked")
+			final Iterator<DatosAseguradoInclusion> iterAseg = oDatosAlta.getAsegurados().iterator();
+			while (iterAseg.hasNext()) {
+				final DatosAsegurado aseg = iterAseg.next();
+				if ("S".equals(aseg.getSwPolizaAnterior())) {
+					tieneTarjeta = true;
+				}
+			}
+		}
+		return tieneTarjeta;
+	}
+}
@@ -0,0 +1,125 @@
+package es.sanitas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaProducto;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.PromocionAplicada;
+import es.sanitas.soporte.Recibo;
+
+/**
+ * Resultado parcial de la simulación de una frecuencia de pago, calculado a
+ * partir de su propia tarificación en cuanto ésta llega.
+ *
+ * No se modifica una vez construido: las frecuencias se tratan en paralelo
+ * cada una sobre su resultado, y se combinan después en el
+ * {@link ContextoSimulacion} en el orden de las frecuencias.
+ */
+final class ResultadoFrecuencia {
+
+	private final FrecuenciaEnum frecuencia;
+	private final String codigoError;
+	private final List<List<PrimaProducto>> primasProducto;
+	private final long descuentoTotal;
+	private final long pagoTotal;
+	private final List<PromocionAplicada> promociones;
+	private final List<Recibo> recibos;
+	private final long precioConPromocion;
+
+	/**
+	 * @param primasProducto
+	 *            primas de los productos con promoción de cada asegurado
+	 * @param recibos
+	 *            recibos del primer año, o null si el servicio no los ha devuelto
+	 * @param precioConPromocion
+	 *            importe del primer recibo sin consorcio; sólo tiene sentido si
+	 *            hay recibos
+	 */
+	ResultadoFrecuencia(final FrecuenciaEnum frecuencia, final String codigoError,
+			final List<List<PrimaProducto>> primasProducto, final long descuentoTotal, final long pagoTotal,
+			final List<PromocionAplicada> promociones, final List<Recibo> recibos, final long precioConPromocion) {
+		this.frecuencia = frecuencia;
+		this.codigoError = codigoError;
+		this.primasProducto = primasProducto;
+		this.descuentoTotal = descuentoTotal;
+		this.pagoTotal = pagoTotal;
+		this.promociones = promociones;
+		this.recibos = recibos;
+		this.precioConPromocion = precioConPromocion;
+	}
+
+	/**
+	 * @return resultado vacío de una frecuencia pedida que no ha terminado bien:
+	 *         sin primas, con los totales a cero y sin promociones ni recibos
+	 */
+	static ResultadoFrecuencia sinResultado(final FrecuenciaEnum frecuencia) {
+		return new ResultadoFrecuencia(frecuencia, null, new ArrayList<List<PrimaProducto>>(), 0L, 0L,
+				new ArrayList<PromocionAplicada>(), new ArrayList<Recibo>(), 0L);
+	}
+
+	FrecuenciaEnum getFrecuencia() {
+		return frecuencia;
+	}
+
+	String getCodigoError() {
+		return codigoError;
+	}
+
+	/**
+	 * @return por asegurado, las primas de los productos a los que se aplica la
+	 *         promoción
+	 */
+	List<List<PrimaProducto>> getPrimasProducto() {
+		return primasProducto;
+	}
+
+	long getDescuentoTotal() {
+		return descuentoTotal;
+	}
+
+	long getPagoTotal() {
+		return pagoTotal;
+	}
+
+	List<PromocionAplicada> getPromociones() {
+		return promociones;
+	}
+
+	List<Recibo> getRecibos() {
+		return recibos;
+	}
+
+	long getPrecioConPromocion() {
+		return precioConPromocion;
+	}
+
+	/**
+	 * Prima de un producto en la frecuencia, con su posición entre los productos
+	 * del asegurado.
+	 */
+	static final class PrimaProducto {
+
+		private final int posicion;
+		private final TarifaProducto tarifaProducto;
+		private final long centimos;
+
+		PrimaProducto(final int posicion, final TarifaProducto tarifaProducto, final long centimos) {
+			this.posicion = posicion;
+			this.tarifaProducto = tarifaProducto;
+			this.centimos = centimos;
+		}
+
+		int getPosicion() {
+			return posicion;
+		}
+
+		TarifaProducto getTarifaProducto() {
+			return tarifaProducto;
+		}
+
+		long getCentimos() {
+			return centimos;
+		}
+	}
+}
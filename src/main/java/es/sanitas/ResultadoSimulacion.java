@@ -0,0 +1,237 @@
+package es.sanitas;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.documentacion.Primas;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.PrimasPorProducto;
+import es.sanitas.soporte.PromocionAplicada;
+import es.sanitas.soporte.Recibo;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+/**
+ * Resultado de una simulación con los totales por frecuencia de pago.
+ *
+ * Los totales se guardan en céntimos, en arrays indexados por
+ * {@code frecuencia.getValor() - 1}, y se devuelven en euros.
+ * {@link #comoMapa()} construye el mapa con las claves de
+ * {@link StaticVarsContratacion} que devuelve
+ * {@link RealizarSimulacion#realizarSimulacion}.
+ *
+ * Con resultados parciales algunas frecuencias pueden no estar completas: sus
+ * totales quedan a cero, sus promociones y recibos son listas vacías en su
+ * posición y su estado indica por qué.
+ */
+public final class ResultadoSimulacion {
+
+	private static final String PROVINCIA = "Madrid";
+
+	private final List<Primas> primas;
+	private final List<List<PrimasPorProducto>> primasDesglosadas;
+	private final long[] descuentosTotales;
+	private final long[] precioSinPromocion;
+	private final long[] precioConPromocion;
+	private final List<List<PromocionAplicada>> promociones;
+	private final List<List<Recibo>> recibos;
+	private final List<String> errores;
+	private final boolean desglosar;
+	private final boolean promocionDescuento;
+	private final boolean reducida;
+	private final Map<FrecuenciaEnum, EstadoFrecuencia> estados;
+	private final CompletableFuture<ResultadoSimulacion> resultadoCompleto;
+
+	/**
+	 * @param resultadoCompleto
+	 *            resultado que se completará con las frecuencias pendientes, o
+	 *            null si no queda ninguna
+	 */
+	ResultadoSimulacion(final ContextoSimulacion contexto, final boolean desglosar, final List<String> errores,
+			final Map<FrecuenciaEnum, EstadoFrecuencia> estados,
+			final CompletableFuture<ResultadoSimulacion> resultadoCompleto) {
+		primas = contexto.getPrimas();
+		primasDesglosadas = contexto.getPrimasDesglosadas();
+		descuentosTotales = contexto.getDescuentosTotales();
+		precioSinPromocion = contexto.getPagoTotal();
+		precioConPromocion = contexto.getPrecioConPromocion();
+		promociones = contexto.getPromociones();
+		recibos = contexto.getRecibos();
+		promocionDescuento = contexto.hayPromocionDescuento();
+		reducida = contexto.isReducida();
+		this.desglosar = desglosar;
+		this.errores = errores;
+		this.estados = Collections.unmodifiableMap(new EnumMap<FrecuenciaEnum, EstadoFrecuencia>(estados));
+		this.resultadoCompleto = resultadoCompleto != null ? resultadoCompleto
+				: CompletableFuture.completedFuture(this);
+	}
+
+	/**
+	 * @return las primas por asegurado
+	 */
+	public List<Primas> getPrimas() {
+		return primas;
+	}
+
+	/**
+	 * @return las primas por producto de cada asegurado
+	 */
+	public List<List<PrimasPorProducto>> getPrimasDesglosadas() {
+		return primasDesglosadas;
+	}
+
+	/**
+	 * @return el descuento total en la frecuencia indicada
+	 */
+	public double getDescuentoTotal(final FrecuenciaEnum frecuencia) {
+		return Centimos.aEuros(descuentosTotales[frecuencia.getValor() - 1]);
+	}
+
+	/**
+	 * @return el precio total sin promociones en la frecuencia indicada
+	 */
+	public double getPrecioSinPromocion(final FrecuenciaEnum frecuencia) {
+		return Centimos.aEuros(precioSinPromocion[frecuencia.getValor() - 1]);
+	}
+
+	/**
+	 * @return el precio total con promociones (primer recibo sin consorcio) en la
+	 *         frecuencia indicada
+	 */
+	public double getPrecioConPromocion(final FrecuenciaEnum frecuencia) {
+		return Centimos.aEuros(precioConPromocion[frecuencia.getValor() - 1]);
+	}
+
+	/**
+	 * @return el precio a mostrar en la frecuencia indicada: con promoción si se
+	 *         ha aplicado algún descuento, sin promoción en otro caso
+	 */
+	public double getPagoTotal(final FrecuenciaEnum frecuencia) {
+		return promocionDescuento ? getPrecioConPromocion(frecuencia) : getPrecioSinPromocion(frecuencia);
+	}
+
+	/**
+	 * @return las promociones aplicadas en cada frecuencia
+	 */
+	public List<List<PromocionAplicada>> getPromociones() {
+		return promociones;
+	}
+
+	/**
+	 * @return los recibos del primer año en cada frecuencia
+	 */
+	public List<List<Recibo>> getRecibos() {
+		return recibos;
+	}
+
+	/**
+	 * @return los códigos de error de la simulación
+	 */
+	public List<String> getErrores() {
+		return errores;
+	}
+
+	/**
+	 * @return true si se ha pedido el desglose por producto
+	 */
+	public boolean isDesglosar() {
+		return desglosar;
+	}
+
+	/**
+	 * @return true si alguna promoción aplicada es un descuento en la prima
+	 */
+	public boolean isPromocionDescuento() {
+		return promocionDescuento;
+	}
+
+	/**
+	 * @return el estado de la frecuencia indicada
+	 */
+	public EstadoFrecuencia getEstado(final FrecuenciaEnum frecuencia) {
+		return estados.get(frecuencia);
+	}
+
+	/**
+	 * @return el estado de cada frecuencia
+	 */
+	public Map<FrecuenciaEnum, EstadoFrecuencia> getEstados() {
+		return estados;
+	}
+
+	/**
+	 * @return true si por saturación se ha simulado una sola frecuencia en lugar
+	 *         de todas
+	 */
+	public boolean isReducida() {
+		return reducida;
+	}
+
+	/**
+	 * @return true si alguna frecuencia pedida no está completa
+	 */
+	public boolean isParcial() {
+		for (final EstadoFrecuencia estado : estados.values()) {
+			if (estado != EstadoFrecuencia.COMPLETA && estado != EstadoFrecuencia.NO_SOLICITADA) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return future con el resultado que incluye las frecuencias que se siguen
+	 *         simulando en segundo plano. Si no hay ninguna pendiente está ya
+	 *         completado con este mismo resultado
+	 */
+	public CompletableFuture<ResultadoSimulacion> getResultadoCompleto() {
+		return resultadoCompleto;
+	}
+
+	/**
+	 * @return mapa modificable y serializable con las claves de
+	 *         {@link StaticVarsContratacion}; los cambios que haga el llamante no
+	 *         afectan al resultado tipado
+	 */
+	public Map<String, Object> comoMapa() {
+		final Map<String, Object> hmSimulacion = new HashMap<String, Object>();
+		final Double[] pagoTotal = aObjetos(precioSinPromocion);
+
+		hmSimulacion.put(StaticVarsContratacion.PRIMAS_SIMULACION, primas);
+		hmSimulacion.put(StaticVarsContratacion.PRIMAS_SIMULACION_DESGLOSE, primasDesglosadas);
+		hmSimulacion.put(StaticVarsContratacion.SIMULACION_PROVINCIA, PROVINCIA);
+		hmSimulacion.put(StaticVarsContratacion.HAY_DESGLOSE, desglosar);
+		hmSimulacion.put(StaticVarsContratacion.DESCUENTOS_TOTALES, aObjetos(descuentosTotales));
+		hmSimulacion.put(StaticVarsContratacion.TOTAL_ASEGURADOS, primas);
+		hmSimulacion.put(StaticVarsContratacion.PROMOCIONES_SIMULACION, promociones);
+		hmSimulacion.put(StaticVarsContratacion.RECIBOS_SIMULACION, recibos);
+		hmSimulacion.put(StaticVarsContratacion.PAGO_TOTAL, pagoTotal);
+		hmSimulacion.put(StaticVarsContratacion.ERROR, errores);
+
+		if (promocionDescuento) {
+			hmSimulacion.put(StaticVarsContratacion.PAGO_TOTAL, aObjetos(precioConPromocion));
+			hmSimulacion.put(StaticVarsContratacion.PRECIOS_SIN_PROMOCION_SIMULACION, pagoTotal);
+		}
+
+		if (reducida) {
+			hmSimulacion.put(StaticVarsContratacion.SIMULACION_REDUCIDA, Boolean.TRUE);
+		}
+
+		if (isParcial()) {
+			hmSimulacion.put(StaticVarsContratacion.ESTADOS_FRECUENCIA_SIMULACION, estados);
+		}
+
+		return hmSimulacion;
+	}
+
+	private static Double[] aObjetos(final long[] centimos) {
+		final Double[] objetos = new Double[centimos.length];
+		for (int i = 0; i < centimos.length; i++) {
+			objetos[i] = Centimos.aEuros(centimos[i]);
+		}
+		return objetos;
+	}
+}
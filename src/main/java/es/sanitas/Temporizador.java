@@ -0,0 +1,75 @@
+package es.sanitas;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Plazos máximos sobre {@link CompletableFuture} (Java 8 no dispone de
+ * {@code orTimeout}). Un único hilo daemon programa el vencimiento de todos los
+ * plazos; las tareas vencidas o canceladas se eliminan de la cola.
+ *
+ * El future vencido no se completa en el hilo del temporizador: las etapas
+ * encadenadas sin {@code Async} se ejecutan en el hilo que completa el future,
+ * y en el temporizador retrasarían el vencimiento de todos los demás plazos.
+ * Tampoco en el pool de la simulación, donde esperaría en cola detrás de las
+ * mismas frecuencias que tiene que cancelar. Se completa en un ejecutor propio
+ * cuyos hilos se crean según hacen falta.
+ */
+final class Temporizador {
+
+	private static final ScheduledThreadPoolExecutor PROGRAMADOR = crearProgramador();
+
+	private static final ExecutorService VENCIMIENTOS = Executors
+			.newCachedThreadPool(hilosDaemon("simulacion-poliza-vencimiento"));
+
+	private Temporizador() {
+	}
+
+	/**
+	 * Completa {@code future} con una {@link TimeoutException} si no ha terminado
+	 * en el plazo indicado.
+	 *
+	 * @return el mismo future, para poder encadenarlo
+	 */
+	static <T> CompletableFuture<T> conPlazo(final CompletableFuture<T> future, final long plazo,
+			final TimeUnit unidad) {
+		if (future.isDone()) {
+			return future;
+		}
+
+		final ScheduledFuture<?> vencimiento = PROGRAMADOR.schedule(() -> vencer(future), plazo, unidad);
+
+		future.whenComplete((resultado, error) -> vencimiento.cancel(false));
+
+		return future;
+	}
+
+	private static void vencer(final CompletableFuture<?> future) {
+		if (future.isDone()) {
+			return;
+		}
+
+		VENCIMIENTOS.execute(() -> future.completeExceptionally(new TimeoutException()));
+	}
+
+	private static ScheduledThreadPoolExecutor crearProgramador() {
+		final ScheduledThreadPoolExecutor programador = new ScheduledThreadPoolExecutor(1,
+				hilosDaemon("simulacion-poliza-temporizador"));
+		programador.setRemoveOnCancelPolicy(true);
+		return programador;
+	}
+
+	private static ThreadFactory hilosDaemon(final String nombre) {
+		return r -> {
+			final Thread hilo = new Thread(r, nombre);
+			hilo.setDaemon(true);
+			return hilo;
+		};
+	}
+}
@@ -0,0 +1,22 @@
+package es.sanitas.servicio;
+
+/**
+ * El servicio de simulación no admite la llamada: el circuito está abierto o
+ * se ha alcanzado el máximo de llamadas concurrentes. Se lanza sin llegar a
+ * llamar al servicio.
+ */
+public class ExcepcionServicioNoDisponible extends RuntimeException {
+
+	/** La constante serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instancia una nueva excepción de servicio no disponible.
+	 *
+	 * @param msg
+	 *            el msg
+	 */
+	public ExcepcionServicioNoDisponible(final String msg) {
+		super(msg);
+	}
+}
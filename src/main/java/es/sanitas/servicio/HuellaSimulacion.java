@@ -0,0 +1,235 @@
+package es.sanitas.servicio;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Cobertura;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoContratacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoPromociones;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoTier;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Procedencia;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Producto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promocion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TierProducto;
+
+/**
+ * Representación canónica de una petición de {@link Simulacion}: dos peticiones
+ * con la misma huella obtienen la misma tarificación.
+ *
+ * Incluye todos los campos de la petición en su orden, ya que la respuesta del
+ * servicio es posicional (beneficiarios y productos se devuelven en el orden en
+ * que se piden). Opcionalmente la fecha de nacimiento se sustituye por la edad
+ * cumplida en la fecha de efecto: las fechas que se calculan a partir de una
+ * edad cambian con el día en que se hace la simulación, mientras que la tarifa
+ * sólo depende de la edad.
+ */
+public final class HuellaSimulacion {
+
+	private static final char SEPARADOR = '|';
+	/** No puede generarse a partir de un valor porque las barras se escapan. */
+	private static final String NULO = "\\N";
+
+	private final String canonica;
+	private final int hash;
+
+	private HuellaSimulacion(final String canonica) {
+		this.canonica = canonica;
+		this.hash = canonica.hashCode();
+	}
+
+	/**
+	 * @param normalizarEdades
+	 *            sustituye las fechas de nacimiento por la edad en la fecha de
+	 *            efecto
+	 * @return la huella de la petición
+	 */
+	public static HuellaSimulacion de(final Simulacion simulacion, final boolean normalizarEdades) {
+		final StringBuilder sb = new StringBuilder(256);
+		final InfoContratacion info = simulacion.getInfoContratacion();
+		final String fechaEfecto = info != null ? info.getFechaEfecto() : null;
+
+		anadir(sb, simulacion.getOperacion());
+		anadir(sb, simulacion.getTipo());
+		anadirInfoContratacion(sb, info);
+
+		final Beneficiario[] beneficiarios = simulacion.getBeneficiarios();
+		anadir(sb, beneficiarios != null ? beneficiarios.length : null);
+		if (beneficiarios != null) {
+			for (final Beneficiario beneficiario : beneficiarios) {
+				anadirBeneficiario(sb, beneficiario, normalizarEdades ? fechaEfecto : null);
+			}
+		}
+
+		anadirPromociones(sb, simulacion.getInfoPromociones());
+		anadirTier(sb, simulacion.getInfoTier());
+
+		return new HuellaSimulacion(sb.toString());
+	}
+
+	/**
+	 * @return la edad en años cumplidos en la fecha de referencia, o -1 si alguna
+	 *         de las fechas no tiene el formato dd/MM/yyyy
+	 */
+	static int edadEn(final String fechaNacimiento, final String fechaReferencia) {
+		final int[] nacimiento = leerFecha(fechaNacimiento);
+		final int[] referencia = leerFecha(fechaReferencia);
+
+		if (nacimiento == null || referencia == null) {
+			return -1;
+		}
+
+		int edad = referencia[2] - nacimiento[2];
+		if (referencia[1] < nacimiento[1] || referencia[1] == nacimiento[1] && referencia[0] < nacimiento[0]) {
+			edad--;
+		}
+		return edad;
+	}
+
+	private static int[] leerFecha(final String fecha) {
+		if (fecha == null) {
+			return null;
+		}
+
+		final String[] partes = fecha.split("/");
+		if (partes.length != 3) {
+			return null;
+		}
+
+		try {
+			return new int[] { Integer.parseInt(partes[0].trim()), Integer.parseInt(partes[1].trim()),
+					Integer.parseInt(partes[2].trim()) };
+		} catch (final NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static void anadirInfoContratacion(final StringBuilder sb, final InfoContratacion info) {
+		if (info == null) {
+			anadir(sb, null);
+			return;
+		}
+		anadir(sb, info.getFechaEfecto());
+		anadir(sb, info.getIdPlan());
+		anadir(sb, info.getIdPoliza());
+		anadir(sb, info.getIdColectivo());
+		anadir(sb, info.getIdEmpresa());
+		anadir(sb, info.getIdDepartamento());
+		anadir(sb, info.getIdMediador());
+		anadir(sb, info.getFrecuenciaPago());
+		anadir(sb, info.getCodigoPostal());
+		anadir(sb, info.getIdGrupoParticular());
+	}
+
+	private static void anadirBeneficiario(final StringBuilder sb, final Beneficiario beneficiario,
+			final String fechaEfecto) {
+		anadir(sb, beneficiario.getIdCliente());
+		anadir(sb, beneficiario.getNombre());
+		anadir(sb, beneficiario.getTipoDocumento());
+		anadir(sb, beneficiario.getDocumento());
+
+		final int edad = fechaEfecto != null ? edadEn(beneficiario.getFechaNacimiento(), fechaEfecto) : -1;
+		anadir(sb, edad >= 0 ? "E" + edad : "F" + beneficiario.getFechaNacimiento());
+
+		anadir(sb, beneficiario.getSexo());
+		anadir(sb, beneficiario.getIdProfesion());
+		anadir(sb, beneficiario.getParentesco());
+
+		final Procedencia procedencia = beneficiario.getProcedencia();
+		if (procedencia != null) {
+			anadir(sb, procedencia.getIdCompania());
+			anadir(sb, procedencia.getIdPoliza());
+			anadir(sb, procedencia.getIdColectivo());
+			anadir(sb, procedencia.getAntiguedad());
+		} else {
+			anadir(sb, null);
+		}
+
+		final Producto[] productos = beneficiario.getProductos();
+		anadir(sb, productos != null ? productos.length : null);
+		if (productos != null) {
+			for (final Producto producto : productos) {
+				anadir(sb, producto.getIdProducto());
+				final Cobertura[] coberturas = producto.getCoberturas();
+				anadir(sb, coberturas != null ? coberturas.length : null);
+				if (coberturas != null) {
+					for (final Cobertura cobertura : coberturas) {
+						anadir(sb, cobertura.getIdCobertura());
+						anadir(sb, cobertura.getCapital());
+					}
+				}
+			}
+		}
+	}
+
+	private static void anadirPromociones(final StringBuilder sb, final InfoPromociones infoPromociones) {
+		if (infoPromociones == null) {
+			anadir(sb, null);
+			return;
+		}
+		anadir(sb, infoPromociones.getAutomaticas());
+
+		final Promocion[] promociones = infoPromociones.getPromociones();
+		anadir(sb, promociones != null ? promociones.length : null);
+		if (promociones != null) {
+			for (final Promocion promocion : promociones) {
+				anadir(sb, promocion.getIdPromocion());
+				anadir(sb, promocion.getTipo());
+			}
+		}
+	}
+
+	private static void anadirTier(final StringBuilder sb, final InfoTier infoTier) {
+		if (infoTier == null) {
+			anadir(sb, null);
+			return;
+		}
+		anadir(sb, infoTier.getTierGlobal());
+
+		final TierProducto[] tierProductos = infoTier.getTierProductos();
+		anadir(sb, tierProductos != null ? tierProductos.length : null);
+		if (tierProductos != null) {
+			for (final TierProducto tierProducto : tierProductos) {
+				anadir(sb, tierProducto.getIdProducto());
+				anadir(sb, tierProducto.getValor());
+			}
+		}
+	}
+
+	private static void anadir(final StringBuilder sb, final Object valor) {
+		if (valor == null) {
+			sb.append(NULO);
+		} else {
+			// Se escapa el separador para que dos peticiones distintas no coincidan
+			final String texto = String.valueOf(valor);
+			for (int i = 0; i < texto.length(); i++) {
+				final char c = texto.charAt(i);
+				if (c == SEPARADOR || c == '\\') {
+					sb.append('\\');
+				}
+				sb.append(c);
+			}
+		}
+		sb.append(SEPARADOR);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HuellaSimulacion)) {
+			return false;
+		}
+		final HuellaSimulacion otra = (HuellaSimulacion) obj;
+		return hash == otra.hash && canonica.equals(otra.canonica);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return canonica;
+	}
+}
@@ -0,0 +1,51 @@
+package es.sanitas.servicio;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+/**
+ * Utilidades sobre las respuestas del servicio de simulación compartidas por
+ * varios llamantes.
+ */
+final class RespuestasSimulacion {
+
+	private RespuestasSimulacion() {
+	}
+
+	/**
+	 * @return copia profunda de la respuesta, que el llamante puede modificar sin
+	 *         afectar a los demás; null si la respuesta es null
+	 */
+	static RESTResponse<Tarificacion, Error> copia(final RESTResponse<Tarificacion, Error> respuesta) {
+		if (respuesta == null) {
+			return null;
+		}
+
+		final RESTResponse<Tarificacion, Error> copia = new RESTResponse<Tarificacion, Error>();
+		copia.out = respuesta.out != null ? SerializationUtils.clone(respuesta.out) : null;
+		copia.error = respuesta.error != null ? SerializationUtils.clone(respuesta.error) : null;
+		copia.rawResponse = respuesta.rawResponse;
+		return copia;
+	}
+
+	/**
+	 * @return true si la respuesta indica un fallo del servicio: no hay
+	 *         respuesta o trae un error que no es el rechazo de un código
+	 *         promocional. El rechazo es un error de negocio esperado, que se
+	 *         resuelve repitiendo la simulación sin el código
+	 */
+	static boolean esFalloServicio(final RESTResponse<Tarificacion, Error> respuesta) {
+		if (respuesta == null) {
+			return true;
+		}
+		if (!respuesta.hasError()) {
+			return false;
+		}
+		return respuesta.error == null
+				|| !StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL.equals(respuesta.error.getCodigo());
+	}
+}
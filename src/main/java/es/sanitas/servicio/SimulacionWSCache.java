@@ -0,0 +1,328 @@
+package es.sanitas.servicio;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+/**
+ * Decorador de {@link SimulacionWS} que guarda las tarificaciones correctas
+ * por {@link HuellaSimulacion}.
+ *
+ * Una tarificación se sirve de la caché mientras está vigente. Pasada la
+ * vigencia, y durante la ventana de revalidación, se sigue sirviendo mientras
+ * se pide de nuevo al servicio en segundo plano (stale-while-revalidate). Si el
+ * servicio lanza una excepción o responde con un error distinto del rechazo
+ * del código promocional, se sirve la última tarificación conocida mientras no
+ * supere la antigüedad máxima tras error (stale-if-error).
+ *
+ * Sólo se guardan las respuestas sin error: los errores de negocio del
+ * servicio, como un código promocional no válido, se devuelven siempre tal
+ * cual. Cada llamada recibe su propia copia de la tarificación.
+ */
+public class SimulacionWSCache implements SimulacionWS {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SimulacionWSCache.class);
+
+	private final SimulacionWS delegado;
+	private final Executor ejecutorRevalidacion;
+
+	/** Número máximo de tarificaciones guardadas; se descartan las menos usadas. */
+	private int tamanoMaximo = 1000;
+
+	/** Tiempo durante el que una tarificación se sirve sin consultar al servicio. */
+	private long milisegundosVigencia = TimeUnit.MINUTES.toMillis(5);
+
+	/** Tiempo tras la vigencia en el que se sirve mientras se revalida. */
+	private long milisegundosRevalidacion = TimeUnit.MINUTES.toMillis(1);
+
+	/** Antigüedad máxima de una tarificación servida porque el servicio ha fallado. */
+	private long milisegundosSiError = TimeUnit.HOURS.toMillis(1);
+
+	/** Sustituye en la huella las fechas de nacimiento por la edad en la fecha de efecto. */
+	private boolean normalizarEdades = true;
+
+	private final Map<HuellaSimulacion, Entrada> entradas = new LinkedHashMap<HuellaSimulacion, Entrada>(16, 0.75f,
+			true);
+
+	private final AtomicLong aciertos = new AtomicLong();
+	private final AtomicLong aciertosObsoletos = new AtomicLong();
+	private final AtomicLong fallos = new AtomicLong();
+	private final AtomicLong desalojos = new AtomicLong();
+	private final AtomicLong servidasTrasError = new AtomicLong();
+
+	/**
+	 * @param delegado
+	 *            servicio de simulación real
+	 * @param ejecutorRevalidacion
+	 *            ejecutor de las revalidaciones en segundo plano
+	 */
+	public SimulacionWSCache(final SimulacionWS delegado, final Executor ejecutorRevalidacion) {
+		this.delegado = delegado;
+		this.ejecutorRevalidacion = ejecutorRevalidacion;
+	}
+
+	public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+		final HuellaSimulacion huella = HuellaSimulacion.de(in, normalizarEdades);
+		final long ahora = ahoraNanos();
+		final Entrada entrada = obtener(huella, ahora);
+
+		if (entrada != null) {
+			final long edad = ahora - entrada.creada;
+
+			if (edad < TimeUnit.MILLISECONDS.toNanos(milisegundosVigencia)) {
+				aciertos.incrementAndGet();
+				return RespuestasSimulacion.copia(entrada.respuesta);
+			}
+			if (edad < TimeUnit.MILLISECONDS.toNanos(milisegundosVigencia + milisegundosRevalidacion)) {
+				aciertosObsoletos.incrementAndGet();
+				revalidar(huella, in, entrada);
+				return RespuestasSimulacion.copia(entrada.respuesta);
+			}
+		}
+
+		fallos.incrementAndGet();
+
+		final RESTResponse<Tarificacion, Error> respuesta;
+		try {
+			respuesta = delegado.simular(in);
+		} catch (final RuntimeException e) {
+			if (servibleTrasError(entrada, ahora)) {
+				LOG.warn("Error del servicio de simulación; se sirve una tarificación guardada", e);
+				servidasTrasError.incrementAndGet();
+				return RespuestasSimulacion.copia(entrada.respuesta);
+			}
+			throw e;
+		}
+
+		if (RespuestasSimulacion.esFalloServicio(respuesta) && servibleTrasError(entrada, ahora)) {
+			LOG.warn("El servicio de simulación ha respondido con error {}; se sirve una tarificación guardada",
+					respuesta != null && respuesta.error != null ? respuesta.error.getCodigo() : null);
+			servidasTrasError.incrementAndGet();
+			return RespuestasSimulacion.copia(entrada.respuesta);
+		}
+
+		guardar(huella, respuesta);
+		return respuesta;
+	}
+
+	private boolean servibleTrasError(final Entrada entrada, final long ahora) {
+		return entrada != null && ahora - entrada.creada < TimeUnit.MILLISECONDS.toNanos(milisegundosSiError);
+	}
+
+	private void revalidar(final HuellaSimulacion huella, final Simulacion in, final Entrada entrada) {
+		if (!entrada.revalidando.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			ejecutorRevalidacion.execute(() -> {
+				try {
+					guardar(huella, delegado.simular(in));
+				} catch (final RuntimeException e) {
+					LOG.warn("No se ha podido revalidar una tarificación guardada", e);
+				} finally {
+					entrada.revalidando.set(false);
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			entrada.revalidando.set(false);
+		}
+	}
+
+	/**
+	 * @return la entrada de la huella, o null si no existe o ya no puede servirse
+	 *         en ningún caso
+	 */
+	private Entrada obtener(final HuellaSimulacion huella, final long ahora) {
+		synchronized (entradas) {
+			final Entrada entrada = entradas.get(huella);
+			if (entrada != null && ahora - entrada.creada >= retencionNanos()) {
+				entradas.remove(huella);
+				desalojos.incrementAndGet();
+				return null;
+			}
+			return entrada;
+		}
+	}
+
+	private void guardar(final HuellaSimulacion huella, final RESTResponse<Tarificacion, Error> respuesta) {
+		if (respuesta == null || respuesta.hasError()) {
+			return;
+		}
+
+		final Entrada entrada = new Entrada(RespuestasSimulacion.copia(respuesta), ahoraNanos());
+		synchronized (entradas) {
+			entradas.put(huella, entrada);
+
+			final Iterator<Entrada> iterador = entradas.values().iterator();
+			while (entradas.size() > tamanoMaximo && iterador.hasNext()) {
+				iterador.next();
+				iterador.remove();
+				desalojos.incrementAndGet();
+			}
+		}
+	}
+
+	private long retencionNanos() {
+		return TimeUnit.MILLISECONDS
+				.toNanos(Math.max(milisegundosVigencia + milisegundosRevalidacion, milisegundosSiError));
+	}
+
+	long ahoraNanos() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Descarta todas las tarificaciones guardadas.
+	 */
+	public void invalidarTodas() {
+		synchronized (entradas) {
+			entradas.clear();
+		}
+	}
+
+	/**
+	 * @return número de tarificaciones guardadas
+	 */
+	public int getTamano() {
+		synchronized (entradas) {
+			return entradas.size();
+		}
+	}
+
+	/**
+	 * @return llamadas servidas de la caché dentro de la vigencia
+	 */
+	public long getAciertos() {
+		return aciertos.get();
+	}
+
+	/**
+	 * @return llamadas servidas de la caché mientras se revalidaba
+	 */
+	public long getAciertosObsoletos() {
+		return aciertosObsoletos.get();
+	}
+
+	/**
+	 * @return llamadas que han tenido que consultar al servicio
+	 */
+	public long getFallos() {
+		return fallos.get();
+	}
+
+	/**
+	 * @return tarificaciones descartadas por tamaño o por antigüedad
+	 */
+	public long getDesalojos() {
+		return desalojos.get();
+	}
+
+	/**
+	 * @return llamadas servidas de la caché porque el servicio ha fallado
+	 */
+	public long getServidasTrasError() {
+		return servidasTrasError.get();
+	}
+
+	/**
+	 * @return the tamanoMaximo
+	 */
+	public int getTamanoMaximo() {
+		return tamanoMaximo;
+	}
+
+	/**
+	 * @param tamanoMaximo
+	 *            the tamanoMaximo to set
+	 */
+	public void setTamanoMaximo(final int tamanoMaximo) {
+		this.tamanoMaximo = tamanoMaximo;
+	}
+
+	/**
+	 * @return the milisegundosVigencia
+	 */
+	public long getMilisegundosVigencia() {
+		return milisegundosVigencia;
+	}
+
+	/**
+	 * @param milisegundosVigencia
+	 *            the milisegundosVigencia to set
+	 */
+	public void setMilisegundosVigencia(final long milisegundosVigencia) {
+		this.milisegundosVigencia = milisegundosVigencia;
+	}
+
+	/**
+	 * @return the milisegundosRevalidacion
+	 */
+	public long getMilisegundosRevalidacion() {
+		return milisegundosRevalidacion;
+	}
+
+	/**
+	 * @param milisegundosRevalidacion
+	 *            the milisegundosRevalidacion to set
+	 */
+	public void setMilisegundosRevalidacion(final long milisegundosRevalidacion) {
+		this.milisegundosRevalidacion = milisegundosRevalidacion;
+	}
+
+	/**
+	 * @return the milisegundosSiError
+	 */
+	public long getMilisegundosSiError() {
+		return milisegundosSiError;
+	}
+
+	/**
+	 * @param milisegundosSiError
+	 *            the milisegundosSiError to set
+	 */
+	public void setMilisegundosSiError(final long milisegundosSiError) {
+		this.milisegundosSiError = milisegundosSiError;
+	}
+
+	/**
+	 * @return the normalizarEdades
+	 */
+	public boolean isNormalizarEdades() {
+		return normalizarEdades;
+	}
+
+	/**
+	 * @param normalizarEdades
+	 *            the normalizarEdades to set
+	 */
+	public void setNormalizarEdades(final boolean normalizarEdades) {
+		this.normalizarEdades = normalizarEdades;
+	}
+
+	private static final class Entrada {
+
+		private final RESTResponse<Tarificacion, Error> respuesta;
+		private final long creada;
+		private final AtomicBoolean revalidando = new AtomicBoolean();
+
+		Entrada(final RESTResponse<Tarificacion, Error> respuesta, final long creada) {
+			this.respuesta = respuesta;
+			this.creada = creada;
+		}
+	}
+}
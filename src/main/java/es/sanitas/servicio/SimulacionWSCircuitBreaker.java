@@ -0,0 +1,459 @@
+package es.sanitas.servicio;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+/**
+ * Decorador de {@link SimulacionWS} con un cortocircuito (circuit breaker) y un
+ * límite de llamadas concurrentes (bulkhead).
+ *
+ * Con el circuito cerrado se guarda el resultado de las últimas llamadas. Si
+ * la proporción de llamadas fallidas o de llamadas lentas supera su umbral
+ * el circuito se abre y durante un tiempo no se llama al servicio. Pasado ese
+ * tiempo queda semiabierto: se deja pasar un número limitado de llamadas de
+ * prueba, y según su resultado se vuelve a cerrar o a abrir.
+ *
+ * Independientemente del circuito, no se admiten más llamadas en curso que el
+ * máximo configurado, de modo que un servicio lento no ocupa todos los hilos
+ * del pool de simulaciones.
+ *
+ * Una llamada no admitida se sirve del servicio alternativo si se ha
+ * configurado; si no, falla al momento con una
+ * {@link ExcepcionServicioNoDisponible}. Una llamada falla si lanza una
+ * excepción, no trae respuesta o responde con un error; el rechazo del código
+ * promocional es un error de negocio y cuenta como correcta. Las llamadas
+ * interrumpidas por el llamante no cuentan.
+ */
+public class SimulacionWSCircuitBreaker implements SimulacionWS {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SimulacionWSCircuitBreaker.class);
+
+	private static final String MENSAJE_CIRCUITO_ABIERTO = "El servicio de simulación no está disponible. Por favor, inténtelo de nuevo más tarde.";
+	private static final String MENSAJE_SATURADO = "El servicio de simulación está saturado. Por favor, inténtelo de nuevo más tarde.";
+
+	/**
+	 * Estado del circuito.
+	 */
+	public enum Estado {
+		CERRADO, ABIERTO, SEMIABIERTO
+	}
+
+	private final SimulacionWS delegado;
+
+	/** Servicio al que se pasan las llamadas no admitidas; sin él fallan. */
+	private SimulacionWS alternativo;
+
+	/** Llamadas en la ventana necesarias antes de poder abrir el circuito. */
+	private int llamadasMinimas = 20;
+
+	/** Proporción de llamadas con excepción a partir de la que se abre el circuito. */
+	private double umbralErrores = 0.5;
+
+	/** Proporción de llamadas lentas a partir de la que se abre el circuito. */
+	private double umbralLentas = 0.8;
+
+	/** Duración a partir de la cual una llamada se considera lenta. */
+	private long milisegundosLenta = 3000L;
+
+	/** Tiempo que el circuito permanece abierto antes de probar de nuevo. */
+	private long milisegundosAbierto = TimeUnit.SECONDS.toMillis(30);
+
+	/** Llamadas de prueba con el circuito semiabierto. */
+	private int llamadasPrueba = 5;
+
+	/** Máximo de llamadas al servicio en curso a la vez. */
+	private int maximoConcurrentes = 50;
+
+	private final boolean[] ventanaErrores;
+	private final boolean[] ventanaLentas;
+	private int siguiente;
+	private int llamadasVentana;
+	private int erroresVentana;
+	private int lentasVentana;
+
+	private Estado estado = Estado.CERRADO;
+	/** Cambia con cada transición para descartar resultados de otro estado. */
+	private long generacion;
+	private long abiertoDesde;
+	private int pruebasAutorizadas;
+	private int pruebasTerminadas;
+	private int pruebasErroneas;
+	private int pruebasLentas;
+
+	private final AtomicInteger concurrentes = new AtomicInteger();
+
+	private final AtomicLong aperturas = new AtomicLong();
+	private final AtomicLong rechazadasCircuito = new AtomicLong();
+	private final AtomicLong rechazadasConcurrencia = new AtomicLong();
+	private final AtomicLong servidasAlternativo = new AtomicLong();
+
+	/**
+	 * @param delegado
+	 *            servicio de simulación real
+	 */
+	public SimulacionWSCircuitBreaker(final SimulacionWS delegado) {
+		this(delegado, 100);
+	}
+
+	/**
+	 * @param tamanoVentana
+	 *            número de llamadas recientes con las que se calculan las
+	 *            proporciones de errores y de llamadas lentas
+	 */
+	public SimulacionWSCircuitBreaker(final SimulacionWS delegado, final int tamanoVentana) {
+		if (tamanoVentana <= 0) {
+			throw new IllegalArgumentException("El tamaño de la ventana debe ser positivo");
+		}
+		this.delegado = delegado;
+		this.ventanaErrores = new boolean[tamanoVentana];
+		this.ventanaLentas = new boolean[tamanoVentana];
+	}
+
+	public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+		if (!ocuparHueco()) {
+			rechazadasConcurrencia.incrementAndGet();
+			return rechazar(in, MENSAJE_SATURADO);
+		}
+
+		final long permiso = autorizar();
+		if (permiso < 0) {
+			concurrentes.decrementAndGet();
+			rechazadasCircuito.incrementAndGet();
+			return rechazar(in, MENSAJE_CIRCUITO_ABIERTO);
+		}
+
+		try {
+			return llamar(in, permiso);
+		} finally {
+			concurrentes.decrementAndGet();
+		}
+	}
+
+	private RESTResponse<Tarificacion, Error> llamar(final Simulacion in, final long permiso) {
+		final long inicio = ahoraNanos();
+		final RESTResponse<Tarificacion, Error> respuesta;
+
+		try {
+			respuesta = delegado.simular(in);
+		} catch (final RuntimeException e) {
+			if (e instanceof CancellationException || Thread.currentThread().isInterrupted()) {
+				descartar(permiso);
+			} else {
+				registrar(permiso, true, ahoraNanos() - inicio);
+			}
+			throw e;
+		} catch (final java.lang.Error e) {
+			descartar(permiso);
+			throw e;
+		}
+
+		registrar(permiso, RespuestasSimulacion.esFalloServicio(respuesta), ahoraNanos() - inicio);
+		return respuesta;
+	}
+
+	private RESTResponse<Tarificacion, Error> rechazar(final Simulacion in, final String mensaje) {
+		if (alternativo != null) {
+			servidasAlternativo.incrementAndGet();
+			return alternativo.simular(in);
+		}
+		throw new ExcepcionServicioNoDisponible(mensaje);
+	}
+
+	private boolean ocuparHueco() {
+		for (;;) {
+			final int actuales = concurrentes.get();
+			if (actuales >= maximoConcurrentes) {
+				return false;
+			}
+			if (concurrentes.compareAndSet(actuales, actuales + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return la generación del estado en que se admite la llamada, o -1 si no
+	 *         se admite
+	 */
+	private synchronized long autorizar() {
+		if (estado == Estado.ABIERTO) {
+			if (ahoraNanos() - abiertoDesde < TimeUnit.MILLISECONDS.toNanos(milisegundosAbierto)) {
+				return -1L;
+			}
+			cambiarEstado(Estado.SEMIABIERTO);
+		}
+
+		if (estado == Estado.SEMIABIERTO) {
+			if (pruebasAutorizadas >= llamadasPrueba) {
+				return -1L;
+			}
+			pruebasAutorizadas++;
+		}
+
+		return generacion;
+	}
+
+	private synchronized void registrar(final long permiso, final boolean error, final long nanos) {
+		if (permiso != generacion) {
+			return;
+		}
+
+		final boolean lenta = nanos >= TimeUnit.MILLISECONDS.toNanos(milisegundosLenta);
+
+		if (estado == Estado.SEMIABIERTO) {
+			pruebasTerminadas++;
+			if (error) {
+				pruebasErroneas++;
+			}
+			if (lenta) {
+				pruebasLentas++;
+			}
+
+			// Se reabre en cuanto las pruebas que faltan ya no pueden evitarlo
+			if (superaUmbral(pruebasErroneas, pruebasLentas, llamadasPrueba)) {
+				cambiarEstado(Estado.ABIERTO);
+			} else if (pruebasTerminadas >= llamadasPrueba) {
+				cambiarEstado(Estado.CERRADO);
+			}
+			return;
+		}
+
+		if (llamadasVentana == ventanaErrores.length) {
+			if (ventanaErrores[siguiente]) {
+				erroresVentana--;
+			}
+			if (ventanaLentas[siguiente]) {
+				lentasVentana--;
+			}
+		} else {
+			llamadasVentana++;
+		}
+		ventanaErrores[siguiente] = error;
+		ventanaLentas[siguiente] = lenta;
+		siguiente = (siguiente + 1) % ventanaErrores.length;
+		if (error) {
+			erroresVentana++;
+		}
+		if (lenta) {
+			lentasVentana++;
+		}
+
+		if (llamadasVentana >= llamadasMinimas && superaUmbral(erroresVentana, lentasVentana, llamadasVentana)) {
+			cambiarEstado(Estado.ABIERTO);
+		}
+	}
+
+	/**
+	 * Una llamada interrumpida no dice nada del servicio: si era de prueba, se
+	 * deja su hueco a otra.
+	 */
+	private synchronized void descartar(final long permiso) {
+		if (permiso == generacion && estado == Estado.SEMIABIERTO) {
+			pruebasAutorizadas--;
+		}
+	}
+
+	private boolean superaUmbral(final int errores, final int lentas, final int llamadas) {
+		return errores >= umbralErrores * llamadas || lentas >= umbralLentas * llamadas;
+	}
+
+	private void cambiarEstado(final Estado nuevo) {
+		if (nuevo == Estado.ABIERTO) {
+			abiertoDesde = ahoraNanos();
+			aperturas.incrementAndGet();
+			LOG.warn("Se abre el circuito del servicio de simulación durante {} ms", milisegundosAbierto);
+		} else {
+			LOG.info("El circuito del servicio de simulación pasa a {}", nuevo);
+		}
+
+		estado = nuevo;
+		generacion++;
+		siguiente = 0;
+		llamadasVentana = 0;
+		erroresVentana = 0;
+		lentasVentana = 0;
+		pruebasAutorizadas = 0;
+		pruebasTerminadas = 0;
+		pruebasErroneas = 0;
+		pruebasLentas = 0;
+	}
+
+	long ahoraNanos() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * @return estado del circuito. Un circuito abierto cuyo tiempo ha pasado
+	 *         sigue abierto hasta la siguiente llamada
+	 */
+	public synchronized Estado getEstado() {
+		return estado;
+	}
+
+	/**
+	 * @return llamadas al servicio en curso
+	 */
+	public int getConcurrentes() {
+		return concurrentes.get();
+	}
+
+	/**
+	 * @return veces que se ha abierto el circuito
+	 */
+	public long getAperturas() {
+		return aperturas.get();
+	}
+
+	/**
+	 * @return llamadas no admitidas por estar el circuito abierto
+	 */
+	public long getRechazadasCircuito() {
+		return rechazadasCircuito.get();
+	}
+
+	/**
+	 * @return llamadas no admitidas por haber demasiadas en curso
+	 */
+	public long getRechazadasConcurrencia() {
+		return rechazadasConcurrencia.get();
+	}
+
+	/**
+	 * @return llamadas no admitidas servidas del servicio alternativo
+	 */
+	public long getServidasAlternativo() {
+		return servidasAlternativo.get();
+	}
+
+	/**
+	 * @return the alternativo
+	 */
+	public SimulacionWS getAlternativo() {
+		return alternativo;
+	}
+
+	/**
+	 * @param alternativo
+	 *            the alternativo to set
+	 */
+	public void setAlternativo(final SimulacionWS alternativo) {
+		this.alternativo = alternativo;
+	}
+
+	/**
+	 * @return the llamadasMinimas
+	 */
+	public int getLlamadasMinimas() {
+		return llamadasMinimas;
+	}
+
+	/**
+	 * @param llamadasMinimas
+	 *            the llamadasMinimas to set
+	 */
+	public void setLlamadasMinimas(final int llamadasMinimas) {
+		this.llamadasMinimas = llamadasMinimas;
+	}
+
+	/**
+	 * @return the umbralErrores
+	 */
+	public double getUmbralErrores() {
+		return umbralErrores;
+	}
+
+	/**
+	 * @param umbralErrores
+	 *            proporción, entre 0 y 1, de llamadas con excepción que abre el
+	 *            circuito
+	 */
+	public void setUmbralErrores(final double umbralErrores) {
+		this.umbralErrores = umbralErrores;
+	}
+
+	/**
+	 * @return the umbralLentas
+	 */
+	public double getUmbralLentas() {
+		return umbralLentas;
+	}
+
+	/**
+	 * @param umbralLentas
+	 *            proporción, entre 0 y 1, de llamadas lentas que abre el circuito
+	 */
+	public void setUmbralLentas(final double umbralLentas) {
+		this.umbralLentas = umbralLentas;
+	}
+
+	/**
+	 * @return the milisegundosLenta
+	 */
+	public long getMilisegundosLenta() {
+		return milisegundosLenta;
+	}
+
+	/**
+	 * @param milisegundosLenta
+	 *            the milisegundosLenta to set
+	 */
+	public void setMilisegundosLenta(final long milisegundosLenta) {
+		this.milisegundosLenta = milisegundosLenta;
+	}
+
+	/**
+	 * @return the milisegundosAbierto
+	 */
+	public long getMilisegundosAbierto() {
+		return milisegundosAbierto;
+	}
+
+	/**
+	 * @param milisegundosAbierto
+	 *            the milisegundosAbierto to set
+	 */
+	public void setMilisegundosAbierto(final long milisegundosAbierto) {
+		this.milisegundosAbierto = milisegundosAbierto;
+	}
+
+	/**
+	 * @return the llamadasPrueba
+	 */
+	public int getLlamadasPrueba() {
+		return llamadasPrueba;
+	}
+
+	/**
+	 * @param llamadasPrueba
+	 *            the llamadasPrueba to set
+	 */
+	public void setLlamadasPrueba(final int llamadasPrueba) {
+		this.llamadasPrueba = llamadasPrueba;
+	}
+
+	/**
+	 * @return the maximoConcurrentes
+	 */
+	public int getMaximoConcurrentes() {
+		return maximoConcurrentes;
+	}
+
+	/**
+	 * @param maximoConcurrentes
+	 *            the maximoConcurrentes to set
+	 */
+	public void setMaximoConcurrentes(final int maximoConcurrentes) {
+		this.maximoConcurrentes = maximoConcurrentes;
+	}
+}
@@ -0,0 +1,333 @@
+package es.sanitas.servicio;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+/**
+ * Decorador de {@link SimulacionWS} que reduce la latencia de cola mediante
+ * peticiones duplicadas (hedging).
+ *
+ * Si una llamada no ha respondido cuando se alcanza el percentil configurado de
+ * las latencias recientes, se envía una segunda petición idéntica. Gana la
+ * primera respuesta y la otra se cancela. Las duplicadas están limitadas por un
+ * cubo de fichas que se recarga con una fracción de cada petición, de modo que
+ * durante una degradación del servicio no se multiplica la carga.
+ *
+ * La llamada que pierde también cuenta en la ventana de latencias, con el
+ * tiempo que llevaba al cancelarse como cota inferior; si no, la ventana sólo
+ * vería las rápidas y el percentil bajaría con cada duplicada.
+ */
+public class SimulacionWSHedging implements SimulacionWS {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SimulacionWSHedging.class);
+
+	private final SimulacionWS delegado;
+	private final ExecutorService ejecutor;
+
+	/** Percentil de latencia a partir del cual se duplica la petición. */
+	private double percentil = 0.95;
+
+	/** Muestras necesarias antes de empezar a duplicar peticiones. */
+	private int muestrasMinimas = 20;
+
+	/** Fracción máxima de peticiones que pueden duplicarse. */
+	private double proporcionMaxima = 0.1;
+
+	/** Duplicadas que se pueden enviar seguidas tras un periodo sin enviar ninguna. */
+	private double rafagaMaxima = 10;
+
+	private final VentanaLatencias latencias;
+
+	private double fichas;
+
+	private final AtomicLong peticiones = new AtomicLong();
+	private final AtomicLong duplicadasEnviadas = new AtomicLong();
+	private final AtomicLong duplicadasGanadoras = new AtomicLong();
+
+	/**
+	 * @param delegado
+	 *            servicio de simulación real
+	 * @param ejecutor
+	 *            ejecutor de las llamadas al servicio; cada petición ocupa hasta
+	 *            dos tareas
+	 */
+	public SimulacionWSHedging(final SimulacionWS delegado, final ExecutorService ejecutor) {
+		this(delegado, ejecutor, 200);
+	}
+
+	/**
+	 * @param tamanoVentana
+	 *            número de latencias recientes con las que se calcula el percentil
+	 */
+	public SimulacionWSHedging(final SimulacionWS delegado, final ExecutorService ejecutor,
+			final int tamanoVentana) {
+		this.delegado = delegado;
+		this.ejecutor = ejecutor;
+		this.latencias = new VentanaLatencias(tamanoVentana);
+	}
+
+	public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+		peticiones.incrementAndGet();
+		recargarFichas();
+
+		final CompletionService<RESTResponse<Tarificacion, Error>> respuestas = new ExecutorCompletionService<RESTResponse<Tarificacion, Error>>(
+				ejecutor);
+		final Llamada llamadaPrincipal = new Llamada(in);
+		final Future<RESTResponse<Tarificacion, Error>> principal = respuestas.submit(llamadaPrincipal);
+		Llamada llamadaDuplicada = null;
+		Future<RESTResponse<Tarificacion, Error>> duplicada = null;
+
+		try {
+			final long retardo = calcularRetardoNanos();
+			Future<RESTResponse<Tarificacion, Error>> primera = retardo < 0 ? respuestas.take()
+					: respuestas.poll(retardo, TimeUnit.NANOSECONDS);
+
+			if (primera == null) {
+				if (consumirFicha()) {
+					duplicadasEnviadas.incrementAndGet();
+					llamadaDuplicada = new Llamada(in);
+					duplicada = respuestas.submit(llamadaDuplicada);
+				}
+				primera = respuestas.take();
+			}
+
+			return obtenerRespuesta(respuestas, primera, principal, duplicada);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Simulación interrumpida");
+		} finally {
+			cancelar(principal, llamadaPrincipal);
+			if (duplicada != null) {
+				cancelar(duplicada, llamadaDuplicada);
+			}
+		}
+	}
+
+	/**
+	 * Si la primera en terminar ha fallado y queda otra en curso, se espera a
+	 * ésta antes de dar el fallo por bueno.
+	 */
+	private RESTResponse<Tarificacion, Error> obtenerRespuesta(
+			final CompletionService<RESTResponse<Tarificacion, Error>> respuestas,
+			final Future<RESTResponse<Tarificacion, Error>> primera,
+			final Future<RESTResponse<Tarificacion, Error>> principal,
+			final Future<RESTResponse<Tarificacion, Error>> duplicada) throws InterruptedException {
+		try {
+			return ganadora(primera, duplicada);
+		} catch (final ExecutionException e) {
+			if (duplicada == null) {
+				throw relanzar(e);
+			}
+			LOG.debug("La primera petición de simulación ha fallado, se espera a la otra", e.getCause());
+			try {
+				return ganadora(respuestas.take(), duplicada);
+			} catch (final ExecutionException segunda) {
+				throw relanzar(segunda);
+			}
+		}
+	}
+
+	private RESTResponse<Tarificacion, Error> ganadora(final Future<RESTResponse<Tarificacion, Error>> future,
+			final Future<RESTResponse<Tarificacion, Error>> duplicada)
+			throws InterruptedException, ExecutionException {
+		final RESTResponse<Tarificacion, Error> respuesta = future.get();
+		if (future == duplicada) {
+			duplicadasGanadoras.incrementAndGet();
+		}
+		return respuesta;
+	}
+
+	private RuntimeException relanzar(final ExecutionException e) {
+		if (e.getCause() instanceof RuntimeException) {
+			return (RuntimeException) e.getCause();
+		}
+		if (e.getCause() instanceof java.lang.Error) {
+			throw (java.lang.Error) e.getCause();
+		}
+		return new IllegalStateException(e.getCause());
+	}
+
+	/**
+	 * Cancela una llamada que no ha terminado registrando el tiempo que lleva en
+	 * curso.
+	 */
+	private void cancelar(final Future<RESTResponse<Tarificacion, Error>> future, final Llamada llamada) {
+		if (!future.isDone()) {
+			llamada.registrarLatencia();
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * @return retardo tras el que se duplica la petición, o -1 si todavía no hay
+	 *         muestras suficientes
+	 */
+	private long calcularRetardoNanos() {
+		if (latencias.getTamano() < muestrasMinimas) {
+			return -1L;
+		}
+		return latencias.percentil(percentil);
+	}
+
+	private synchronized void recargarFichas() {
+		fichas = Math.min(rafagaMaxima, fichas + proporcionMaxima);
+	}
+
+	private synchronized boolean consumirFicha() {
+		if (fichas >= 1) {
+			fichas--;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return número de peticiones recibidas
+	 */
+	public long getPeticiones() {
+		return peticiones.get();
+	}
+
+	/**
+	 * @return número de peticiones duplicadas enviadas
+	 */
+	public long getDuplicadasEnviadas() {
+		return duplicadasEnviadas.get();
+	}
+
+	/**
+	 * @return número de peticiones duplicadas que han respondido antes que la
+	 *         original
+	 */
+	public long getDuplicadasGanadoras() {
+		return duplicadasGanadoras.get();
+	}
+
+	/**
+	 * @return proporción de duplicadas que han ganado a la original
+	 */
+	public double getProporcionGanadoras() {
+		final long enviadas = duplicadasEnviadas.get();
+		return enviadas == 0 ? 0 : (double) duplicadasGanadoras.get() / enviadas;
+	}
+
+	/**
+	 * @return retardo actual de duplicación en milisegundos, o -1 si todavía no
+	 *         se duplican peticiones
+	 */
+	public long getRetardoDuplicacionMs() {
+		final long retardo = calcularRetardoNanos();
+		return retardo < 0 ? -1L : TimeUnit.NANOSECONDS.toMillis(retardo);
+	}
+
+	/**
+	 * @return the percentil
+	 */
+	public double getPercentil() {
+		return percentil;
+	}
+
+	/**
+	 * @param percentil
+	 *            percentil de latencia, entre 0 y 1, tras el que se duplica la
+	 *            petición
+	 */
+	public void setPercentil(final double percentil) {
+		this.percentil = percentil;
+	}
+
+	/**
+	 * @return the muestrasMinimas
+	 */
+	public int getMuestrasMinimas() {
+		return muestrasMinimas;
+	}
+
+	/**
+	 * @param muestrasMinimas
+	 *            the muestrasMinimas to set
+	 */
+	public void setMuestrasMinimas(final int muestrasMinimas) {
+		this.muestrasMinimas = muestrasMinimas;
+	}
+
+	/**
+	 * @return the proporcionMaxima
+	 */
+	public double getProporcionMaxima() {
+		return proporcionMaxima;
+	}
+
+	/**
+	 * @param proporcionMaxima
+	 *            fracción máxima, entre 0 y 1, de peticiones que pueden duplicarse
+	 */
+	public void setProporcionMaxima(final double proporcionMaxima) {
+		this.proporcionMaxima = proporcionMaxima;
+	}
+
+	/**
+	 * @return the rafagaMaxima
+	 */
+	public double getRafagaMaxima() {
+		return rafagaMaxima;
+	}
+
+	/**
+	 * @param rafagaMaxima
+	 *            the rafagaMaxima to set
+	 */
+	public void setRafagaMaxima(final double rafagaMaxima) {
+		this.rafagaMaxima = rafagaMaxima;
+	}
+
+	/**
+	 * Llamada al servicio que registra su latencia una sola vez: al terminar o,
+	 * si pierde, al cancelarse.
+	 */
+	private final class Llamada implements Callable<RESTResponse<Tarificacion, Error>> {
+
+		private final Simulacion in;
+		private final AtomicBoolean registrada = new AtomicBoolean();
+		private volatile boolean iniciada;
+		private volatile long inicio;
+
+		Llamada(final Simulacion in) {
+			this.in = in;
+		}
+
+		public RESTResponse<Tarificacion, Error> call() {
+			inicio = System.nanoTime();
+			iniciada = true;
+			final RESTResponse<Tarificacion, Error> respuesta = delegado.simular(in);
+			registrarLatencia();
+			return respuesta;
+		}
+
+		/**
+		 * Una llamada que no ha llegado a empezar no aporta ninguna muestra.
+		 */
+		void registrarLatencia() {
+			if (iniciada && registrada.compareAndSet(false, true)) {
+				latencias.registrar(System.nanoTime() - inicio);
+			}
+		}
+	}
+}
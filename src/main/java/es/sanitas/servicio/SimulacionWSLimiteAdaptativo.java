@@ -0,0 +1,289 @@
+package es.sanitas.servicio;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+/**
+ * Decorador de {@link SimulacionWS} que limita las llamadas en curso con un
+ * límite que se ajusta solo (AIMD guiado por la latencia).
+ *
+ * Se mantiene una media lenta de la latencia de las llamadas sin excepción
+ * como referencia del servicio. Mientras las llamadas responden por debajo
+ * de la tolerancia sobre esa referencia y el límite se está usando, el límite
+ * crece en una llamada por cada límite de llamadas atendidas. Una excepción o
+ * una llamada que supera la tolerancia indica que el servicio se está
+ * encolando y el límite se reduce multiplicativamente, como mucho una vez por
+ * latencia de referencia para que una ráfaga de llamadas lentas no lo hunda.
+ *
+ * Las llamadas que superan el límite esperan un tiempo breve a que quede un
+ * hueco; si no queda, fallan al momento con una
+ * {@link ExcepcionServicioNoDisponible}.
+ */
+public class SimulacionWSLimiteAdaptativo implements SimulacionWS {
+
+	private static final String MENSAJE_SATURADO = "El servicio de simulación está saturado. Por favor, inténtelo de nuevo más tarde.";
+
+	/** Peso de cada llamada en la media de latencia de referencia. */
+	private static final double PESO_REFERENCIA = 0.05;
+
+	private final SimulacionWS delegado;
+
+	/** Límite con el que se empieza, antes de tener medidas. */
+	private int limiteInicial = 10;
+
+	private int limiteMinimo = 1;
+
+	private int limiteMaximo = 200;
+
+	/** Factor por el que se multiplica el límite al detectar congestión. */
+	private double factorReduccion = 0.9;
+
+	/** Veces la latencia de referencia a partir de las que hay congestión. */
+	private double tolerancia = 2.0;
+
+	/** Tiempo máximo que una llamada espera a que haya hueco. */
+	private long milisegundosEspera = 50L;
+
+	private double limite = -1;
+	private int enCurso;
+	private double latenciaReferencia = -1;
+	private long ultimaReduccion;
+	private boolean reducido;
+
+	private final AtomicLong rechazadas = new AtomicLong();
+	private final AtomicLong reducciones = new AtomicLong();
+
+	/**
+	 * @param delegado
+	 *            servicio de simulación real
+	 */
+	public SimulacionWSLimiteAdaptativo(final SimulacionWS delegado) {
+		this.delegado = delegado;
+	}
+
+	public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+		final int usadosAlEntrar = entrar();
+		final long inicio = ahoraNanos();
+
+		try {
+			final RESTResponse<Tarificacion, Error> respuesta = delegado.simular(in);
+			registrar(false, ahoraNanos() - inicio, usadosAlEntrar);
+			return respuesta;
+		} catch (final RuntimeException e) {
+			// Una llamada cancelada por el llamante no dice nada del servicio
+			if (!(e instanceof CancellationException) && !Thread.currentThread().isInterrupted()) {
+				registrar(true, ahoraNanos() - inicio, usadosAlEntrar);
+			}
+			throw e;
+		} finally {
+			salir();
+		}
+	}
+
+	/**
+	 * @return llamadas en curso al entrar, contando ésta
+	 */
+	private synchronized int entrar() {
+		if (limite < 0) {
+			limite = limiteInicial;
+		}
+
+		if (enCurso >= (int) limite) {
+			long restante = TimeUnit.MILLISECONDS.toNanos(milisegundosEspera);
+			final long fin = System.nanoTime() + restante;
+
+			try {
+				while (enCurso >= (int) limite && restante > 0) {
+					TimeUnit.NANOSECONDS.timedWait(this, restante);
+					restante = fin - System.nanoTime();
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Simulación interrumpida");
+			}
+
+			if (enCurso >= (int) limite) {
+				rechazadas.incrementAndGet();
+				throw new ExcepcionServicioNoDisponible(MENSAJE_SATURADO);
+			}
+		}
+
+		return ++enCurso;
+	}
+
+	private synchronized void salir() {
+		enCurso--;
+		notifyAll();
+	}
+
+	private synchronized void registrar(final boolean error, final long nanos, final int usadosAlEntrar) {
+		if (!error && latenciaReferencia < 0) {
+			latenciaReferencia = nanos;
+		}
+
+		final boolean congestion = error || latenciaReferencia > 0 && nanos > tolerancia * latenciaReferencia;
+
+		// Las llamadas lentas también cuentan: si el servicio pasa a ser más lento
+		// de forma permanente la referencia acaba por seguirle
+		if (!error) {
+			latenciaReferencia += PESO_REFERENCIA * (nanos - latenciaReferencia);
+		}
+
+		if (congestion) {
+			final long ahora = ahoraNanos();
+			// Las llamadas que ya estaban en curso al reducir verían la misma congestión
+			if (!reducido || ahora - ultimaReduccion >= latenciaReferencia) {
+				limite = Math.max(limiteMinimo, limite * factorReduccion);
+				ultimaReduccion = ahora;
+				reducido = true;
+				reducciones.incrementAndGet();
+			}
+			return;
+		}
+
+		// Sólo se crece si el límite actual se está usando: un límite ocioso no
+		// dice nada de la capacidad del servicio
+		if (usadosAlEntrar * 2 >= limite) {
+			limite = Math.min(limiteMaximo, limite + 1.0 / limite);
+			notifyAll();
+		}
+	}
+
+	long ahoraNanos() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * @return límite actual de llamadas en curso
+	 */
+	public synchronized int getLimite() {
+		return (int) (limite < 0 ? limiteInicial : limite);
+	}
+
+	/**
+	 * @return llamadas al servicio en curso
+	 */
+	public synchronized int getEnCurso() {
+		return enCurso;
+	}
+
+	/**
+	 * @return latencia de referencia en milisegundos, o -1 si todavía no hay
+	 *         medidas
+	 */
+	public synchronized long getLatenciaReferenciaMs() {
+		return latenciaReferencia < 0 ? -1L : TimeUnit.NANOSECONDS.toMillis((long) latenciaReferencia);
+	}
+
+	/**
+	 * @return llamadas rechazadas por no quedar hueco a tiempo
+	 */
+	public long getRechazadas() {
+		return rechazadas.get();
+	}
+
+	/**
+	 * @return veces que se ha reducido el límite
+	 */
+	public long getReducciones() {
+		return reducciones.get();
+	}
+
+	/**
+	 * @return the limiteInicial
+	 */
+	public int getLimiteInicial() {
+		return limiteInicial;
+	}
+
+	/**
+	 * @param limiteInicial
+	 *            the limiteInicial to set
+	 */
+	public void setLimiteInicial(final int limiteInicial) {
+		this.limiteInicial = limiteInicial;
+	}
+
+	/**
+	 * @return the limiteMinimo
+	 */
+	public int getLimiteMinimo() {
+		return limiteMinimo;
+	}
+
+	/**
+	 * @param limiteMinimo
+	 *            the limiteMinimo to set
+	 */
+	public void setLimiteMinimo(final int limiteMinimo) {
+		this.limiteMinimo = limiteMinimo;
+	}
+
+	/**
+	 * @return the limiteMaximo
+	 */
+	public int getLimiteMaximo() {
+		return limiteMaximo;
+	}
+
+	/**
+	 * @param limiteMaximo
+	 *            the limiteMaximo to set
+	 */
+	public void setLimiteMaximo(final int limiteMaximo) {
+		this.limiteMaximo = limiteMaximo;
+	}
+
+	/**
+	 * @return the factorReduccion
+	 */
+	public double getFactorReduccion() {
+		return factorReduccion;
+	}
+
+	/**
+	 * @param factorReduccion
+	 *            factor, entre 0 y 1, por el que se multiplica el límite al
+	 *            detectar congestión
+	 */
+	public void setFactorReduccion(final double factorReduccion) {
+		this.factorReduccion = factorReduccion;
+	}
+
+	/**
+	 * @return the tolerancia
+	 */
+	public double getTolerancia() {
+		return tolerancia;
+	}
+
+	/**
+	 * @param tolerancia
+	 *            the tolerancia to set
+	 */
+	public void setTolerancia(final double tolerancia) {
+		this.tolerancia = tolerancia;
+	}
+
+	/**
+	 * @return the milisegundosEspera
+	 */
+	public long getMilisegundosEspera() {
+		return milisegundosEspera;
+	}
+
+	/**
+	 * @param milisegundosEspera
+	 *            the milisegundosEspera to set
+	 */
+	public void setMilisegundosEspera(final long milisegundosEspera) {
+		this.milisegundosEspera = milisegundosEspera;
+	}
+}
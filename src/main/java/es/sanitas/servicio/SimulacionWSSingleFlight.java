@@ -0,0 +1,128 @@
+package es.sanitas.servicio;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+/**
+ * Decorador de {@link SimulacionWS} que agrupa las peticiones idénticas en
+ * curso (single-flight).
+ *
+ * La primera petición con una {@link HuellaSimulacion} llama al servicio; las
+ * que llegan mientras está en curso esperan a su respuesta en lugar de hacer
+ * otra llamada. Cada llamante recibe su propia copia de la respuesta, y si la
+ * llamada falla todos reciben la misma excepción. Puede usarse solo o por
+ * debajo de {@link SimulacionWSCache}, para que los fallos simultáneos de la
+ * caché no lleguen todos al servicio.
+ */
+public class SimulacionWSSingleFlight implements SimulacionWS {
+
+	private final SimulacionWS delegado;
+
+	/** Sustituye en la huella las fechas de nacimiento por la edad en la fecha de efecto. */
+	private boolean normalizarEdades = true;
+
+	private final ConcurrentMap<HuellaSimulacion, CompletableFuture<RESTResponse<Tarificacion, Error>>> enCurso = new ConcurrentHashMap<HuellaSimulacion, CompletableFuture<RESTResponse<Tarificacion, Error>>>();
+
+	private final AtomicLong llamadas = new AtomicLong();
+	private final AtomicLong agrupadas = new AtomicLong();
+
+	/**
+	 * @param delegado
+	 *            servicio de simulación real
+	 */
+	public SimulacionWSSingleFlight(final SimulacionWS delegado) {
+		this.delegado = delegado;
+	}
+
+	public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+		final HuellaSimulacion huella = HuellaSimulacion.de(in, normalizarEdades);
+		final CompletableFuture<RESTResponse<Tarificacion, Error>> propia = new CompletableFuture<RESTResponse<Tarificacion, Error>>();
+
+		CompletableFuture<RESTResponse<Tarificacion, Error>> existente;
+		while ((existente = enCurso.putIfAbsent(huella, propia)) != null) {
+			agrupadas.incrementAndGet();
+			try {
+				return esperar(existente);
+			} catch (final CancellationException e) {
+				// Se ha cancelado la llamada de otro llamante, no la nuestra: se repite
+				if (Thread.currentThread().isInterrupted()) {
+					throw e;
+				}
+			}
+		}
+
+		llamadas.incrementAndGet();
+		try {
+			final RESTResponse<Tarificacion, Error> respuesta = delegado.simular(in);
+			// Los que esperan copian de una copia: el llamante puede modificar la respuesta
+			propia.complete(RespuestasSimulacion.copia(respuesta));
+			return respuesta;
+		} catch (final RuntimeException | java.lang.Error e) {
+			propia.completeExceptionally(e);
+			throw e;
+		} finally {
+			enCurso.remove(huella, propia);
+		}
+	}
+
+	private RESTResponse<Tarificacion, Error> esperar(
+			final CompletableFuture<RESTResponse<Tarificacion, Error>> existente) {
+		try {
+			return RespuestasSimulacion.copia(existente.get());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Simulación interrumpida");
+		} catch (final ExecutionException e) {
+			final Throwable causa = e.getCause();
+			if (causa instanceof CancellationException) {
+				throw new CancellationException("Simulación agrupada cancelada");
+			}
+			if (causa instanceof RuntimeException) {
+				throw (RuntimeException) causa;
+			}
+			if (causa instanceof java.lang.Error) {
+				throw (java.lang.Error) causa;
+			}
+			throw new IllegalStateException(causa);
+		}
+	}
+
+	/**
+	 * @return llamadas hechas al servicio
+	 */
+	public long getLlamadas() {
+		return llamadas.get();
+	}
+
+	/**
+	 * @return peticiones atendidas con la respuesta de otra en curso
+	 */
+	public long getAgrupadas() {
+		return agrupadas.get();
+	}
+
+	/**
+	 * @return the normalizarEdades
+	 */
+	public boolean isNormalizarEdades() {
+		return normalizarEdades;
+	}
+
+	/**
+	 * @param normalizarEdades
+	 *            the normalizarEdades to set
+	 */
+	public void setNormalizarEdades(final boolean normalizarEdades) {
+		this.normalizarEdades = normalizarEdades;
+	}
+}
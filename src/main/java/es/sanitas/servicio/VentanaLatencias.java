@@ -0,0 +1,84 @@
+package es.sanitas.servicio;
+
+import java.util.Arrays;
+
+/**
+ * Ventana deslizante con las últimas latencias observadas, para estimar sus
+ * percentiles. Es segura para uso concurrente.
+ *
+ * Además del orden de llegada conserva las muestras ordenadas: cada registro
+ * desplaza como mucho la ventana completa sin reservar memoria, y consultar un
+ * percentil es un acceso directo.
+ */
+public class VentanaLatencias {
+
+	private final long[] muestras;
+	private final long[] ordenadas;
+	private int siguiente;
+	private int tamano;
+
+	/**
+	 * @param capacidad
+	 *            número de muestras recientes que se conservan
+	 */
+	public VentanaLatencias(final int capacidad) {
+		if (capacidad <= 0) {
+			throw new IllegalArgumentException("La capacidad de la ventana debe ser positiva");
+		}
+		muestras = new long[capacidad];
+		ordenadas = new long[capacidad];
+	}
+
+	public synchronized void registrar(final long nanos) {
+		if (tamano == muestras.length) {
+			quitarOrdenada(muestras[siguiente]);
+		} else {
+			tamano++;
+		}
+		insertarOrdenada(nanos);
+
+		muestras[siguiente] = nanos;
+		siguiente = (siguiente + 1) % muestras.length;
+	}
+
+	public synchronized int getTamano() {
+		return tamano;
+	}
+
+	/**
+	 * @param percentil
+	 *            percentil entre 0 y 1
+	 * @return latencia en nanosegundos del percentil indicado, o -1 si la ventana
+	 *         está vacía
+	 */
+	public synchronized long percentil(final double percentil) {
+		if (tamano == 0) {
+			return -1L;
+		}
+
+		final int indice = (int) Math.ceil(percentil * tamano) - 1;
+		return ordenadas[Math.min(tamano - 1, Math.max(0, indice))];
+	}
+
+	/**
+	 * Quita una muestra de las ordenadas; las {@code tamano} primeras posiciones
+	 * la incluyen todavía.
+	 */
+	private void quitarOrdenada(final long nanos) {
+		final int posicion = Arrays.binarySearch(ordenadas, 0, tamano, nanos);
+		System.arraycopy(ordenadas, posicion + 1, ordenadas, posicion, tamano - posicion - 1);
+	}
+
+	/**
+	 * Inserta una muestra en las ordenadas; las {@code tamano - 1} primeras
+	 * posiciones son las muestras anteriores.
+	 */
+	private void insertarOrdenada(final long nanos) {
+		int posicion = Arrays.binarySearch(ordenadas, 0, tamano - 1, nanos);
+		if (posicion < 0) {
+			posicion = -posicion - 1;
+		}
+		System.arraycopy(ordenadas, posicion, ordenadas, posicion + 1, tamano - 1 - posicion);
+		ordenadas[posicion] = nanos;
+	}
+}
@@ -679,6 +679,12 @@ public final class StaticVarsContratacion {
  /** La constante  PRECIOS_SIN_PROMOCION_SIMULACION. */
  public static final String PRECIOS_SIN_PROMOCION_SIMULACION = "PRECIOS_SIN_PROMOCION_SIMULACION";
 
+ /** La constante SIMULACION_REDUCIDA. */
+ public static final String SIMULACION_REDUCIDA = "SIMULACION_REDUCIDA";
+
+ /** La constante ESTADOS_FRECUENCIA_SIMULACION. */
+ public static final String ESTADOS_FRECUENCIA_SIMULACION = "ESTADOS_FRECUENCIA_SIMULACION";
+
 
  /******** EXCEPCIONES ********/
 
@@ -0,0 +1,56 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosContratacionPlan;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Cobertura;
+
+public class CatalogoPlanesTest {
+
+	private final CatalogoPlanes catalogoPlanes = new CatalogoPlanes();
+
+	@Test
+	public void elPlanSeCompilaUnaVezYSeReutiliza() {
+		final CatalogoPlan catalogo = catalogoPlanes.obtener(DatosSimulacionFixture.crearDatosPlan());
+
+		assertSame(catalogo, catalogoPlanes.obtener(DatosSimulacionFixture.crearDatosPlan()));
+		assertSame(catalogo.getCoberturasObligatorias(5), catalogo.getCoberturasObligatorias(5));
+		assertEquals(1, catalogoPlanes.getTamano());
+	}
+
+	@Test
+	public void soloSeIncluyenLasCoberturasObligatoriasConCapital() {
+		final CatalogoPlan catalogo = catalogoPlanes.obtener(DatosSimulacionFixture.crearDatosPlan());
+
+		final Cobertura[] coberturas = catalogo.getCoberturasObligatorias(5);
+		assertEquals(1, coberturas.length);
+		assertEquals(Integer.valueOf(51), coberturas[0].getIdCobertura());
+		assertEquals(Double.valueOf(1000), coberturas[0].getCapital());
+
+		assertEquals(0, catalogo.getCoberturasObligatorias(12345).length);
+		assertNull(catalogo.getProducto(12345));
+		assertEquals("Producto comercial 3", catalogo.getProducto(3).getDescComercial());
+	}
+
+	@Test
+	public void laInvalidacionFuerzaLaRecompilacion() {
+		final DatosContratacionPlan oDatosPlan = DatosSimulacionFixture.crearDatosPlan();
+		final CatalogoPlan catalogo = catalogoPlanes.obtener(oDatosPlan);
+
+		oDatosPlan.getProductos().remove(0);
+		assertSame(catalogo, catalogoPlanes.obtener(oDatosPlan));
+
+		catalogoPlanes.invalidar(oDatosPlan.getIdPlan());
+		final CatalogoPlan recompilado = catalogoPlanes.obtener(oDatosPlan);
+		assertNotSame(catalogo, recompilado);
+		assertNull(recompilado.getProducto(1));
+
+		catalogoPlanes.invalidarTodos();
+		assertEquals(0, catalogoPlanes.getTamano());
+	}
+}
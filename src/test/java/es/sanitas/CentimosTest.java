@@ -0,0 +1,52 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.junit.Test;
+
+public class CentimosTest {
+
+	@Test
+	public void laSumaEnCentimosEsExacta() {
+		long total = 0;
+		double totalDouble = 0;
+		for (int i = 0; i < 1000; i++) {
+			total += Centimos.desdeEuros(0.1);
+			totalDouble += 0.1;
+		}
+
+		assertEquals(10000L, total);
+		assertEquals("100.0", Centimos.formatear(total));
+		assertEquals(false, "100.0".equals(String.valueOf(totalDouble)));
+	}
+
+	@Test
+	public void seRedondeaAlCentimo() {
+		assertEquals(346L, Centimos.desdeEuros(3.456));
+		assertEquals(345L, Centimos.desdeEuros(3.4549));
+		assertEquals(-15L, Centimos.desdeEuros(-0.15));
+		assertEquals(101L, Centimos.desdeEuros(1.005));
+		assertEquals(268L, Centimos.desdeEuros(2.675));
+		assertEquals(13L, Centimos.desdeEuros(0.125));
+		assertEquals(-13L, Centimos.desdeEuros(-0.125));
+	}
+
+	@Test
+	public void coincideConElRedondeoDecimal() {
+		for (long milesimas = -2000000; milesimas <= 2000000; milesimas++) {
+			comprobar(milesimas / 1000.0);
+		}
+		for (long milesimas = 1000000000L; milesimas <= 1000000000000L; milesimas += 999983L) {
+			comprobar(milesimas / 1000.0);
+		}
+	}
+
+	private static void comprobar(final double euros) {
+		assertEquals(String.valueOf(euros),
+				BigDecimal.valueOf(euros).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue(),
+				Centimos.desdeEuros(euros));
+	}
+}
@@ -0,0 +1,92 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoContratacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoPromociones;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promocion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+
+/**
+ * Caducidad, tamaño y clave de la caché de códigos rechazados.
+ */
+public class CodigosPromocionalesRechazadosTest {
+
+	private long ahora;
+	private CodigosPromocionalesRechazados rechazados;
+
+	@Before
+	public void setUp() {
+		rechazados = new CodigosPromocionalesRechazados() {
+			@Override
+			long ahoraNanos() {
+				return ahora;
+			}
+		};
+		rechazados.setMilisegundosVigencia(1000L);
+	}
+
+	@Test
+	public void seRecuerdaDuranteLaVigencia() {
+		rechazados.registrarRechazo(crearSimulacion("999", 1, "01/01/2020"));
+
+		ahora += TimeUnit.MILLISECONDS.toNanos(999L);
+		assertTrue(rechazados.estaRechazado(crearSimulacion("999", 1, "01/01/2020")));
+
+		ahora += TimeUnit.MILLISECONDS.toNanos(1L);
+		assertFalse(rechazados.estaRechazado(crearSimulacion("999", 1, "01/01/2020")));
+		assertEquals(0, rechazados.getTamano());
+		assertEquals(1L, rechazados.getLlamadasEvitadas());
+	}
+
+	@Test
+	public void laClaveIncluyePlanYFechaDeEfecto() {
+		rechazados.registrarRechazo(crearSimulacion("999", 1, "01/01/2020"));
+
+		assertFalse(rechazados.estaRechazado(crearSimulacion("999", 2, "01/01/2020")));
+		assertFalse(rechazados.estaRechazado(crearSimulacion("999", 1, "01/02/2020")));
+		assertFalse(rechazados.estaRechazado(crearSimulacion("998", 1, "01/01/2020")));
+		assertFalse(rechazados.estaRechazado(crearSimulacion(null, 1, "01/01/2020")));
+	}
+
+	@Test
+	public void seDescartanLosMasAntiguos() {
+		rechazados.setTamanoMaximo(2);
+		rechazados.registrarRechazo(crearSimulacion("1", 1, "01/01/2020"));
+		rechazados.registrarRechazo(crearSimulacion("2", 1, "01/01/2020"));
+		rechazados.registrarRechazo(crearSimulacion("1", 1, "01/01/2020"));
+		rechazados.registrarRechazo(crearSimulacion("3", 1, "01/01/2020"));
+
+		assertEquals(2, rechazados.getTamano());
+		assertFalse(rechazados.estaRechazado(crearSimulacion("2", 1, "01/01/2020")));
+		assertTrue(rechazados.estaRechazado(crearSimulacion("1", 1, "01/01/2020")));
+		assertTrue(rechazados.estaRechazado(crearSimulacion("3", 1, "01/01/2020")));
+	}
+
+	private static Simulacion crearSimulacion(final String codigo, final int idPlan, final String fechaEfecto) {
+		final InfoContratacion info = new InfoContratacion();
+		info.setIdPlan(idPlan);
+		info.setFechaEfecto(fechaEfecto);
+
+		final InfoPromociones infoPromociones = new InfoPromociones();
+		if (codigo != null) {
+			final Promocion promocion = new Promocion();
+			promocion.setIdPromocion(codigo);
+			infoPromociones.setListaPromociones(new Promocion[] { promocion });
+		} else {
+			infoPromociones.setListaPromociones(new Promocion[0]);
+		}
+
+		final Simulacion simulacion = new Simulacion();
+		simulacion.setInfoContratacion(info);
+		simulacion.setInfoPromociones(infoPromociones);
+		return simulacion;
+	}
+}
@@ -0,0 +1,91 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.soporte.DatosAltaAsegurados;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+public class ControladorBrownoutTest {
+
+	private long ahora;
+	private ControladorBrownout controlador;
+
+	@Before
+	public void setUp() {
+		controlador = new ControladorBrownout() {
+			@Override
+			long ahoraNanos() {
+				return ahora;
+			}
+		};
+		controlador.setColaMaxima(10);
+		controlador.setMilisegundosLatenciaMaxima(1000);
+		controlador.setMilisegundosMinimoReducido(5000);
+	}
+
+	@Test
+	public void seReducePorColaYSeRecuperaTrasElMinimo() {
+		assertFalse(controlador.reducir(9));
+		assertTrue(controlador.reducir(10));
+
+		// Ya sin cola, se mantiene hasta el tiempo mínimo
+		assertTrue(controlador.reducir(0));
+		avanzar(5000);
+		assertFalse(controlador.reducir(0));
+		assertEquals(1L, controlador.getActivaciones());
+	}
+
+	@Test
+	public void seReducePorLatenciaConHisteresis() {
+		controlador.registrarLatencia(TimeUnit.MILLISECONDS.toNanos(1200));
+		assertTrue(controlador.reducir(0));
+
+		avanzar(5000);
+		controlador.registrarLatencia(TimeUnit.MILLISECONDS.toNanos(800));
+		// Por debajo del máximo pero no de la fracción de recuperación
+		assertTrue(controlador.reducir(0));
+
+		for (int i = 0; i < 20; i++) {
+			controlador.registrarLatencia(TimeUnit.MILLISECONDS.toNanos(100));
+		}
+		assertFalse(controlador.reducir(0));
+	}
+
+	@Test
+	public void bajoSaturacionSeSimulaSoloLaFrecuenciaPreferida() {
+		final RealizarSimulacion realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub());
+		controlador.setColaMaxima(0);
+		realizarSimulacion.setControladorBrownout(controlador);
+
+		try {
+			final DatosAltaAsegurados oDatosAlta = DatosSimulacionFixture.crearAlta(1, null, 1);
+			oDatosAlta.setGenFrecuenciaPago(FrecuenciaEnum.ANUAL.getValor());
+
+			final ResultadoSimulacion resultado = realizarSimulacion.obtenerResultadoSimulacionAsync(oDatosAlta, null,
+					null, false, DatosSimulacionFixture.crearValores(false)).join();
+
+			assertTrue(resultado.isReducida());
+			assertFalse(resultado.isParcial());
+			assertEquals(EstadoFrecuencia.COMPLETA, resultado.getEstado(FrecuenciaEnum.ANUAL));
+			assertEquals(EstadoFrecuencia.NO_SOLICITADA, resultado.getEstado(FrecuenciaEnum.MENSUAL));
+			assertEquals(1, resultado.getRecibos().size());
+			assertEquals(Boolean.TRUE, resultado.comoMapa().get(StaticVarsContratacion.SIMULACION_REDUCIDA));
+			assertTrue(controlador.getLatenciaMediaMs() >= 0);
+		} finally {
+			realizarSimulacion.destroy();
+		}
+	}
+
+	private void avanzar(final long milisegundos) {
+		ahora += TimeUnit.MILLISECONDS.toNanos(milisegundos);
+	}
+}
@@ -0,0 +1,58 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.soporte.SimulacionWS;
+
+public class CoordinadorPromocionTest {
+
+	@Test
+	public void laInterrupcionPropiaSeConsume() throws Exception {
+		assertEquals(Boolean.FALSE, interrumpidoTrasElRechazo(false));
+	}
+
+	@Test
+	public void unaCancelacionSimultaneaNoSePierde() throws Exception {
+		assertEquals(Boolean.TRUE, interrumpidoTrasElRechazo(true));
+	}
+
+	/**
+	 * Una frecuencia espera al servicio hasta que otra rechaza el código.
+	 *
+	 * @return si el hilo de la llamada sigue interrumpido al volver del
+	 *         coordinador
+	 */
+	private Boolean interrumpidoTrasElRechazo(final boolean cancelada) throws Exception {
+		final CoordinadorPromocion coordinador = new CoordinadorPromocion(() -> cancelada);
+		final CountDownLatch llamando = new CountDownLatch(1);
+		final CompletableFuture<Boolean> interrumpido = new CompletableFuture<Boolean>();
+
+		final SimulacionWS servicio = in -> {
+			llamando.countDown();
+			try {
+				Thread.sleep(5000L);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw new IllegalStateException("Llamada interrumpida");
+		};
+
+		final Thread hilo = new Thread(() -> {
+			assertNull(coordinador.simularConCodigo(servicio, new Simulacion()));
+			interrumpido.complete(Thread.currentThread().isInterrupted());
+		});
+		hilo.start();
+
+		llamando.await(5, TimeUnit.SECONDS);
+		coordinador.rechazarCodigo();
+		return interrumpido.get(5, TimeUnit.SECONDS);
+	}
+}
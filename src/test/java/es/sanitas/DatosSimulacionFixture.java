@@ -0,0 +1,114 @@
+package es.sanitas;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosCobertura;
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosContratacionPlan;
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosPlanProducto;
+import es.sanitas.soporte.DatosAltaAsegurados;
+import es.sanitas.soporte.DatosAseguradoInclusion;
+import es.sanitas.soporte.StaticVarsContratacion;
+import wscontratacion.contratacion.fuentes.parametros.DatosDomicilio;
+import wscontratacion.contratacion.fuentes.parametros.DatosPersona;
+import wscontratacion.contratacion.fuentes.parametros.DatosProductoAlta;
+
+/**
+ * Construcción de datos de entrada para las simulaciones de los tests.
+ */
+public final class DatosSimulacionFixture {
+
+	public static final int ID_PLAN = 5;
+	public static final int[] PRODUCTOS_PLAN = { 1, 5, 3, 389, 670 };
+
+	private DatosSimulacionFixture() {
+	}
+
+	/**
+	 * Alta de una póliza con un titular y {@code numeroAsegurados} asegurados
+	 * adicionales, todos con los productos indicados.
+	 */
+	public static DatosAltaAsegurados crearAlta(final int numeroAsegurados, final String codigoPromocional,
+			final int... idsProducto) {
+		final DatosAltaAsegurados oDatosAlta = new DatosAltaAsegurados();
+		oDatosAlta.setIdPlan(ID_PLAN);
+		oDatosAlta.setFAlta("01/01/2018");
+		oDatosAlta.setGenFrecuenciaPago(1);
+		oDatosAlta.setCodigoPromocional(codigoPromocional);
+
+		final DatosDomicilio domicilio = new DatosDomicilio();
+		domicilio.setCodPostal(28001);
+		oDatosAlta.setDomicilios(new ArrayList<DatosDomicilio>(Arrays.asList(domicilio)));
+
+		oDatosAlta.setTitular(crearAsegurado("Titular", "35", 1, idsProducto));
+
+		final List<DatosAseguradoInclusion> asegurados = new ArrayList<DatosAseguradoInclusion>();
+		for (int i = 0; i < numeroAsegurados; i++) {
+			asegurados.add(crearAsegurado("Asegurado " + i, String.valueOf(5 + 7 * i % 60), i % 3, idsProducto));
+		}
+		oDatosAlta.setAsegurados(asegurados);
+
+		return oDatosAlta;
+	}
+
+	public static DatosAseguradoInclusion crearAsegurado(final String nombre, final String edad, final int sexo,
+			final int... idsProducto) {
+		final DatosPersona persona = new DatosPersona();
+		persona.setNombre(nombre);
+		persona.setFNacimiento(edad);
+		persona.setGenSexo(sexo);
+
+		final List<DatosProductoAlta> productos = new ArrayList<DatosProductoAlta>();
+		for (final int idProducto : idsProducto) {
+			final DatosProductoAlta producto = new DatosProductoAlta();
+			producto.setIdProducto(idProducto);
+			productos.add(producto);
+		}
+
+		final DatosAseguradoInclusion asegurado = new DatosAseguradoInclusion();
+		asegurado.setDatosPersonales(persona);
+		asegurado.setProductosContratados(productos);
+		return asegurado;
+	}
+
+	/**
+	 * Valores de contexto de la simulación: plan con sus productos y coberturas
+	 * obligatorias y, opcionalmente, sólo frecuencia mensual.
+	 */
+	public static Map<String, Object> crearValores(final boolean soloMensual, final String... excepciones) {
+		final Map<String, Object> hmValores = new HashMap<String, Object>();
+		hmValores.put(StaticVarsContratacion.DATOS_PLAN, crearDatosPlan());
+		hmValores.put("EXCEPCIONES", Arrays.asList(excepciones));
+		if (soloMensual) {
+			hmValores.put(StaticVarsContratacion.FREC_MENSUAL, Boolean.TRUE);
+		}
+		return hmValores;
+	}
+
+	public static DatosContratacionPlan crearDatosPlan() {
+		final DatosContratacionPlan oDatosPlan = new DatosContratacionPlan();
+		oDatosPlan.setIdPlan(Long.valueOf(ID_PLAN));
+
+		for (final int idProducto : PRODUCTOS_PLAN) {
+			final DatosPlanProducto producto = new DatosPlanProducto();
+			producto.setIdProducto(Long.valueOf(idProducto));
+			producto.setDescComercial("Producto comercial " + idProducto);
+			producto.setSwObligatorio(idProducto == 1);
+
+			for (int i = 0; i < 3; i++) {
+				final DatosCobertura cobertura = new DatosCobertura();
+				cobertura.setIdCobertura(Long.valueOf(idProducto * 10 + i));
+				cobertura.setSwObligatorio(i != 2);
+				cobertura.setCapitalMinimo(i * 1000);
+				producto.getCoberturas().add(cobertura);
+			}
+
+			oDatosPlan.getProductos().add(producto);
+		}
+
+		return oDatosPlan;
+	}
+}
@@ -0,0 +1,79 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import es.sanitas.soporte.ExcepcionContratacion;
+
+/**
+ * API asíncrona de {@link RealizarSimulacion}.
+ */
+public class RealizarSimulacionAsyncTest {
+
+	private final ObjectMapper mapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS,
+			true);
+
+	private RealizarSimulacion realizarSimulacion;
+
+	@Before
+	public void setUp() {
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub(200L));
+	}
+
+	@After
+	public void tearDown() {
+		realizarSimulacion.destroy();
+	}
+
+	@Test
+	public void devuelveElControlAntesDeQueRespondaElServicio() throws Exception {
+		final CompletableFuture<Map<String, Object>> simulacion = realizarSimulacion.realizarSimulacionAsync(
+				DatosSimulacionFixture.crearAlta(2, "123", 1, 5), null, null, true,
+				DatosSimulacionFixture.crearValores(false));
+
+		assertFalse(simulacion.isDone());
+
+		final Map<String, Object> esperado = realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(2, "123", 1, 5), null, null, true,
+				DatosSimulacionFixture.crearValores(false));
+		assertEquals(mapper.writeValueAsString(esperado),
+				mapper.writeValueAsString(simulacion.get(5, TimeUnit.SECONDS)));
+	}
+
+	@Test
+	public void unErrorDelServicioCompletaElFutureConExcepcionContratacion() throws Exception {
+		final CompletableFuture<Map<String, Object>> simulacion = realizarSimulacion.realizarSimulacionAsync(
+				DatosSimulacionFixture.crearAlta(0, SimulacionWSStub.CODIGO_ERROR_SERVICIO, 1), null, null, false,
+				DatosSimulacionFixture.crearValores(true));
+
+		try {
+			simulacion.get(5, TimeUnit.SECONDS);
+			fail("Se esperaba el error del servicio");
+		} catch (final ExecutionException e) {
+			assertTrue(e.getCause() instanceof ExcepcionContratacion);
+			assertEquals(SimulacionWSStub.DESCRIPCION_ERROR_SERVICIO, e.getCause().getMessage());
+		}
+	}
+
+	@Test(expected = ExcepcionContratacion.class)
+	public void laVersionSincronaLanzaLaExcepcionDelFuture() throws Exception {
+		realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(0, SimulacionWSStub.CODIGO_ERROR_SERVICIO, 1), null, null, false,
+				DatosSimulacionFixture.crearValores(true));
+	}
+}
@@ -0,0 +1,92 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import es.sanitas.soporte.DatosAltaAsegurados;
+
+/**
+ * Comprueba que un único bean {@link RealizarSimulacion} puede atender
+ * simulaciones concurrentes sin que sus resultados se mezclen.
+ */
+public class RealizarSimulacionConcurrenciaTest {
+
+	private static final int HILOS = 16;
+	private static final int SIMULACIONES = 200;
+
+	private final ObjectMapper mapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS,
+			true);
+
+	private RealizarSimulacion realizarSimulacion;
+	private ExecutorService clientes;
+
+	@Before
+	public void setUp() {
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub(1L));
+		clientes = Executors.newFixedThreadPool(HILOS);
+	}
+
+	@After
+	public void tearDown() {
+		clientes.shutdownNow();
+	}
+
+	@Test
+	public void simulacionesConcurrentesObtienenElMismoResultadoQueEnSerie() throws Exception {
+		final List<String> esperados = new ArrayList<String>();
+		for (int i = 0; i < SIMULACIONES; i++) {
+			esperados.add(simular(i));
+		}
+
+		final CountDownLatch salida = new CountDownLatch(1);
+		final List<Future<String>> resultados = new ArrayList<Future<String>>();
+		for (int i = 0; i < SIMULACIONES; i++) {
+			final int caso = i;
+			resultados.add(clientes.submit(new Callable<String>() {
+				public String call() throws Exception {
+					salida.await();
+					return simular(caso);
+				}
+			}));
+		}
+		salida.countDown();
+
+		for (int i = 0; i < SIMULACIONES; i++) {
+			assertEquals("Simulación " + i, esperados.get(i), resultados.get(i).get(30, TimeUnit.SECONDS));
+		}
+	}
+
+	/**
+	 * Cada caso varía el número de asegurados, los productos, el código
+	 * promocional y las frecuencias a tarificar.
+	 */
+	private String simular(final int caso) throws Exception {
+		final String codigoPromocional = caso % 3 == 0 ? null : String.valueOf(100 + caso % 7);
+		final int[] productos = caso % 2 == 0 ? new int[] { 1, 5 } : new int[] { 1, 3, 389 };
+		final DatosAltaAsegurados oDatosAlta = DatosSimulacionFixture.crearAlta(caso % 5, codigoPromocional,
+				productos);
+		final Map<String, Object> hmValores = DatosSimulacionFixture.crearValores(caso % 4 == 0);
+
+		final Map<String, Object> resultado = realizarSimulacion.realizarSimulacion(oDatosAlta, null, null, caso % 2 == 0,
+				hmValores);
+
+		return mapper.writeValueAsString(resultado);
+	}
+}
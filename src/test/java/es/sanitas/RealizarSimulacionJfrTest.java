@@ -0,0 +1,164 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.soporte.BeneficiarioPolizas;
+import es.sanitas.soporte.DatosAltaAsegurados;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.StaticVarsContratacion;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import wscontratacion.contratacion.fuentes.parametros.DatosPersona;
+
+public class RealizarSimulacionJfrTest {
+
+	private RealizarSimulacion realizarSimulacion;
+	private Recording grabacion;
+
+	@Before
+	public void setUp() {
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub());
+
+		grabacion = iniciarGrabacion();
+	}
+
+	@After
+	public void tearDown() {
+		grabacion.close();
+		realizarSimulacion.destroy();
+	}
+
+	@Test
+	public void seEmitenLosEventosDeLaSimulacion() throws Exception {
+		realizarSimulacion
+				.obtenerResultadoSimulacionAsync(
+						DatosSimulacionFixture.crearAlta(2, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null,
+						null, false, DatosSimulacionFixture.crearValores(false))
+				.get(5, TimeUnit.SECONDS);
+
+		final List<RecordedEvent> eventos = detener();
+
+		final List<RecordedEvent> simulaciones = filtrar(eventos, "es.sanitas.Simulacion");
+		assertEquals(1, simulaciones.size());
+		assertEquals("ALTA_POLIZA", simulaciones.get(0).getString("operacion"));
+		assertEquals(3, simulaciones.get(0).getInt("beneficiarios"));
+		assertEquals(FrecuenciaEnum.values().length, simulaciones.get(0).getInt("frecuencias"));
+		assertEquals("COMPLETA", simulaciones.get(0).getString("resultado"));
+
+		final List<RecordedEvent> reintentos = filtrar(eventos, "es.sanitas.ReintentoSinCodigoPromocional");
+		assertEquals(FrecuenciaEnum.values().length, reintentos.size());
+		for (final RecordedEvent reintento : reintentos) {
+			assertEquals(SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, reintento.getString("codigoPromocional"));
+		}
+
+		int rechazos = 0;
+		int sinCodigo = 0;
+		for (final RecordedEvent llamada : filtrar(eventos, "es.sanitas.LlamadaServicioSimulacion")) {
+			if (StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL.equals(llamada.getString("codigoError"))) {
+				assertTrue(llamada.getBoolean("conCodigoPromocional"));
+				rechazos++;
+			} else if (!llamada.getBoolean("conCodigoPromocional")) {
+				sinCodigo++;
+			}
+		}
+		assertTrue(rechazos >= 1);
+		assertEquals(FrecuenciaEnum.values().length, sinCodigo);
+	}
+
+	@Test
+	public void unCodigoYaRechazadoNoSeCuentaComoReintento() throws Exception {
+		realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(false));
+		grabacion.close();
+		grabacion = iniciarGrabacion();
+
+		realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(false));
+
+		final List<RecordedEvent> eventos = detener();
+		assertTrue(filtrar(eventos, "es.sanitas.ReintentoSinCodigoPromocional").isEmpty());
+		final List<RecordedEvent> llamadas = filtrar(eventos, "es.sanitas.LlamadaServicioSimulacion");
+		assertEquals(FrecuenciaEnum.values().length, llamadas.size());
+		for (final RecordedEvent llamada : llamadas) {
+			assertFalse(llamada.getBoolean("conCodigoPromocional"));
+		}
+	}
+
+	@Test
+	public void laInclusionSeDistingueDelAlta() throws Exception {
+		final DatosAltaAsegurados oDatosAlta = DatosSimulacionFixture.crearAlta(0, null, 1);
+		oDatosAlta.setIdPoliza(Long.valueOf(123456L));
+		oDatosAlta.setGenFrecuenciaPago(FrecuenciaEnum.MENSUAL.getValor());
+
+		final DatosPersona persona = new DatosPersona();
+		persona.setNombre("Incluido");
+		persona.setFNacimiento("30");
+		persona.setGenSexo(1);
+		final BeneficiarioPolizas beneficiario = new BeneficiarioPolizas();
+		beneficiario.setDatosPersonales(persona);
+		final List<BeneficiarioPolizas> lBeneficiarios = new ArrayList<BeneficiarioPolizas>();
+		lBeneficiarios.add(beneficiario);
+
+		final ResultadoSimulacion resultado = realizarSimulacion.obtenerResultadoSimulacionAsync(oDatosAlta, null,
+				lBeneficiarios, false, DatosSimulacionFixture.crearValores(false)).get(5, TimeUnit.SECONDS);
+		assertTrue(resultado.getErrores().isEmpty());
+
+		final List<RecordedEvent> simulaciones = filtrar(detener(), "es.sanitas.Simulacion");
+		assertEquals(1, simulaciones.size());
+		assertEquals("INCLUSION_BENEFICIARIO", simulaciones.get(0).getString("operacion"));
+		assertEquals(1, simulaciones.get(0).getInt("beneficiarios"));
+		assertEquals(1, simulaciones.get(0).getInt("frecuencias"));
+		assertEquals("COMPLETA", simulaciones.get(0).getString("resultado"));
+		assertFalse(simulaciones.get(0).getBoolean("reducida"));
+	}
+
+	private Recording iniciarGrabacion() {
+		final Recording nueva = new Recording();
+		nueva.enable(EventoSimulacionJfr.class).withoutThreshold();
+		nueva.enable(EventoLlamadaServicioJfr.class).withoutThreshold();
+		nueva.enable(EventoReintentoPromocionJfr.class).withoutThreshold();
+		nueva.start();
+		return nueva;
+	}
+
+	/**
+	 * El future devuelto se completa después de emitir el evento de la
+	 * simulación, así que se puede detener la grabación en cuanto termina.
+	 */
+	private List<RecordedEvent> detener() throws Exception {
+		grabacion.stop();
+		final Path fichero = Files.createTempFile("simulacion", ".jfr");
+		try {
+			grabacion.dump(fichero);
+			return RecordingFile.readAllEvents(fichero);
+		} finally {
+			Files.delete(fichero);
+		}
+	}
+
+	private List<RecordedEvent> filtrar(final List<RecordedEvent> eventos, final String nombre) {
+		final List<RecordedEvent> filtrados = new ArrayList<RecordedEvent>();
+		for (final RecordedEvent evento : eventos) {
+			if (evento.getEventType().getName().equals(nombre)) {
+				filtrados.add(evento);
+			}
+		}
+		return filtrados;
+	}
+}
@@ -0,0 +1,119 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.soporte.ExcepcionContratacion;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+public class RealizarSimulacionMetricasTest {
+
+	private RealizarSimulacion realizarSimulacion;
+	private RegistroMetricasMemoria metricas;
+
+	@Before
+	public void setUp() {
+		metricas = new RegistroMetricasMemoria();
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub());
+		realizarSimulacion.setRegistroMetricas(metricas);
+	}
+
+	@After
+	public void tearDown() {
+		realizarSimulacion.destroy();
+	}
+
+	@Test
+	public void seMideCadaFaseDeLaSimulacion() throws Exception {
+		realizarSimulacion.realizarSimulacion(DatosSimulacionFixture.crearAlta(2, null, 1, 5), null, null, false,
+				DatosSimulacionFixture.crearValores(false));
+
+		assertEquals(1, metricas.getNumero(MetricaSimulacion.PETICION, null));
+		assertEquals(4, metricas.getNumero(MetricaSimulacion.ESPERA_POOL, null));
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			assertEquals(1, metricas.getNumero(MetricaSimulacion.LLAMADA_SERVICIO, frecuencia.name()));
+			assertEquals(1, metricas.getNumero(MetricaSimulacion.PROCESAR_FRECUENCIA, frecuencia.name()));
+		}
+		assertEquals(1, metricas.getNumero(MetricaSimulacion.COMBINAR_FRECUENCIAS, null));
+		assertEquals(0, metricas.getNumero(MetricaSimulacion.REINTENTO_SIN_CODIGO, FrecuenciaEnum.MENSUAL.name()));
+		assertTrue(metricas.getNanos(MetricaSimulacion.PETICION, null) > 0);
+
+		// El total se registra al completarse el future, quizá en otro hilo
+		esperarNumero(MetricaSimulacion.SIMULACION, "completa", 1);
+	}
+
+	@Test
+	public void seCuentanLosErroresDelServicioPorCodigo() throws Exception {
+		realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(false));
+
+		assertTrue(metricas.getNumero(MetricaSimulacion.ERRORES_SERVICIO,
+				StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL) >= 1);
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			assertEquals(1, metricas.getNumero(MetricaSimulacion.REINTENTO_SIN_CODIGO, frecuencia.name()));
+		}
+
+		try {
+			realizarSimulacion.realizarSimulacion(
+					DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_ERROR_SERVICIO, 1), null, null, false,
+					DatosSimulacionFixture.crearValores(true));
+			fail();
+		} catch (final ExcepcionContratacion e) {
+			assertEquals(1, metricas.getNumero(MetricaSimulacion.ERRORES_SERVICIO, "-1"));
+		}
+		esperarNumero(MetricaSimulacion.SIMULACION, "fallida", 1);
+	}
+
+	@Test
+	public void unCodigoYaRechazadoSeCuentaAparte() throws Exception {
+		realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(false));
+		assertEquals(0, metricas.getNumero(MetricaSimulacion.CODIGO_RECHAZADO_CONOCIDO, null));
+
+		realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(false));
+
+		assertEquals(1, metricas.getNumero(MetricaSimulacion.CODIGO_RECHAZADO_CONOCIDO, null));
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			// Sólo los reintentos de la primera simulación
+			assertEquals(1, metricas.getNumero(MetricaSimulacion.REINTENTO_SIN_CODIGO, frecuencia.name()));
+		}
+	}
+
+	@Test
+	public void losIndicadoresLeenElPool() throws Exception {
+		assertEquals(0, metricas.getIndicador(MetricaSimulacion.TAREAS_EN_COLA));
+		assertEquals(0, metricas.getIndicador(MetricaSimulacion.HILOS_ACTIVOS));
+
+		realizarSimulacion.realizarSimulacion(DatosSimulacionFixture.crearAlta(0, null, 1), null, null, false,
+				DatosSimulacionFixture.crearValores(true));
+		assertEquals(0, metricas.getIndicador(MetricaSimulacion.TAREAS_EN_COLA));
+	}
+
+	@Test
+	public void sinRegistroNoSeMide() {
+		assertFalse(new RealizarSimulacion().getRegistroMetricas().isActivo());
+	}
+
+	private void esperarNumero(final MetricaSimulacion metrica, final String etiqueta, final long esperado)
+			throws InterruptedException {
+		final long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (metricas.getNumero(metrica, etiqueta) < esperado && System.nanoTime() < limite) {
+			Thread.sleep(10);
+		}
+		assertEquals(esperado, metricas.getNumero(metrica, etiqueta));
+	}
+}
@@ -0,0 +1,177 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.ExcepcionContratacion;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.Recibo;
+import es.sanitas.soporte.SimulacionWS;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+/**
+ * Resultados parciales cuando alguna frecuencia falla o no termina en plazo.
+ */
+public class RealizarSimulacionParcialTest {
+
+	private RealizarSimulacion realizarSimulacion;
+	private ServicioTrimestral servicio;
+
+	@Before
+	public void setUp() {
+		servicio = new ServicioTrimestral();
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(servicio);
+		realizarSimulacion.setResultadosParciales(true);
+		realizarSimulacion.setMilisegundosPlazo(300L);
+	}
+
+	@After
+	public void tearDown() {
+		realizarSimulacion.destroy();
+	}
+
+	@Test
+	public void unaFrecuenciaFallidaNoImpideLasDemas() {
+		servicio.fallar = true;
+
+		final ResultadoSimulacion resultado = simular();
+
+		assertTrue(resultado.isParcial());
+		assertEquals(EstadoFrecuencia.FALLIDA, resultado.getEstado(FrecuenciaEnum.TRIMESTRAL));
+		assertEquals(EstadoFrecuencia.COMPLETA, resultado.getEstado(FrecuenciaEnum.MENSUAL));
+		assertTrue(resultado.getPrecioSinPromocion(FrecuenciaEnum.MENSUAL) > 0);
+		assertEquals(0.0, resultado.getPrecioSinPromocion(FrecuenciaEnum.TRIMESTRAL), 0.0);
+		assertEquals(FrecuenciaEnum.values().length, resultado.getRecibos().size());
+		assertEquals(FrecuenciaEnum.values().length, resultado.getPromociones().size());
+		assertTrue(resultado.getRecibos().get(FrecuenciaEnum.TRIMESTRAL.getValor() - 1).isEmpty());
+		assertTrue(resultado.getPromociones().get(FrecuenciaEnum.TRIMESTRAL.getValor() - 1).isEmpty());
+
+		// Las demás frecuencias siguen en su posición
+		servicio.fallar = false;
+		final ResultadoSimulacion completo = simular();
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			if (frecuencia != FrecuenciaEnum.TRIMESTRAL) {
+				final int indice = frecuencia.getValor() - 1;
+				assertFalse(resultado.getRecibos().get(indice).isEmpty());
+				assertEquals(importe(completo.getRecibos().get(indice)), importe(resultado.getRecibos().get(indice)),
+						0.0);
+			}
+		}
+		assertTrue(resultado.comoMapa().containsKey(StaticVarsContratacion.ESTADOS_FRECUENCIA_SIMULACION));
+		assertTrue(resultado.getResultadoCompleto().isDone());
+	}
+
+	@Test
+	public void unaFrecuenciaLentaSeDevuelveComoPlazoVencido() {
+		servicio.retardoMs = 2000L;
+
+		final long inicio = System.nanoTime();
+		final ResultadoSimulacion resultado = simular();
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1500L);
+		assertEquals(EstadoFrecuencia.PLAZO_VENCIDO, resultado.getEstado(FrecuenciaEnum.TRIMESTRAL));
+		assertEquals(EstadoFrecuencia.COMPLETA, resultado.getEstado(FrecuenciaEnum.ANUAL));
+	}
+
+	@Test
+	public void lasFrecuenciasPendientesSeCompletanEnSegundoPlano() throws Exception {
+		servicio.retardoMs = 600L;
+		realizarSimulacion.setCompletarEnSegundoPlano(true);
+
+		final ResultadoSimulacion resultado = simular();
+		assertEquals(EstadoFrecuencia.PENDIENTE, resultado.getEstado(FrecuenciaEnum.TRIMESTRAL));
+
+		final ResultadoSimulacion completo = resultado.getResultadoCompleto().get(5, TimeUnit.SECONDS);
+		assertFalse(completo.isParcial());
+		assertTrue(completo.getPrecioSinPromocion(FrecuenciaEnum.TRIMESTRAL) > 0);
+		assertEquals(resultado.getPrecioSinPromocion(FrecuenciaEnum.MENSUAL),
+				completo.getPrecioSinPromocion(FrecuenciaEnum.MENSUAL), 0.0);
+		assertFalse(completo.comoMapa().containsKey(StaticVarsContratacion.ESTADOS_FRECUENCIA_SIMULACION));
+	}
+
+	@Test
+	public void sinNingunaFrecuenciaLaSimulacionFalla() {
+		// Con la JVM en frío el plazo de 300 ms puede vencer antes que el error
+		realizarSimulacion.setMilisegundosPlazo(5000L);
+		try {
+			realizarSimulacion.obtenerResultadoSimulacionAsync(
+					DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_ERROR_SERVICIO, 1), null, null, false,
+					DatosSimulacionFixture.crearValores(false)).join();
+			fail();
+		} catch (final CompletionException e) {
+			assertTrue(e.getCause() instanceof ExcepcionContratacion);
+			assertEquals(SimulacionWSStub.DESCRIPCION_ERROR_SERVICIO, e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void sinResultadosParcialesUnaFrecuenciaFallidaFallaLaSimulacion() {
+		realizarSimulacion.setResultadosParciales(false);
+		servicio.fallar = true;
+
+		try {
+			simular();
+			fail();
+		} catch (final CompletionException e) {
+			assertTrue(e.getCause() instanceof ExcepcionContratacion);
+		}
+	}
+
+	private ResultadoSimulacion simular() {
+		final Map<String, Object> hmValores = DatosSimulacionFixture.crearValores(false);
+		return realizarSimulacion
+				.obtenerResultadoSimulacionAsync(DatosSimulacionFixture.crearAlta(1, null, 1), null, null, false,
+						hmValores)
+				.join();
+	}
+
+	private static double importe(final List<Recibo> recibos) {
+		double importe = 0;
+		for (final Recibo recibo : recibos) {
+			importe += recibo.getImporte();
+		}
+		return importe;
+	}
+
+	/**
+	 * Falla o tarda en la frecuencia trimestral; el resto responde al momento.
+	 */
+	private static class ServicioTrimestral implements SimulacionWS {
+
+		private final SimulacionWS stub = new SimulacionWSStub();
+		private volatile boolean fallar;
+		private volatile long retardoMs;
+
+		public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+			if (in.getInfoContratacion().getFrecuenciaPago() == FrecuenciaEnum.TRIMESTRAL.getValor()) {
+				if (fallar) {
+					throw new IllegalStateException("Servicio no disponible");
+				}
+				if (retardoMs > 0) {
+					try {
+						Thread.sleep(retardoMs);
+					} catch (final InterruptedException e) {
+						throw new IllegalStateException("Llamada interrumpida");
+					}
+				}
+			}
+			return stub.simular(in);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.consultasoperaciones.DatosContratacionPlan;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.BeneficiarioPolizas;
+import es.sanitas.soporte.ProductoPolizas;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+import es.sanitas.soporte.StaticVarsContratacion;
+import wscontratacion.contratacion.fuentes.parametros.DatosAlta;
+
+/**
+ * Peticiones que {@link RealizarSimulacion} envía al servicio de simulación.
+ */
+public class RealizarSimulacionPeticionTest {
+
+	private final List<Simulacion> peticiones = Collections.synchronizedList(new ArrayList<Simulacion>());
+	private final AtomicInteger beneficiariosGenerados = new AtomicInteger();
+
+	private RealizarSimulacion realizarSimulacion;
+
+	@Before
+	public void setUp() {
+		realizarSimulacion = new RealizarSimulacion() {
+			@Override
+			protected Beneficiario[] obtenerBeneficiarios(final DatosAlta oDatosAlta,
+					final List<ProductoPolizas> lProductos, final List<BeneficiarioPolizas> lBeneficiarios,
+					final DatosContratacionPlan oDatosPlan) {
+				beneficiariosGenerados.incrementAndGet();
+				return super.obtenerBeneficiarios(oDatosAlta, lProductos, lBeneficiarios, oDatosPlan);
+			}
+		};
+		realizarSimulacion.setServicioSimulacion(new SimulacionWS() {
+			private final SimulacionWS stub = new SimulacionWSStub();
+
+			public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+				peticiones.add(in);
+				return stub.simular(in);
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		realizarSimulacion.destroy();
+	}
+
+	@Test
+	public void laPeticionSeConstruyeUnaVezParaTodasLasFrecuencias() throws Exception {
+		realizarSimulacion.realizarSimulacion(DatosSimulacionFixture.crearAlta(3, "123", 1, 5), null, null, false,
+				DatosSimulacionFixture.crearValores(false));
+
+		assertEquals(1, beneficiariosGenerados.get());
+		assertEquals(4, peticiones.size());
+
+		final Set<Integer> frecuencias = new HashSet<Integer>();
+		final Simulacion primera = peticiones.get(0);
+		for (final Simulacion peticion : peticiones) {
+			frecuencias.add(peticion.getInfoContratacion().getFrecuenciaPago());
+			assertSame(primera.getBeneficiarios()[0], peticion.getBeneficiarios()[0]);
+			assertSame(primera.getInfoPromociones(), peticion.getInfoPromociones());
+			assertEquals(primera.getInfoContratacion().getCodigoPostal(),
+					peticion.getInfoContratacion().getCodigoPostal());
+			if (peticion != primera) {
+				assertNotSame(primera.getInfoContratacion(), peticion.getInfoContratacion());
+			}
+		}
+		assertEquals(4, frecuencias.size());
+	}
+
+	@Test
+	public void unCodigoPromocionalInvalidoSeRepiteSinCodigo() throws Exception {
+		final Map<String, Object> resultado = realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(true));
+
+		assertEquals(2, peticiones.size());
+		assertEquals(0, peticiones.get(1).getInfoPromociones().getPromociones().length);
+		assertSame(peticiones.get(0).getBeneficiarios()[0], peticiones.get(1).getBeneficiarios()[0]);
+		assertTrue(((List<?>) resultado.get(StaticVarsContratacion.ERROR))
+				.contains(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL));
+	}
+}
@@ -0,0 +1,77 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Plazo único de la simulación completa.
+ */
+public class RealizarSimulacionPlazoTest {
+
+	private RealizarSimulacion realizarSimulacion;
+	private ThreadPoolExecutor pool;
+
+	@Before
+	public void setUp() {
+		pool = (ThreadPoolExecutor) new ConfiguracionPoolSimulacion().crearPool();
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setPool(pool);
+		realizarSimulacion.setMilisegundosPlazo(200L);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void alVencerElPlazoSeCancelanLasFrecuenciasPendientes() throws Exception {
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub(2000L));
+
+		final long inicio = System.nanoTime();
+		try {
+			realizarSimulacion.realizarSimulacion(DatosSimulacionFixture.crearAlta(1, null, 1), null, null, false,
+					DatosSimulacionFixture.crearValores(false));
+			fail("Se esperaba el vencimiento del plazo");
+		} catch (final ExcepcionPlazoSimulacion e) {
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1000L);
+		}
+
+		// Las tareas canceladas liberan los hilos del pool sin esperar al servicio
+		final long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (pool.getActiveCount() > 0 && System.nanoTime() < limite) {
+			Thread.sleep(10L);
+		}
+		assertEquals(0, pool.getActiveCount());
+	}
+
+	@Test
+	public void alVencerElPlazoNoSeTrataElResultadoEnElTemporizador() throws Exception {
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub(2000L));
+
+		final CompletableFuture<String> hilo = new CompletableFuture<String>();
+		realizarSimulacion.obtenerResultadoSimulacionAsync(DatosSimulacionFixture.crearAlta(1, null, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(false))
+				.whenComplete((resultado, error) -> hilo.complete(Thread.currentThread().getName()));
+
+		assertNotEquals("simulacion-poliza-temporizador", hilo.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void dentroDelPlazoLaSimulacionTermina() throws Exception {
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub(20L));
+
+		realizarSimulacion.realizarSimulacion(DatosSimulacionFixture.crearAlta(1, null, 1), null, null, false,
+				DatosSimulacionFixture.crearValores(false));
+	}
+}
@@ -0,0 +1,150 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.soporte.ExcepcionContratacion;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+/**
+ * Pool acotado de las simulaciones por frecuencia y su ciclo de vida.
+ */
+public class RealizarSimulacionPoolTest {
+
+	private RealizarSimulacion realizarSimulacion;
+	private ExecutorService clientes;
+
+	@Before
+	public void setUp() {
+		realizarSimulacion = new RealizarSimulacion();
+		clientes = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() {
+		clientes.shutdownNow();
+		realizarSimulacion.destroy();
+	}
+
+	@Test
+	public void conLaColaLlenaLaSimulacionFallaRapido() throws Exception {
+		final ConfiguracionPoolSimulacion configuracion = new ConfiguracionPoolSimulacion();
+		configuracion.setTamanoNucleo(1);
+		configuracion.setTamanoMaximo(1);
+		configuracion.setCapacidadCola(1);
+		realizarSimulacion.setConfiguracionPool(configuracion);
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub(2000L));
+
+		final long inicio = System.nanoTime();
+		try {
+			// Todas las frecuencias: cuatro simulaciones para un hilo y un hueco en cola
+			simular(false);
+			fail("Se esperaba el rechazo de la simulación");
+		} catch (final ExcepcionContratacion e) {
+			assertNotNull(e.getMessage());
+		}
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1000);
+	}
+
+	@Test
+	public void alCerrarSeTerminanLasSimulacionesEnCurso() throws Exception {
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub(300L));
+
+		final Future<Map<String, Object>> enCurso = clientes.submit(new Callable<Map<String, Object>>() {
+			public Map<String, Object> call() throws Exception {
+				return simular(true);
+			}
+		});
+		Thread.sleep(100L);
+
+		realizarSimulacion.destroy();
+
+		final Map<String, Object> resultado = enCurso.get(5, TimeUnit.SECONDS);
+		assertEquals(1, ((List<?>) resultado.get(StaticVarsContratacion.PRIMAS_SIMULACION)).size());
+	}
+
+	@Test
+	public void unPoolInyectadoNoSeCierra() throws Exception {
+		final ExecutorService inyectado = Executors.newFixedThreadPool(2);
+		try {
+			realizarSimulacion.setPool(inyectado);
+			realizarSimulacion.setServicioSimulacion(new SimulacionWSStub());
+
+			simular(true);
+			realizarSimulacion.destroy();
+
+			assertFalse(inyectado.isShutdown());
+		} finally {
+			inyectado.shutdownNow();
+		}
+	}
+
+	@Test
+	public void alInyectarUnPoolSeCierraElPropio() throws Exception {
+		final ExecutorService[] propio = new ExecutorService[1];
+		realizarSimulacion.setConfiguracionPool(new ConfiguracionPoolSimulacion() {
+			@Override
+			public ExecutorService crearPool() {
+				propio[0] = super.crearPool();
+				return propio[0];
+			}
+		});
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub());
+		simular(true);
+
+		final ExecutorService inyectado = Executors.newFixedThreadPool(2);
+		try {
+			realizarSimulacion.setPool(inyectado);
+
+			assertTrue(propio[0].awaitTermination(5, TimeUnit.SECONDS));
+			simular(true);
+			assertFalse(inyectado.isShutdown());
+		} finally {
+			inyectado.shutdownNow();
+		}
+	}
+
+	@Test
+	public void conHilosVirtualesSeSimulanTodasLasFrecuencias() throws Exception {
+		Assume.assumeTrue(ConfiguracionPoolSimulacion.soportaHilosVirtuales());
+
+		final ConfiguracionPoolSimulacion configuracion = new ConfiguracionPoolSimulacion();
+		configuracion.setHilosVirtuales(true);
+		realizarSimulacion.setConfiguracionPool(configuracion);
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub(10L));
+
+		final Map<String, Object> resultado = simular(false);
+
+		assertEquals(4, ((List<?>) resultado.get(StaticVarsContratacion.PROMOCIONES_SIMULACION)).size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void sinSoporteDeHilosVirtualesNoSeCreaElPool() {
+		Assume.assumeFalse(ConfiguracionPoolSimulacion.soportaHilosVirtuales());
+
+		final ConfiguracionPoolSimulacion configuracion = new ConfiguracionPoolSimulacion();
+		configuracion.setHilosVirtuales(true);
+		configuracion.crearPool();
+	}
+
+	private Map<String, Object> simular(final boolean soloMensual) throws Exception {
+		return realizarSimulacion.realizarSimulacion(DatosSimulacionFixture.crearAlta(0, null, 1), null, null, false,
+				DatosSimulacionFixture.crearValores(soloMensual));
+	}
+}
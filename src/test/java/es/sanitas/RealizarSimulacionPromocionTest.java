@@ -0,0 +1,116 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.DatosAltaAsegurados;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+/**
+ * Rechazo del código promocional coordinado entre las frecuencias.
+ */
+public class RealizarSimulacionPromocionTest {
+
+	private RealizarSimulacion realizarSimulacion;
+	private ServicioPromocionLenta servicio;
+
+	@Before
+	public void setUp() {
+		servicio = new ServicioPromocionLenta();
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(servicio);
+	}
+
+	@After
+	public void tearDown() {
+		realizarSimulacion.destroy();
+	}
+
+	@Test
+	public void elPrimerRechazoCancelaLasLlamadasConCodigoEnCurso() throws Exception {
+		final DatosAltaAsegurados oDatosAlta = DatosSimulacionFixture.crearAlta(2,
+				SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1, 5);
+
+		final long inicio = System.nanoTime();
+		final Map<String, Object> resultado = realizarSimulacion.realizarSimulacion(oDatosAlta, null, null, false,
+				DatosSimulacionFixture.crearValores(false));
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1000L);
+		assertTrue(((List<?>) resultado.get(StaticVarsContratacion.ERROR))
+				.contains(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL));
+		assertEquals(4, servicio.sinCodigo.get());
+		// No se modifica la entrada del llamante
+		assertEquals(SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, oDatosAlta.getCodigoPromocional());
+	}
+
+	@Test
+	public void unCodigoRechazadoNoSeVuelveAEnviar() throws Exception {
+		realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(false));
+		final int conCodigo = servicio.conCodigo.get();
+		final int sinCodigo = servicio.sinCodigo.get();
+
+		final Map<String, Object> resultado = realizarSimulacion.realizarSimulacion(
+				DatosSimulacionFixture.crearAlta(1, SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO, 1), null, null,
+				false, DatosSimulacionFixture.crearValores(false));
+
+		assertEquals(conCodigo, servicio.conCodigo.get());
+		assertEquals(sinCodigo + 4, servicio.sinCodigo.get());
+		assertTrue(((List<?>) resultado.get(StaticVarsContratacion.ERROR))
+				.contains(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL));
+		assertEquals(1L, realizarSimulacion.getCodigosRechazados().getLlamadasEvitadas());
+	}
+
+	@Test
+	public void unCodigoValidoNoSeRepite() throws Exception {
+		realizarSimulacion.realizarSimulacion(DatosSimulacionFixture.crearAlta(1, "123", 1), null, null, false,
+				DatosSimulacionFixture.crearValores(false));
+
+		assertEquals(4, servicio.conCodigo.get());
+		assertEquals(0, servicio.sinCodigo.get());
+	}
+
+	/**
+	 * Rechaza al momento el código en la frecuencia mensual; en el resto tarda en
+	 * responder salvo que se interrumpa la llamada.
+	 */
+	private static class ServicioPromocionLenta implements SimulacionWS {
+
+		private final SimulacionWS stub = new SimulacionWSStub();
+		private final AtomicInteger conCodigo = new AtomicInteger();
+		private final AtomicInteger sinCodigo = new AtomicInteger();
+
+		public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+			if (in.getInfoPromociones().getPromociones().length == 0) {
+				sinCodigo.incrementAndGet();
+				return stub.simular(in);
+			}
+
+			conCodigo.incrementAndGet();
+			if (in.getInfoContratacion().getFrecuenciaPago() != FrecuenciaEnum.MENSUAL.getValor()) {
+				try {
+					Thread.sleep(3000L);
+				} catch (final InterruptedException e) {
+					throw new IllegalStateException("Llamada interrumpida");
+				}
+			}
+			return stub.simular(in);
+		}
+	}
+}
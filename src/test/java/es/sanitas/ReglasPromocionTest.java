@@ -0,0 +1,64 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import es.sanitas.soporte.DatosAseguradoInclusion;
+import es.sanitas.soporte.StaticVarsContratacion;
+import wscontratacion.contratacion.fuentes.parametros.DatosAlta;
+
+public class ReglasPromocionTest {
+
+	private static final long[] PRODUCTOS = { 1L, ReglasPromocion.ID_PRODUCTO_ECI_COLECTIVOS,
+			ReglasPromocion.ID_PRODUCTO_FARMACIA };
+
+	/**
+	 * Recorre todas las combinaciones de excepciones y tarjetas y compara con la
+	 * expresión que se evaluaba por producto.
+	 */
+	@Test
+	public void equivaleALaComprobacionPorProducto() {
+		for (int combinacion = 0; combinacion < 16; combinacion++) {
+			final List<String> lExcepciones = new ArrayList<String>();
+			if ((combinacion & 1) != 0) {
+				lExcepciones.add(StaticVarsContratacion.PROMO_ECI_COLECTIVOS);
+			}
+			if ((combinacion & 2) != 0) {
+				lExcepciones.add(StaticVarsContratacion.PROMO_FARMACIA);
+			}
+			final DatosAlta oDatosAlta = DatosSimulacionFixture.crearAlta(2, null, 1);
+			if ((combinacion & 4) != 0) {
+				oDatosAlta.getTitular().setSwPolizaAnterior("S");
+			}
+			if ((combinacion & 8) != 0) {
+				((DatosAseguradoInclusion) oDatosAlta.getAsegurados().get(0)).setSwPolizaAnterior("S");
+			}
+
+			final ReglasPromocion reglas = ReglasPromocion.compilar(lExcepciones, oDatosAlta);
+			final boolean tarjetas = (combinacion & 12) != 0;
+
+			for (final long idProducto : PRODUCTOS) {
+				final boolean esperado = (idProducto != 389
+						|| !lExcepciones.contains(StaticVarsContratacion.PROMO_ECI_COLECTIVOS) || tarjetas)
+						&& idProducto != 670 || !lExcepciones.contains(StaticVarsContratacion.PROMO_FARMACIA)
+						|| tarjetas;
+
+				assertEquals("combinación " + combinacion + ", producto " + idProducto, esperado,
+						reglas.aplica(idProducto));
+			}
+		}
+	}
+
+	@Test
+	public void sinExcepcionesNiAltaSeAplicaATodos() {
+		final ReglasPromocion reglas = ReglasPromocion.compilar(null, null);
+
+		for (final long idProducto : PRODUCTOS) {
+			assertEquals(true, reglas.aplica(idProducto));
+		}
+	}
+}
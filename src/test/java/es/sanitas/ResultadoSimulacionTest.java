@@ -0,0 +1,131 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.bravo.ws.stubs.contratacionws.documentacion.Primas;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.PrimasPorProducto;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+public class ResultadoSimulacionTest {
+
+	private RealizarSimulacion realizarSimulacion;
+
+	@Before
+	public void setUp() {
+		realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(new SimulacionWSStub());
+	}
+
+	@After
+	public void tearDown() {
+		realizarSimulacion.destroy();
+	}
+
+	@Test
+	public void conDescuentoElMapaMuestraElPrecioConPromocion() {
+		final ResultadoSimulacion resultado = realizarSimulacion.obtenerResultadoSimulacionAsync(
+				DatosSimulacionFixture.crearAlta(2, "123", 1, 5), null, null, true,
+				DatosSimulacionFixture.crearValores(false)).join();
+		final Map<String, Object> mapa = resultado.comoMapa();
+
+		assertTrue(resultado.isPromocionDescuento());
+		assertArrayEquals(totales(resultado, true), (Double[]) mapa.get(StaticVarsContratacion.PAGO_TOTAL));
+		assertArrayEquals(totales(resultado, false),
+				(Double[]) mapa.get(StaticVarsContratacion.PRECIOS_SIN_PROMOCION_SIMULACION));
+		assertSame(resultado.getPrimas(), mapa.get(StaticVarsContratacion.PRIMAS_SIMULACION));
+		assertEquals(Boolean.TRUE, mapa.get(StaticVarsContratacion.HAY_DESGLOSE));
+		assertEquals(resultado.getPrecioConPromocion(FrecuenciaEnum.ANUAL),
+				resultado.getPagoTotal(FrecuenciaEnum.ANUAL), 0.0);
+	}
+
+	@Test
+	public void sinDescuentoElMapaMuestraElPrecioSinPromocion() {
+		final ResultadoSimulacion resultado = realizarSimulacion.obtenerResultadoSimulacionAsync(
+				DatosSimulacionFixture.crearAlta(2, null, 1, 5), null, null, false,
+				DatosSimulacionFixture.crearValores(false)).join();
+		final Map<String, Object> mapa = resultado.comoMapa();
+
+		assertFalse(resultado.isPromocionDescuento());
+		assertArrayEquals(totales(resultado, false), (Double[]) mapa.get(StaticVarsContratacion.PAGO_TOTAL));
+		assertFalse(mapa.containsKey(StaticVarsContratacion.PRECIOS_SIN_PROMOCION_SIMULACION));
+		assertEquals(10, mapa.size());
+	}
+
+	@Test
+	public void cadaFrecuenciaUsaSuPropiaTarificacion() {
+		final ResultadoSimulacion resultado = realizarSimulacion.obtenerResultadoSimulacionAsync(
+				DatosSimulacionFixture.crearAlta(2, null, 1, 5), null, null, false,
+				DatosSimulacionFixture.crearValores(false)).join();
+		final double mensual = resultado.getPrecioSinPromocion(FrecuenciaEnum.MENSUAL);
+
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			final int meses = SimulacionWSStub.mesesPorPago(frecuencia.getValor());
+			assertEquals(mensual * meses, resultado.getPrecioSinPromocion(frecuencia), 0.01 * meses * 4);
+		}
+		assertEquals(FrecuenciaEnum.values().length, resultado.getRecibos().size());
+	}
+
+	@Test
+	public void lasPrimasPorProductoLlevanYaSuImporte() {
+		final ResultadoSimulacion resultado = realizarSimulacion.obtenerResultadoSimulacionAsync(
+				DatosSimulacionFixture.crearAlta(1, null, 1, 5), null, null, true,
+				DatosSimulacionFixture.crearValores(false)).join();
+
+		for (final List<PrimasPorProducto> primasAsegurado : resultado.getPrimasDesglosadas()) {
+			for (final PrimasPorProducto primasProducto : primasAsegurado) {
+				assertEquals(Primas.class, primasProducto.getPrimaProducto().getClass());
+				assertNotNull(primasProducto.getPrimaProducto().getPrima());
+			}
+		}
+	}
+
+	@Test
+	public void elMapaEsModificableYSerializable() throws Exception {
+		final Map<String, Object> mapa = realizarSimulacion.obtenerResultadoSimulacionAsync(
+				DatosSimulacionFixture.crearAlta(1, null, 1), null, null, false,
+				DatosSimulacionFixture.crearValores(true)).join().comoMapa();
+
+		mapa.put("OTRO", "valor");
+		final Object pagoTotal = mapa.get(StaticVarsContratacion.PAGO_TOTAL);
+
+		assertEquals("valor", mapa.get("OTRO"));
+		assertSame(pagoTotal, mapa.get(StaticVarsContratacion.PAGO_TOTAL));
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream salida = new ObjectOutputStream(bytes);
+		salida.writeObject(mapa);
+		salida.close();
+		@SuppressWarnings("unchecked")
+		final Map<String, Object> copia = (Map<String, Object>) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+		assertEquals(mapa.keySet(), copia.keySet());
+		assertArrayEquals((Double[]) pagoTotal, (Double[]) copia.get(StaticVarsContratacion.PAGO_TOTAL));
+	}
+
+	private static Double[] totales(final ResultadoSimulacion resultado, final boolean conPromocion) {
+		final Double[] totales = new Double[FrecuenciaEnum.values().length];
+		for (final FrecuenciaEnum frecuencia : FrecuenciaEnum.values()) {
+			totales[frecuencia.getValor() - 1] = conPromocion ? resultado.getPrecioConPromocion(frecuencia)
+					: resultado.getPrecioSinPromocion(frecuencia);
+		}
+		return totales;
+	}
+}
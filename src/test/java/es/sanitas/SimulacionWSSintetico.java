@@ -0,0 +1,568 @@
+package es.sanitas;
+
+import java.net.SocketTimeoutException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.client.ResourceAccessException;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoRecibos;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Producto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promocion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promociones;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Recibo;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.ReciboProducto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Recibos;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaBeneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaDesglosada;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaProducto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarifas;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+/**
+ * {@link SimulacionWS} sintético para pruebas de carga y de latencia sin el
+ * servicio real.
+ *
+ * Construye a partir de la petición una tarificación completa: tarifas
+ * desglosadas por beneficiario y producto, promociones y los recibos del
+ * primer año de la frecuencia pedida. A cada llamada se le puede añadir una
+ * latencia sacada de una {@link DistribucionLatencia}, errores del servicio,
+ * timeouts y rechazos del código promocional.
+ *
+ * Todo se deriva de la semilla:
+ * <ul>
+ * <li>la tarificación depende sólo de la semilla y de la petición;</li>
+ * <li>un código promocional se rechaza siempre o nunca, como en el servicio
+ * real;</li>
+ * <li>la latencia y los fallos de la llamada n-ésima dependen sólo de la
+ * semilla y de n. Con un único hilo la ejecución se repite exactamente; con
+ * varios se repite la secuencia de latencias y fallos, aunque el reparto entre
+ * las peticiones depende del orden en que lleguen.</li>
+ * </ul>
+ */
+public class SimulacionWSSintetico implements SimulacionWS {
+
+	private static final String DATE_FORMAT = "dd/MM/yyyy";
+
+	/** Impuesto sobre la prima. */
+	private static final double TIPO_IMPUESTO_PRIMA = 0.0015;
+
+	/** Recargo del consorcio de compensación de seguros por mes. */
+	private static final double CONSORCIO_MENSUAL = 0.15;
+
+	private final long semilla;
+
+	private DistribucionLatencia latencia = DistribucionLatencia.constante(0L, TimeUnit.MILLISECONDS);
+
+	/** Probabilidad de que una llamada devuelva un error del servicio. */
+	private double probabilidadError;
+
+	/** Probabilidad de que una llamada no responda y acabe en timeout. */
+	private double probabilidadTimeout;
+
+	/** Tiempo que espera una llamada que acaba en timeout antes de fallar. */
+	private long milisegundosTimeout = 5000L;
+
+	/** Fracción de los códigos promocionales que el servicio rechaza. */
+	private double probabilidadCodigoInvalido;
+
+	/** Prima mensual mínima de un producto, en euros. */
+	private double primaMinima = 20.0;
+
+	/** Prima mensual máxima de un producto, en euros. */
+	private double primaMaxima = 120.0;
+
+	/** Descuento sobre la prima de un código promocional aceptado. */
+	private double descuentoPromocion = 0.1;
+
+	private final AtomicLong llamadas = new AtomicLong();
+	private final AtomicLong errores = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong codigosRechazados = new AtomicLong();
+
+	/**
+	 * @param semilla
+	 *            semilla de la que se derivan tarificaciones, latencias y fallos
+	 */
+	public SimulacionWSSintetico(final long semilla) {
+		this.semilla = semilla;
+	}
+
+	public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+		final SplittableRandom aleatorio = new SplittableRandom(mezclar(semilla, llamadas.getAndIncrement()));
+		final long nanosLatencia = latencia.nanos(aleatorio);
+		final double sorteo = aleatorio.nextDouble();
+
+		if (sorteo < probabilidadTimeout) {
+			esperar(TimeUnit.MILLISECONDS.toNanos(milisegundosTimeout));
+			timeouts.incrementAndGet();
+			throw new ResourceAccessException("Sin respuesta del servicio de simulación",
+					new SocketTimeoutException("Read timed out"));
+		}
+
+		esperar(nanosLatencia);
+
+		if (sorteo < probabilidadTimeout + probabilidadError) {
+			errores.incrementAndGet();
+			return respuestaError("-1", "Error interno del servicio de simulación");
+		}
+
+		final String codigoPromocional = obtenerCodigoPromocional(in);
+		if (codigoPromocional != null && esCodigoInvalido(codigoPromocional)) {
+			codigosRechazados.incrementAndGet();
+			return respuestaError(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL,
+					"Código promocional no válido");
+		}
+
+		final RESTResponse<Tarificacion, Error> response = new RESTResponse<Tarificacion, Error>();
+		response.out = tarificar(in, codigoPromocional);
+		return response;
+	}
+
+	private RESTResponse<Tarificacion, Error> respuestaError(final String codigo, final String descripcion) {
+		final Error error = new Error();
+		error.setCodigo(codigo);
+		error.setDescripcion(descripcion);
+
+		final RESTResponse<Tarificacion, Error> response = new RESTResponse<Tarificacion, Error>();
+		response.error = error;
+		response.rawResponse = "{\"codigo\":\"" + codigo + "\",\"descripcion\":\"" + descripcion + "\"}";
+		return response;
+	}
+
+	/**
+	 * Un código se acepta o se rechaza según la semilla, igual en todas las
+	 * llamadas.
+	 */
+	private boolean esCodigoInvalido(final String codigoPromocional) {
+		return uniforme(mezclar(semilla, codigoPromocional.hashCode())) < probabilidadCodigoInvalido;
+	}
+
+	private Tarificacion tarificar(final Simulacion in, final String codigoPromocional) {
+		final Integer frecuenciaPago = in.getInfoContratacion() != null ? in.getInfoContratacion().getFrecuenciaPago()
+				: null;
+		final int meses = SimulacionWSStub.mesesPorPago(frecuenciaPago);
+		final double descuento = codigoPromocional != null ? descuentoPromocion : 0.0;
+
+		final List<TarifaBeneficiario> tarifasBeneficiarios = new ArrayList<TarifaBeneficiario>();
+		final List<Promocion> promociones = new ArrayList<Promocion>();
+		final Map<Integer, double[]> importesProducto = new LinkedHashMap<Integer, double[]>();
+		double importe = 0;
+		double importeSinPromocion = 0;
+		double css = 0;
+
+		for (final Beneficiario beneficiario : in.getBeneficiarios()) {
+			final List<TarifaProducto> tarifasProductos = new ArrayList<TarifaProducto>();
+
+			for (final Producto producto : beneficiario.getProductos()) {
+				final TarifaDesglosada desglose = desglosar(beneficiario, producto, meses, descuento);
+				final double pago = desglose.getPrima() + desglose.getISPrima() + desglose.getCss();
+
+				final TarifaProducto tarifaProducto = new TarifaProducto();
+				tarifaProducto.setIdProducto(producto.getIdProducto().longValue());
+				tarifaProducto.setDescripcion("Producto " + producto.getIdProducto());
+				tarifaProducto.setTarifaDesglosada(desglose);
+				tarifaProducto.setPrimerRecibo(pago - desglose.getDescuento());
+				tarifaProducto.setRestoRecibos(pago);
+				tarifasProductos.add(tarifaProducto);
+
+				double[] importesDelProducto = importesProducto.get(producto.getIdProducto());
+				if (importesDelProducto == null) {
+					importesDelProducto = new double[2];
+					importesProducto.put(producto.getIdProducto(), importesDelProducto);
+				}
+				importesDelProducto[0] += pago - desglose.getDescuento();
+				importesDelProducto[1] += pago;
+
+				importe += pago - desglose.getDescuento();
+				importeSinPromocion += pago;
+				css += desglose.getCss();
+			}
+
+			final TarifaBeneficiario tarifaBeneficiario = new TarifaBeneficiario();
+			tarifaBeneficiario.setNombre(beneficiario.getNombre());
+			tarifaBeneficiario.setListaTarifasProductos(tarifasProductos.toArray(new TarifaProducto[0]));
+			tarifasBeneficiarios.add(tarifaBeneficiario);
+
+			if (codigoPromocional != null) {
+				final Promocion promocion = new Promocion();
+				promocion.setIdPromocion(codigoPromocional);
+				promocion.setDescripcion("Promoción " + codigoPromocional);
+				promocion.setTipo(0);
+				promociones.add(promocion);
+			}
+		}
+
+		final Tarifas tarifas = new Tarifas();
+		tarifas.setListaTarifaBeneficiarios(tarifasBeneficiarios.toArray(new TarifaBeneficiario[0]));
+
+		final Promociones listaPromociones = new Promociones();
+		listaPromociones.setListaPromocionesPoliza(promociones.toArray(new Promocion[0]));
+
+		final String fechaEfecto = in.getInfoContratacion() != null ? in.getInfoContratacion().getFechaEfecto() : null;
+		final Recibos recibos = new Recibos();
+		recibos.setReciboPoliza(generarRecibos(fechaEfecto, meses, importe, importeSinPromocion, css));
+
+		final List<ReciboProducto> recibosProductos = new ArrayList<ReciboProducto>();
+		for (final Map.Entry<Integer, double[]> importes : importesProducto.entrySet()) {
+			final ReciboProducto reciboProducto = new ReciboProducto();
+			reciboProducto.setIdProducto(importes.getKey());
+			reciboProducto.setDescripcion("Producto " + importes.getKey());
+			reciboProducto.setRecibosProducto(
+					generarRecibos(fechaEfecto, meses, importes.getValue()[0], importes.getValue()[1], 0.0));
+			recibosProductos.add(reciboProducto);
+		}
+		recibos.setListaRecibosProductos(recibosProductos.toArray(new ReciboProducto[0]));
+
+		final Tarificacion tarificacion = new Tarificacion();
+		tarificacion.setTarifas(tarifas);
+		tarificacion.setPromociones(listaPromociones);
+		tarificacion.setRecibos(recibos);
+		return tarificacion;
+	}
+
+	/**
+	 * La prima mensual de un producto depende de la semilla, el producto y la
+	 * edad y el sexo del beneficiario.
+	 */
+	private TarifaDesglosada desglosar(final Beneficiario beneficiario, final Producto producto, final int meses,
+			final double descuento) {
+		long clave = mezclar(semilla, producto.getIdProducto());
+		clave = mezclar(clave, beneficiario.getFechaNacimiento() != null ? beneficiario.getFechaNacimiento().hashCode() : 0);
+		clave = mezclar(clave, beneficiario.getSexo() != null ? beneficiario.getSexo() : 0);
+
+		final double primaMensual = primaMinima + (primaMaxima - primaMinima) * uniforme(clave);
+		final double prima = redondear(primaMensual * meses);
+
+		final TarifaDesglosada desglose = new TarifaDesglosada();
+		desglose.setPrima(prima);
+		desglose.setISPrima(redondear(prima * TIPO_IMPUESTO_PRIMA));
+		desglose.setDescuento(redondear(prima * descuento));
+		desglose.setCss(redondear(CONSORCIO_MENSUAL * meses));
+		desglose.setCssre(0.0);
+		desglose.setSobreprima(0.0);
+		desglose.setRecargo(0.0);
+		return desglose;
+	}
+
+	/**
+	 * Recibos del primer año: la promoción sólo se aplica al primero.
+	 */
+	private InfoRecibos generarRecibos(final String fechaEfecto, final int meses, final double importe,
+			final double importeSinPromocion, final double css) {
+		final Calendar emision = parsearFecha(fechaEfecto);
+		final SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
+		final Recibo[] listaRecibos = new Recibo[12 / meses];
+
+		for (int i = 0; i < listaRecibos.length; i++) {
+			final Recibo recibo = new Recibo();
+			recibo.setImporte(redondear(i == 0 ? importe : importeSinPromocion));
+			recibo.setImporteSinPromocion(redondear(importeSinPromocion));
+			recibo.setImpuestoCSS(redondear(css));
+			recibo.setImpuestoCSSSinPromocion(redondear(css));
+			if (emision != null) {
+				recibo.setFechaEmision(sdf.format(emision.getTime()));
+				emision.add(Calendar.MONTH, meses);
+			}
+			listaRecibos[i] = recibo;
+		}
+
+		final InfoRecibos infoRecibos = new InfoRecibos();
+		infoRecibos.setFrecuencia(meses);
+		infoRecibos.setListaRecibos(listaRecibos);
+		return infoRecibos;
+	}
+
+	private Calendar parsearFecha(final String fecha) {
+		if (fecha == null) {
+			return null;
+		}
+		try {
+			final Calendar calendario = Calendar.getInstance();
+			calendario.setTime(new SimpleDateFormat(DATE_FORMAT).parse(fecha));
+			return calendario;
+		} catch (final ParseException e) {
+			return null;
+		}
+	}
+
+	private String obtenerCodigoPromocional(final Simulacion in) {
+		if (in.getInfoPromociones() == null || in.getInfoPromociones().getPromociones() == null
+				|| in.getInfoPromociones().getPromociones().length == 0) {
+			return null;
+		}
+		return in.getInfoPromociones().getPromociones()[0].getIdPromocion();
+	}
+
+	/**
+	 * Espera interrumpible: una llamada cancelada, por ejemplo la perdedora de una
+	 * petición de cobertura, deja de esperar al momento.
+	 */
+	private void esperar(final long nanos) {
+		if (nanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Simulación interrumpida");
+			}
+		}
+	}
+
+	private static double redondear(final double euros) {
+		return Math.round(euros * 100) / 100.0;
+	}
+
+	/**
+	 * Combina dos valores en una clave bien distribuida (finalizador de
+	 * SplitMix64).
+	 */
+	static long mezclar(final long a, final long b) {
+		long z = a * 0x9E3779B97F4A7C15L + b;
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		return z ^ z >>> 31;
+	}
+
+	/**
+	 * @return valor uniforme en [0, 1) derivado de la clave
+	 */
+	static double uniforme(final long clave) {
+		return (clave >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Distribución de la latencia de las llamadas al servicio.
+	 */
+	public interface DistribucionLatencia {
+
+		/**
+		 * @return latencia de una llamada, en nanosegundos
+		 */
+		long nanos(SplittableRandom aleatorio);
+
+		static DistribucionLatencia constante(final long duracion, final TimeUnit unidad) {
+			final long nanos = unidad.toNanos(duracion);
+			return aleatorio -> nanos;
+		}
+
+		static DistribucionLatencia uniforme(final long minimo, final long maximo, final TimeUnit unidad) {
+			final long nanosMinimo = unidad.toNanos(minimo);
+			final long nanosMaximo = unidad.toNanos(maximo);
+			return aleatorio -> nanosMinimo + (long) ((nanosMaximo - nanosMinimo) * aleatorio.nextDouble());
+		}
+
+		static DistribucionLatencia exponencial(final long media, final TimeUnit unidad) {
+			final long nanosMedia = unidad.toNanos(media);
+			return aleatorio -> (long) (-nanosMedia * Math.log(1.0 - aleatorio.nextDouble()));
+		}
+
+		/**
+		 * Log-normal: la forma habitual de la latencia de un servicio, con la
+		 * mayoría de llamadas cerca de la mediana y una cola larga a la derecha.
+		 *
+		 * @param sigma
+		 *            desviación del logaritmo; con 1.0 el percentil 99 es unas diez
+		 *            veces la mediana
+		 */
+		static DistribucionLatencia logNormal(final long mediana, final TimeUnit unidad, final double sigma) {
+			final long nanosMediana = unidad.toNanos(mediana);
+			return aleatorio -> (long) (nanosMediana * Math.exp(sigma * normal(aleatorio)));
+		}
+
+		/**
+		 * Pareto: cola muy pesada, sin límite práctico para alfa pequeño.
+		 *
+		 * @param alfa
+		 *            índice de la cola; cuanto menor, más pesada
+		 */
+		static DistribucionLatencia pareto(final long minimo, final TimeUnit unidad, final double alfa) {
+			final long nanosMinimo = unidad.toNanos(minimo);
+			return aleatorio -> (long) (nanosMinimo / Math.pow(1.0 - aleatorio.nextDouble(), 1.0 / alfa));
+		}
+
+		/**
+		 * Mezcla de la distribución habitual con otra lenta, por ejemplo una
+		 * pausa del recolector o un reintento de red en el servicio.
+		 *
+		 * @param probabilidadCola
+		 *            fracción de las llamadas que siguen la distribución lenta
+		 */
+		static DistribucionLatencia conCola(final DistribucionLatencia base, final double probabilidadCola,
+				final DistribucionLatencia cola) {
+			return aleatorio -> aleatorio.nextDouble() < probabilidadCola ? cola.nanos(aleatorio)
+					: base.nanos(aleatorio);
+		}
+
+		/**
+		 * Normal estándar por Box-Muller.
+		 */
+		static double normal(final SplittableRandom aleatorio) {
+			final double u = 1.0 - aleatorio.nextDouble();
+			return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * aleatorio.nextDouble());
+		}
+	}
+
+	/**
+	 * @return llamadas recibidas
+	 */
+	public long getLlamadas() {
+		return llamadas.get();
+	}
+
+	/**
+	 * @return llamadas que han devuelto un error del servicio
+	 */
+	public long getErrores() {
+		return errores.get();
+	}
+
+	/**
+	 * @return llamadas que han acabado en timeout
+	 */
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	/**
+	 * @return llamadas con el código promocional rechazado
+	 */
+	public long getCodigosRechazados() {
+		return codigosRechazados.get();
+	}
+
+	/**
+	 * @return the latencia
+	 */
+	public DistribucionLatencia getLatencia() {
+		return latencia;
+	}
+
+	/**
+	 * @param latencia
+	 *            the latencia to set
+	 */
+	public void setLatencia(final DistribucionLatencia latencia) {
+		this.latencia = latencia;
+	}
+
+	/**
+	 * @return the probabilidadError
+	 */
+	public double getProbabilidadError() {
+		return probabilidadError;
+	}
+
+	/**
+	 * @param probabilidadError
+	 *            the probabilidadError to set
+	 */
+	public void setProbabilidadError(final double probabilidadError) {
+		this.probabilidadError = probabilidadError;
+	}
+
+	/**
+	 * @return the probabilidadTimeout
+	 */
+	public double getProbabilidadTimeout() {
+		return probabilidadTimeout;
+	}
+
+	/**
+	 * @param probabilidadTimeout
+	 *            the probabilidadTimeout to set
+	 */
+	public void setProbabilidadTimeout(final double probabilidadTimeout) {
+		this.probabilidadTimeout = probabilidadTimeout;
+	}
+
+	/**
+	 * @return the milisegundosTimeout
+	 */
+	public long getMilisegundosTimeout() {
+		return milisegundosTimeout;
+	}
+
+	/**
+	 * @param milisegundosTimeout
+	 *            the milisegundosTimeout to set
+	 */
+	public void setMilisegundosTimeout(final long milisegundosTimeout) {
+		this.milisegundosTimeout = milisegundosTimeout;
+	}
+
+	/**
+	 * @return the probabilidadCodigoInvalido
+	 */
+	public double getProbabilidadCodigoInvalido() {
+		return probabilidadCodigoInvalido;
+	}
+
+	/**
+	 * @param probabilidadCodigoInvalido
+	 *            the probabilidadCodigoInvalido to set
+	 */
+	public void setProbabilidadCodigoInvalido(final double probabilidadCodigoInvalido) {
+		this.probabilidadCodigoInvalido = probabilidadCodigoInvalido;
+	}
+
+	/**
+	 * @return the primaMinima
+	 */
+	public double getPrimaMinima() {
+		return primaMinima;
+	}
+
+	/**
+	 * @param primaMinima
+	 *            the primaMinima to set
+	 */
+	public void setPrimaMinima(final double primaMinima) {
+		this.primaMinima = primaMinima;
+	}
+
+	/**
+	 * @return the primaMaxima
+	 */
+	public double getPrimaMaxima() {
+		return primaMaxima;
+	}
+
+	/**
+	 * @param primaMaxima
+	 *            the primaMaxima to set
+	 */
+	public void setPrimaMaxima(final double primaMaxima) {
+		this.primaMaxima = primaMaxima;
+	}
+
+	/**
+	 * @return the descuentoPromocion
+	 */
+	public double getDescuentoPromocion() {
+		return descuentoPromocion;
+	}
+
+	/**
+	 * @param descuentoPromocion
+	 *            the descuentoPromocion to set
+	 */
+	public void setDescuentoPromocion(final double descuentoPromocion) {
+		this.descuentoPromocion = descuentoPromocion;
+	}
+}
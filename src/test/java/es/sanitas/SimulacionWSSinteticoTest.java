@@ -0,0 +1,192 @@
+package es.sanitas;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoContratacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoPromociones;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Producto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promocion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaBeneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaProducto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.FrecuenciaEnum;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+public class SimulacionWSSinteticoTest {
+
+	@Test
+	public void laTarificacionDependeSoloDeLaSemillaYLaPeticion() {
+		final double[] primas = primas(new SimulacionWSSintetico(42L).simular(crearSimulacion(null, 1)).out);
+
+		assertArrayEquals(primas, primas(new SimulacionWSSintetico(42L).simular(crearSimulacion(null, 1)).out), 0.0);
+		assertFalse(Arrays.equals(primas, primas(new SimulacionWSSintetico(7L).simular(crearSimulacion(null, 1)).out)));
+	}
+
+	@Test
+	public void cadaFrecuenciaTieneSusRecibosDelPrimerAnyo() {
+		final SimulacionWSSintetico servicio = new SimulacionWSSintetico(42L);
+		final Tarificacion mensual = servicio.simular(crearSimulacion(null, FrecuenciaEnum.MENSUAL.getValor())).out;
+		final Tarificacion anual = servicio.simular(crearSimulacion(null, FrecuenciaEnum.ANUAL.getValor())).out;
+
+		assertEquals(12, mensual.getRecibos().getReciboPoliza().getRecibos().length);
+		assertEquals(1, anual.getRecibos().getReciboPoliza().getRecibos().length);
+		assertEquals(12 * primas(mensual)[0], primas(anual)[0], 0.06);
+		assertEquals("01/02/2018", mensual.getRecibos().getReciboPoliza().getRecibos()[1].getFechaEmision());
+	}
+
+	@Test
+	public void losFallosSeRepitenConLaSemilla() {
+		final boolean[] fallos = fallos(new SimulacionWSSintetico(42L), 200);
+		assertTrue(Arrays.equals(fallos, fallos(new SimulacionWSSintetico(42L), 200)));
+
+		int errores = 0;
+		for (final boolean fallo : fallos) {
+			errores += fallo ? 1 : 0;
+		}
+		assertTrue(errores > 30 && errores < 90);
+	}
+
+	@Test
+	public void unCodigoPromocionalSeRechazaSiempreONunca() {
+		final SimulacionWSSintetico servicio = new SimulacionWSSintetico(42L);
+		servicio.setProbabilidadCodigoInvalido(0.5);
+
+		int rechazados = 0;
+		for (int codigo = 1; codigo <= 20; codigo++) {
+			final RESTResponse<Tarificacion, Error> primera = servicio.simular(crearSimulacion(String.valueOf(codigo), 1));
+			final RESTResponse<Tarificacion, Error> segunda = servicio.simular(crearSimulacion(String.valueOf(codigo), 1));
+			assertEquals(primera.error == null, segunda.error == null);
+
+			if (primera.error != null) {
+				assertEquals(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL, primera.error.getCodigo());
+				rechazados++;
+			} else {
+				assertEquals(2, primera.out.getPromociones().getListaPromocionesPoliza().length);
+			}
+		}
+		assertTrue(rechazados > 0 && rechazados < 20);
+		assertEquals(2 * rechazados, servicio.getCodigosRechazados());
+	}
+
+	@Test
+	public void unTimeoutEsperaYFallaComoElClienteReal() {
+		final SimulacionWSSintetico servicio = new SimulacionWSSintetico(42L);
+		servicio.setProbabilidadTimeout(1.0);
+		servicio.setMilisegundosTimeout(20);
+
+		final long inicio = System.nanoTime();
+		try {
+			servicio.simular(crearSimulacion(null, 1));
+			fail();
+		} catch (final ResourceAccessException e) {
+			assertTrue(System.nanoTime() - inicio >= TimeUnit.MILLISECONDS.toNanos(20));
+		}
+		assertEquals(1, servicio.getTimeouts());
+	}
+
+	@Test
+	public void laLogNormalTieneColaLarga() {
+		final SimulacionWSSintetico.DistribucionLatencia distribucion = SimulacionWSSintetico.DistribucionLatencia
+				.logNormal(10, TimeUnit.MILLISECONDS, 1.0);
+		final SplittableRandom aleatorio = new SplittableRandom(42L);
+		final long[] muestras = new long[10000];
+		for (int i = 0; i < muestras.length; i++) {
+			muestras[i] = distribucion.nanos(aleatorio);
+		}
+		Arrays.sort(muestras);
+
+		final double mediana = muestras[muestras.length / 2] / 1e6;
+		final double p99 = muestras[muestras.length * 99 / 100] / 1e6;
+		assertEquals(10.0, mediana, 1.0);
+		assertTrue(p99 > 8 * mediana);
+	}
+
+	@Test
+	public void sirveParaUnaSimulacionCompleta() throws Exception {
+		final SimulacionWSSintetico servicio = new SimulacionWSSintetico(42L);
+		servicio.setLatencia(SimulacionWSSintetico.DistribucionLatencia.uniforme(1, 3, TimeUnit.MILLISECONDS));
+
+		final RealizarSimulacion realizarSimulacion = new RealizarSimulacion();
+		realizarSimulacion.setServicioSimulacion(servicio);
+		try {
+			final ResultadoSimulacion resultado = realizarSimulacion
+					.obtenerResultadoSimulacionAsync(DatosSimulacionFixture.crearAlta(3, null, 1, 5), null, null, false,
+							DatosSimulacionFixture.crearValores(false))
+					.join();
+
+			assertTrue(resultado.getErrores().isEmpty());
+			assertEquals(FrecuenciaEnum.values().length, resultado.getRecibos().size());
+			assertNotEquals(0L, servicio.getLlamadas());
+		} finally {
+			realizarSimulacion.destroy();
+		}
+	}
+
+	private boolean[] fallos(final SimulacionWSSintetico servicio, final int llamadas) {
+		servicio.setProbabilidadError(0.3);
+		final boolean[] fallos = new boolean[llamadas];
+		for (int i = 0; i < llamadas; i++) {
+			fallos[i] = servicio.simular(crearSimulacion(null, 1)).error != null;
+		}
+		return fallos;
+	}
+
+	private double[] primas(final Tarificacion tarificacion) {
+		double[] primas = new double[0];
+		for (final TarifaBeneficiario tarifaBeneficiario : tarificacion.getTarifas().getTarifaBeneficiarios()) {
+			for (final TarifaProducto tarifaProducto : tarifaBeneficiario.getTarifasProductos()) {
+				primas = Arrays.copyOf(primas, primas.length + 1);
+				primas[primas.length - 1] = tarifaProducto.getTarifaDesglosada().getPrima();
+			}
+		}
+		return primas;
+	}
+
+	private Simulacion crearSimulacion(final String codigoPromocional, final int frecuenciaPago) {
+		final Simulacion simulacion = new Simulacion();
+
+		final Beneficiario[] beneficiarios = new Beneficiario[2];
+		for (int i = 0; i < beneficiarios.length; i++) {
+			final Producto producto = new Producto();
+			producto.setIdProducto(1 + 4 * i);
+
+			beneficiarios[i] = new Beneficiario();
+			beneficiarios[i].setNombre("Beneficiario " + i);
+			beneficiarios[i].setFechaNacimiento("01/0" + (i + 1) + "/1980");
+			beneficiarios[i].setSexo(i);
+			beneficiarios[i].setListaProductos(new Producto[] { producto });
+		}
+		simulacion.setListaBeneficiarios(beneficiarios);
+
+		final InfoContratacion infoContratacion = new InfoContratacion();
+		infoContratacion.setFrecuenciaPago(frecuenciaPago);
+		infoContratacion.setFechaEfecto("01/01/2018");
+		simulacion.setInfoContratacion(infoContratacion);
+
+		if (codigoPromocional != null) {
+			final Promocion promocion = new Promocion();
+			promocion.setIdPromocion(codigoPromocional);
+			final InfoPromociones infoPromociones = new InfoPromociones();
+			infoPromociones.setListaPromociones(new Promocion[] { promocion });
+			simulacion.setInfoPromociones(infoPromociones);
+		}
+
+		return simulacion;
+	}
+}
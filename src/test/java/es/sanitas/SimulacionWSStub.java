@@ -0,0 +1,206 @@
+package es.sanitas;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoRecibos;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Producto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promocion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promociones;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Recibo;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.ReciboProducto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Recibos;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaBeneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaDesglosada;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.TarifaProducto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarifas;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+/**
+ * Stub sin estado de {@link SimulacionWS} para los tests. Los precios se derivan
+ * de forma determinista de la petición, por lo que dos peticiones iguales
+ * obtienen siempre la misma tarificación. La prima es la mensual por los meses
+ * que cubre cada pago, de modo que cada frecuencia tiene su propio precio.
+ */
+public class SimulacionWSStub implements SimulacionWS {
+
+	/** Código promocional que el stub rechaza siempre. */
+	public static final String CODIGO_PROMOCIONAL_INVALIDO = "999";
+
+	/** Código promocional con el que el stub simula un error del servicio. */
+	public static final String CODIGO_ERROR_SERVICIO = "998";
+
+	/** Descripción del error del servicio simulado. */
+	public static final String DESCRIPCION_ERROR_SERVICIO = "Servicio de simulación no disponible";
+
+	private final long retardoMs;
+
+	public SimulacionWSStub() {
+		this(0L);
+	}
+
+	/**
+	 * @param retardoMs
+	 *            retardo simulado de cada llamada al servicio
+	 */
+	public SimulacionWSStub(final long retardoMs) {
+		this.retardoMs = retardoMs;
+	}
+
+	public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+		esperar();
+
+		final RESTResponse<Tarificacion, Error> response = new RESTResponse<Tarificacion, Error>();
+		final String codigoPromocional = obtenerCodigoPromocional(in);
+
+		if (CODIGO_PROMOCIONAL_INVALIDO.equals(codigoPromocional)) {
+			final Error error = new Error();
+			error.setCodigo(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL);
+			error.setDescripcion("Código promocional no válido");
+			response.error = error;
+			response.rawResponse = "{\"codigo\":\"" + error.getCodigo() + "\"}";
+			return response;
+		}
+
+		if (CODIGO_ERROR_SERVICIO.equals(codigoPromocional)) {
+			final Error error = new Error();
+			error.setCodigo("-1");
+			error.setDescripcion(DESCRIPCION_ERROR_SERVICIO);
+			response.error = error;
+			response.rawResponse = "{\"codigo\":\"" + error.getCodigo() + "\"}";
+			return response;
+		}
+
+		response.out = tarificar(in, codigoPromocional);
+		return response;
+	}
+
+	private Tarificacion tarificar(final Simulacion in, final String codigoPromocional) {
+		final List<TarifaBeneficiario> tarifasBeneficiarios = new ArrayList<TarifaBeneficiario>();
+		final Set<Integer> idsProducto = new LinkedHashSet<Integer>();
+		final List<Promocion> promociones = new ArrayList<Promocion>();
+		final int meses = mesesPorPago(
+				in.getInfoContratacion() != null ? in.getInfoContratacion().getFrecuenciaPago() : null);
+		double importe = 0;
+
+		for (final Beneficiario beneficiario : in.getBeneficiarios()) {
+			final List<TarifaProducto> tarifasProductos = new ArrayList<TarifaProducto>();
+
+			for (final Producto producto : beneficiario.getProductos()) {
+				final TarifaDesglosada desglose = desglosar(beneficiario, producto, meses);
+				final TarifaProducto tarifaProducto = new TarifaProducto();
+				tarifaProducto.setIdProducto(producto.getIdProducto().longValue());
+				tarifaProducto.setDescripcion("Producto " + producto.getIdProducto());
+				tarifaProducto.setTarifaDesglosada(desglose);
+				tarifasProductos.add(tarifaProducto);
+
+				idsProducto.add(producto.getIdProducto());
+				importe += desglose.getPrima() + desglose.getISPrima() + desglose.getCss();
+			}
+
+			final TarifaBeneficiario tarifaBeneficiario = new TarifaBeneficiario();
+			tarifaBeneficiario.setNombre(beneficiario.getNombre());
+			tarifaBeneficiario.setListaTarifasProductos(tarifasProductos.toArray(new TarifaProducto[0]));
+			tarifasBeneficiarios.add(tarifaBeneficiario);
+
+			if (codigoPromocional != null) {
+				final Promocion promocion = new Promocion();
+				promocion.setIdPromocion(codigoPromocional);
+				promocion.setDescripcion("Promoción " + codigoPromocional);
+				promocion.setTipo(0);
+				promociones.add(promocion);
+			}
+		}
+
+		final Tarifas tarifas = new Tarifas();
+		tarifas.setListaTarifaBeneficiarios(tarifasBeneficiarios.toArray(new TarifaBeneficiario[0]));
+
+		final Promociones listaPromociones = new Promociones();
+		listaPromociones.setListaPromocionesPoliza(promociones.toArray(new Promocion[0]));
+
+		final Tarificacion tarificacion = new Tarificacion();
+		tarificacion.setTarifas(tarifas);
+		tarificacion.setPromociones(listaPromociones);
+		tarificacion.setRecibos(generarRecibos(idsProducto, importe));
+
+		return tarificacion;
+	}
+
+	/**
+	 * @return meses que cubre cada pago en la frecuencia indicada
+	 */
+	public static int mesesPorPago(final Integer frecuenciaPago) {
+		if (frecuenciaPago == null) {
+			return 1;
+		}
+		switch (frecuenciaPago) {
+		case 2:
+			return 3;
+		case 3:
+			return 6;
+		case 4:
+			return 12;
+		default:
+			return 1;
+		}
+	}
+
+	private TarifaDesglosada desglosar(final Beneficiario beneficiario, final Producto producto, final int meses) {
+		final int semilla = (beneficiario.getFechaNacimiento().hashCode() & 0xff) + beneficiario.getSexo();
+		final double prima = (20 + producto.getIdProducto() % 50 + semilla / 10.0) * meses;
+
+		final TarifaDesglosada desglose = new TarifaDesglosada();
+		desglose.setPrima(prima);
+		desglose.setISPrima(prima * 0.0015);
+		desglose.setDescuento(prima * 0.1);
+		desglose.setCss(0.15);
+		desglose.setCssre(0.0);
+		return desglose;
+	}
+
+	private Recibos generarRecibos(final Set<Integer> idsProducto, final double importe) {
+		final Recibo primerRecibo = new Recibo();
+		primerRecibo.setImporte(importe);
+
+		final InfoRecibos reciboPoliza = new InfoRecibos();
+		reciboPoliza.setListaRecibos(new Recibo[] { primerRecibo });
+
+		final List<ReciboProducto> recibosProductos = new ArrayList<ReciboProducto>();
+		for (final Integer idProducto : idsProducto) {
+			final ReciboProducto reciboProducto = new ReciboProducto();
+			reciboProducto.setIdProducto(idProducto);
+			recibosProductos.add(reciboProducto);
+		}
+
+		final Recibos recibos = new Recibos();
+		recibos.setReciboPoliza(reciboPoliza);
+		recibos.setListaRecibosProductos(recibosProductos.toArray(new ReciboProducto[0]));
+		return recibos;
+	}
+
+	private String obtenerCodigoPromocional(final Simulacion in) {
+		if (in.getInfoPromociones() == null || in.getInfoPromociones().getPromociones() == null
+				|| in.getInfoPromociones().getPromociones().length == 0) {
+			return null;
+		}
+		return in.getInfoPromociones().getPromociones()[0].getIdPromocion();
+	}
+
+	private void esperar() {
+		if (retardoMs > 0) {
+			try {
+				Thread.sleep(retardoMs);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
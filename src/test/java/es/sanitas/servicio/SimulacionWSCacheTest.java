@@ -0,0 +1,216 @@
+package es.sanitas.servicio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.SimulacionWSStub;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoContratacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoPromociones;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Producto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Promocion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+public class SimulacionWSCacheTest {
+
+	private ServicioContador servicio;
+	private long ahora;
+	private SimulacionWSCache cache;
+
+	@Before
+	public void setUp() {
+		servicio = new ServicioContador();
+		cache = new SimulacionWSCache(servicio, Runnable::run) {
+			@Override
+			long ahoraNanos() {
+				return ahora;
+			}
+		};
+		cache.setMilisegundosVigencia(1000);
+		cache.setMilisegundosRevalidacion(1000);
+		cache.setMilisegundosSiError(10000);
+	}
+
+	@Test
+	public void unaPeticionRepetidaSeSirveDeLaCache() {
+		final RESTResponse<Tarificacion, Error> primera = cache.simular(simulacion("01/03/1980", null));
+		final RESTResponse<Tarificacion, Error> segunda = cache.simular(simulacion("01/03/1980", null));
+
+		assertEquals(1, servicio.llamadas.get());
+		assertEquals(1, cache.getAciertos());
+		assertEquals(1, cache.getFallos());
+		assertNotSame(primera.out, segunda.out);
+		assertEquals(primera.out.getRecibos().getReciboPoliza().getRecibos()[0].getImporte(),
+				segunda.out.getRecibos().getReciboPoliza().getRecibos()[0].getImporte());
+	}
+
+	@Test
+	public void lasFechasConLaMismaEdadComparten() {
+		cache.simular(simulacion("01/03/1980", null));
+		cache.simular(simulacion("01/04/1980", null));
+		assertEquals(1, servicio.llamadas.get());
+
+		// Cumple años antes de la fecha de efecto: otra edad
+		cache.simular(simulacion("01/01/1980", null));
+		assertEquals(2, servicio.llamadas.get());
+
+		cache.setNormalizarEdades(false);
+		cache.simular(simulacion("01/04/1980", null));
+		assertEquals(3, servicio.llamadas.get());
+	}
+
+	@Test
+	public void pasadaLaVigenciaSeSirveMientrasSeRevalida() {
+		cache.simular(simulacion("01/03/1980", null));
+
+		avanzar(1500);
+		assertNotNull(cache.simular(simulacion("01/03/1980", null)).out);
+		assertEquals(1, cache.getAciertosObsoletos());
+		assertEquals(2, servicio.llamadas.get());
+
+		// La revalidación ha renovado la entrada
+		avanzar(500);
+		cache.simular(simulacion("01/03/1980", null));
+		assertEquals(1, cache.getAciertos());
+		assertEquals(2, servicio.llamadas.get());
+	}
+
+	@Test
+	public void siElServicioFallaSeSirveLaUltimaTarificacion() {
+		cache.simular(simulacion("01/03/1980", null));
+		servicio.fallar = true;
+
+		avanzar(5000);
+		assertNotNull(cache.simular(simulacion("01/03/1980", null)).out);
+		assertEquals(1, cache.getServidasTrasError());
+
+		avanzar(6000);
+		try {
+			cache.simular(simulacion("01/03/1980", null));
+			fail();
+		} catch (final IllegalStateException e) {
+			assertEquals(1, cache.getDesalojos());
+		}
+	}
+
+	@Test
+	public void siElServicioRespondeConErrorSeSirveLaUltimaTarificacion() {
+		cache.simular(simulacion("01/03/1980", null));
+		servicio.codigoError = "-1";
+
+		avanzar(5000);
+		assertNotNull(cache.simular(simulacion("01/03/1980", null)).out);
+		assertEquals(1, cache.getServidasTrasError());
+
+		// El rechazo del código promocional llega al llamante, que repite sin él
+		servicio.codigoError = StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL;
+		final RESTResponse<Tarificacion, Error> rechazo = cache.simular(simulacion("01/03/1980", null));
+		assertNull(rechazo.out);
+		assertEquals(StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL, rechazo.error.getCodigo());
+		assertEquals(1, cache.getServidasTrasError());
+	}
+
+	@Test
+	public void seDescartaLaMenosUsadaAlSuperarElTamano() {
+		cache.setTamanoMaximo(2);
+		cache.simular(simulacion("01/03/1980", null));
+		cache.simular(simulacion("01/03/1970", null));
+		cache.simular(simulacion("01/03/1980", null));
+		cache.simular(simulacion("01/03/1960", null));
+
+		assertEquals(2, cache.getTamano());
+		assertEquals(1, cache.getDesalojos());
+
+		cache.simular(simulacion("01/03/1980", null));
+		assertEquals(3, servicio.llamadas.get());
+	}
+
+	@Test
+	public void losErroresNoSeGuardan() {
+		final String codigo = SimulacionWSStub.CODIGO_PROMOCIONAL_INVALIDO;
+
+		assertNull(cache.simular(simulacion("01/03/1980", codigo)).out);
+		assertNull(cache.simular(simulacion("01/03/1980", codigo)).out);
+
+		assertEquals(2, servicio.llamadas.get());
+		assertEquals(0, cache.getTamano());
+	}
+
+	@Test
+	public void edadEnLaFechaDeEfecto() {
+		assertEquals(37, HuellaSimulacion.edadEn("01/03/1980", "01/02/2018"));
+		assertEquals(38, HuellaSimulacion.edadEn("01/02/1980", "01/02/2018"));
+		assertEquals(-1, HuellaSimulacion.edadEn("35", "01/02/2018"));
+	}
+
+	private void avanzar(final long milisegundos) {
+		ahora += TimeUnit.MILLISECONDS.toNanos(milisegundos);
+	}
+
+	private static Simulacion simulacion(final String fechaNacimiento, final String codigoPromocional) {
+		final InfoContratacion info = new InfoContratacion();
+		info.setFechaEfecto("01/02/2018");
+		info.setIdPlan(5);
+		info.setFrecuenciaPago(1);
+		info.setCodigoPostal("28001");
+
+		final Producto producto = new Producto();
+		producto.setIdProducto(1);
+
+		final Beneficiario beneficiario = new Beneficiario();
+		beneficiario.setNombre("Titular");
+		beneficiario.setFechaNacimiento(fechaNacimiento);
+		beneficiario.setSexo(1);
+		beneficiario.setListaProductos(new Producto[] { producto });
+
+		final InfoPromociones promociones = new InfoPromociones();
+		if (codigoPromocional != null) {
+			final Promocion promocion = new Promocion();
+			promocion.setIdPromocion(codigoPromocional);
+			promociones.setListaPromociones(new Promocion[] { promocion });
+		}
+
+		final Simulacion simulacion = new Simulacion();
+		simulacion.setInfoContratacion(info);
+		simulacion.setListaBeneficiarios(new Beneficiario[] { beneficiario });
+		simulacion.setInfoPromociones(promociones);
+		return simulacion;
+	}
+
+	private static class ServicioContador implements SimulacionWS {
+
+		private final SimulacionWS stub = new SimulacionWSStub();
+		private final AtomicInteger llamadas = new AtomicInteger();
+		private volatile boolean fallar;
+		private volatile String codigoError;
+
+		public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+			llamadas.incrementAndGet();
+			if (fallar) {
+				throw new IllegalStateException("Servicio no disponible");
+			}
+			if (codigoError != null) {
+				final Error error = new Error();
+				error.setCodigo(codigoError);
+				final RESTResponse<Tarificacion, Error> respuesta = new RESTResponse<Tarificacion, Error>();
+				respuesta.error = error;
+				return respuesta;
+			}
+			return stub.simular(in);
+		}
+	}
+}
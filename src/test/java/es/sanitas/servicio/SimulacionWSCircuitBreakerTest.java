@@ -0,0 +1,230 @@
+package es.sanitas.servicio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+import es.sanitas.soporte.StaticVarsContratacion;
+
+public class SimulacionWSCircuitBreakerTest {
+
+	private ServicioControlado servicio;
+	private long ahora;
+	private SimulacionWSCircuitBreaker circuito;
+
+	@Before
+	public void setUp() {
+		servicio = new ServicioControlado();
+		circuito = new SimulacionWSCircuitBreaker(servicio, 10) {
+			@Override
+			long ahoraNanos() {
+				return ahora;
+			}
+		};
+		circuito.setLlamadasMinimas(10);
+		circuito.setUmbralErrores(0.5);
+		circuito.setUmbralLentas(0.5);
+		circuito.setMilisegundosLenta(1000);
+		circuito.setMilisegundosAbierto(5000);
+		circuito.setLlamadasPrueba(2);
+	}
+
+	@Test
+	public void seAbrePorErroresYFallaAlMomento() {
+		llamar(5, false);
+		servicio.fallar = true;
+		llamar(4, true);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.CERRADO, circuito.getEstado());
+
+		llamar(1, true);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.ABIERTO, circuito.getEstado());
+
+		final int llamadas = servicio.llamadas.get();
+		try {
+			circuito.simular(new Simulacion());
+			fail();
+		} catch (final ExcepcionServicioNoDisponible e) {
+			assertEquals(llamadas, servicio.llamadas.get());
+		}
+		assertEquals(1, circuito.getRechazadasCircuito());
+	}
+
+	@Test
+	public void seAbrePorRespuestasDeError() {
+		llamar(5, false);
+		servicio.codigoError = "-1";
+		llamar(4, false);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.CERRADO, circuito.getEstado());
+
+		servicio.codigoError = null;
+		servicio.sinRespuesta = true;
+		llamar(1, false);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.ABIERTO, circuito.getEstado());
+		rechazada();
+	}
+
+	@Test
+	public void elRechazoDelCodigoPromocionalNoAbre() {
+		servicio.codigoError = StaticVarsContratacion.SIMULACION_ERROR_COD_PROMOCIONAL;
+		llamar(10, false);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.CERRADO, circuito.getEstado());
+	}
+
+	@Test
+	public void seAbrePorLlamadasLentas() {
+		servicio.milisegundos = 1000;
+		llamar(5, false);
+		servicio.milisegundos = 10;
+		llamar(4, false);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.CERRADO, circuito.getEstado());
+
+		servicio.milisegundos = 1500;
+		llamar(1, false);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.ABIERTO, circuito.getEstado());
+	}
+
+	@Test
+	public void semiabiertoSeCierraSiLasPruebasVanBien() {
+		abrir();
+
+		avanzar(5000);
+		servicio.fallar = false;
+		llamar(1, false);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.SEMIABIERTO, circuito.getEstado());
+		llamar(1, false);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.CERRADO, circuito.getEstado());
+	}
+
+	@Test
+	public void semiabiertoSeReabreSiUnaPruebaFalla() {
+		abrir();
+
+		avanzar(5000);
+		llamar(1, true);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.ABIERTO, circuito.getEstado());
+		assertEquals(2, circuito.getAperturas());
+
+		avanzar(4999);
+		rechazada();
+	}
+
+	@Test
+	public void lasLlamadasNoAdmitidasVanAlAlternativo() {
+		final ServicioControlado alternativo = new ServicioControlado();
+		circuito.setAlternativo(alternativo);
+		abrir();
+
+		assertNotNull(circuito.simular(new Simulacion()));
+		assertEquals(1, alternativo.llamadas.get());
+		assertEquals(1, circuito.getServidasAlternativo());
+	}
+
+	@Test
+	public void noSeAdmitenMasLlamadasConcurrentesQueElMaximo() throws Exception {
+		circuito.setMaximoConcurrentes(1);
+		servicio.bloqueo = new CountDownLatch(1);
+		final CountDownLatch iniciada = servicio.iniciada;
+
+		final Thread ocupada = new Thread(() -> circuito.simular(new Simulacion()));
+		ocupada.start();
+		iniciada.await(5, TimeUnit.SECONDS);
+
+		rechazada();
+		assertEquals(1, circuito.getRechazadasConcurrencia());
+
+		servicio.bloqueo.countDown();
+		ocupada.join(5000);
+		assertEquals(0, circuito.getConcurrentes());
+		llamar(1, false);
+	}
+
+	private void abrir() {
+		servicio.fallar = true;
+		llamar(10, true);
+		assertEquals(SimulacionWSCircuitBreaker.Estado.ABIERTO, circuito.getEstado());
+	}
+
+	private void llamar(final int veces, final boolean falla) {
+		for (int i = 0; i < veces; i++) {
+			try {
+				circuito.simular(new Simulacion());
+				if (falla) {
+					fail();
+				}
+			} catch (final IllegalStateException e) {
+				if (!falla) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private void rechazada() {
+		try {
+			circuito.simular(new Simulacion());
+			fail();
+		} catch (final ExcepcionServicioNoDisponible e) {
+			// Esperada
+		}
+	}
+
+	private void avanzar(final long milisegundos) {
+		ahora += TimeUnit.MILLISECONDS.toNanos(milisegundos);
+	}
+
+	/**
+	 * Responde con una tarificación vacía; puede fallar, responder con un error o
+	 * sin respuesta, hacer avanzar el reloj o quedarse bloqueado.
+	 */
+	private class ServicioControlado implements SimulacionWS {
+
+		private final AtomicInteger llamadas = new AtomicInteger();
+		private final CountDownLatch iniciada = new CountDownLatch(1);
+		private volatile boolean fallar;
+		private volatile String codigoError;
+		private volatile boolean sinRespuesta;
+		private volatile long milisegundos;
+		private volatile CountDownLatch bloqueo;
+
+		public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+			llamadas.incrementAndGet();
+			iniciada.countDown();
+			if (bloqueo != null) {
+				try {
+					bloqueo.await(5, TimeUnit.SECONDS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			avanzar(milisegundos);
+			if (fallar) {
+				throw new IllegalStateException("Servicio no disponible");
+			}
+			if (sinRespuesta) {
+				return null;
+			}
+
+			final RESTResponse<Tarificacion, Error> respuesta = new RESTResponse<Tarificacion, Error>();
+			if (codigoError != null) {
+				final Error error = new Error();
+				error.setCodigo(codigoError);
+				respuesta.error = error;
+			} else {
+				respuesta.out = new Tarificacion();
+			}
+			return respuesta;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package es.sanitas.servicio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.SimulacionWSStub;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+public class SimulacionWSHedgingTest {
+
+	private ExecutorService ejecutor;
+	private ServicioLento servicio;
+	private SimulacionWSHedging hedging;
+
+	@Before
+	public void setUp() {
+		ejecutor = Executors.newCachedThreadPool();
+		servicio = new ServicioLento();
+		hedging = new SimulacionWSHedging(servicio, ejecutor);
+		hedging.setMuestrasMinimas(5);
+		hedging.setProporcionMaxima(1);
+	}
+
+	@After
+	public void tearDown() {
+		ejecutor.shutdownNow();
+	}
+
+	@Test
+	public void unaLlamadaLentaSeDuplicaYGanaLaDuplicada() {
+		calentar();
+		// Durante el calentamiento alguna llamada puede superar el percentil y duplicarse
+		final long enviadas = hedging.getDuplicadasEnviadas();
+		final long ganadoras = hedging.getDuplicadasGanadoras();
+
+		servicio.lentas.set(1);
+		final long inicio = System.nanoTime();
+		assertNotNull(hedging.simular(simulacion()).out);
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1000L);
+		assertEquals(enviadas + 1, hedging.getDuplicadasEnviadas());
+		assertEquals(ganadoras + 1, hedging.getDuplicadasGanadoras());
+	}
+
+	@Test
+	public void laLlamadaQuePierdeCuentaEnLaVentana() {
+		hedging.setPercentil(1.0);
+		calentar();
+		final long retardo = hedging.getRetardoDuplicacionMs();
+
+		servicio.lentas.set(1);
+		assertNotNull(hedging.simular(simulacion()).out);
+
+		// La original cancelada llevaba al menos el retardo más la duplicada
+		assertTrue(hedging.getRetardoDuplicacionMs() > retardo);
+	}
+
+	@Test
+	public void sinFichasNoSeDuplica() {
+		hedging.setProporcionMaxima(0);
+		calentar();
+
+		servicio.lentas.set(1);
+		servicio.retardoLentaMs = 200L;
+		assertNotNull(hedging.simular(simulacion()).out);
+
+		assertEquals(0, hedging.getDuplicadasEnviadas());
+	}
+
+	@Test
+	public void sinMuestrasSuficientesNoSeDuplica() {
+		servicio.lentas.set(1);
+		servicio.retardoLentaMs = 200L;
+		assertNotNull(hedging.simular(simulacion()).out);
+
+		assertEquals(-1L, hedging.getRetardoDuplicacionMs());
+		assertEquals(0, hedging.getDuplicadasEnviadas());
+	}
+
+	private void calentar() {
+		for (int i = 0; i < 10; i++) {
+			hedging.simular(simulacion());
+		}
+	}
+
+	private Simulacion simulacion() {
+		final Simulacion simulacion = new Simulacion();
+		simulacion.setListaBeneficiarios(new es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario[0]);
+		return simulacion;
+	}
+
+	/**
+	 * Responde en 10 ms salvo las {@code lentas} siguientes llamadas. Si se
+	 * cancela falla sin responder, como el cliente real.
+	 */
+	private static class ServicioLento implements SimulacionWS {
+
+		private final SimulacionWS stub = new SimulacionWSStub();
+		private final AtomicInteger lentas = new AtomicInteger();
+		private volatile long retardoLentaMs = 5000L;
+
+		public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+			try {
+				Thread.sleep(lentas.getAndDecrement() > 0 ? retardoLentaMs : 10L);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Llamada cancelada");
+			}
+			return stub.simular(in);
+		}
+	}
+}
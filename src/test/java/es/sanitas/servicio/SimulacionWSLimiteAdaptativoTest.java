@@ -0,0 +1,188 @@
+package es.sanitas.servicio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+public class SimulacionWSLimiteAdaptativoTest {
+
+	private ServicioControlado servicio;
+	/** Cada hilo tiene su reloj para que las llamadas concurrentes no se mezclen. */
+	private final ThreadLocal<long[]> ahora = ThreadLocal.withInitial(() -> new long[1]);
+	private SimulacionWSLimiteAdaptativo limitador;
+
+	@Before
+	public void setUp() {
+		servicio = new ServicioControlado();
+		limitador = new SimulacionWSLimiteAdaptativo(servicio) {
+			@Override
+			long ahoraNanos() {
+				return ahora.get()[0];
+			}
+		};
+		limitador.setLimiteInicial(2);
+		limitador.setMilisegundosEspera(10);
+	}
+
+	@Test
+	public void elLimiteCreceSiSeUsaConElServicioSano() throws Exception {
+		servicio.milisegundos = 10;
+		llamar(100);
+		// Con llamadas de una en una el límite no se usa
+		assertEquals(2, limitador.getLimite());
+
+		final ExecutorService ejecutor = Executors.newCachedThreadPool();
+		try {
+			for (int i = 0; i < 20; i++) {
+				llamarALaVez(ejecutor, limitador.getLimite());
+			}
+		} finally {
+			ejecutor.shutdownNow();
+		}
+
+		assertTrue(limitador.getLimite() > 4);
+		assertEquals(10L, limitador.getLatenciaReferenciaMs());
+		assertEquals(0L, limitador.getReducciones());
+	}
+
+	@Test
+	public void elLimiteSeReduceConLlamadasLentasOErrores() {
+		limitador.setLimiteInicial(10);
+		servicio.milisegundos = 10;
+		llamar(10);
+		final int limite = limitador.getLimite();
+
+		servicio.milisegundos = 100;
+		llamar(1);
+		assertEquals(1L, limitador.getReducciones());
+		assertTrue(limitador.getLimite() < limite);
+
+		// Dentro de la misma latencia de referencia no se vuelve a reducir
+		servicio.milisegundos = 1;
+		servicio.fallar = true;
+		try {
+			llamar(1);
+			fail();
+		} catch (final IllegalStateException e) {
+			assertEquals(1L, limitador.getReducciones());
+		}
+
+		servicio.milisegundos = 50;
+		try {
+			llamar(1);
+			fail();
+		} catch (final IllegalStateException e) {
+			assertEquals(2L, limitador.getReducciones());
+		}
+	}
+
+	@Test
+	public void unServicioMasLentoDeFormaPermanenteSeAsume() {
+		servicio.milisegundos = 10;
+		llamar(50);
+
+		servicio.milisegundos = 40;
+		llamar(100);
+		final long reducciones = limitador.getReducciones();
+		llamar(50);
+
+		assertEquals(reducciones, limitador.getReducciones());
+	}
+
+	@Test
+	public void sinHuecoSeRechazaTrasLaEspera() throws Exception {
+		limitador.setLimiteInicial(1);
+		servicio.bloqueo = new CountDownLatch(1);
+
+		final Thread ocupada = new Thread(() -> limitador.simular(new Simulacion()));
+		ocupada.start();
+		servicio.iniciada.await(5, TimeUnit.SECONDS);
+
+		try {
+			limitador.simular(new Simulacion());
+			fail();
+		} catch (final ExcepcionServicioNoDisponible e) {
+			assertEquals(1L, limitador.getRechazadas());
+		}
+
+		servicio.bloqueo.countDown();
+		ocupada.join(5000);
+		assertEquals(0, limitador.getEnCurso());
+	}
+
+	private void llamarALaVez(final ExecutorService ejecutor, final int llamadas) throws Exception {
+		final CyclicBarrier barrera = new CyclicBarrier(llamadas);
+		servicio.barrera = barrera;
+
+		final List<Callable<Object>> tareas = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < llamadas; i++) {
+			tareas.add(() -> limitador.simular(new Simulacion()));
+		}
+		for (final Future<Object> tarea : ejecutor.invokeAll(tareas, 5, TimeUnit.SECONDS)) {
+			tarea.get();
+		}
+		servicio.barrera = null;
+	}
+
+	private void llamar(final int veces) {
+		for (int i = 0; i < veces; i++) {
+			limitador.simular(new Simulacion());
+		}
+	}
+
+	/**
+	 * Responde sin tarificación haciendo avanzar el reloj del hilo; puede fallar,
+	 * esperar a las demás llamadas de una ronda o quedarse bloqueado.
+	 */
+	private class ServicioControlado implements SimulacionWS {
+
+		private final CountDownLatch iniciada = new CountDownLatch(1);
+		private volatile boolean fallar;
+		private volatile long milisegundos;
+		private volatile CountDownLatch bloqueo;
+		private volatile CyclicBarrier barrera;
+
+		public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+			iniciada.countDown();
+			if (bloqueo != null) {
+				try {
+					bloqueo.await(5, TimeUnit.SECONDS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			final CyclicBarrier esperar = barrera;
+			if (esperar != null) {
+				try {
+					esperar.await(5, TimeUnit.SECONDS);
+				} catch (final Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			ahora.get()[0] += TimeUnit.MILLISECONDS.toNanos(milisegundos);
+			if (fallar) {
+				throw new IllegalStateException("Servicio no disponible");
+			}
+			return null;
+		}
+	}
+}
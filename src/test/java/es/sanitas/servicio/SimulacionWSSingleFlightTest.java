@@ -0,0 +1,149 @@
+package es.sanitas.servicio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.sanitas.SimulacionWSStub;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Beneficiario;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Error;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.InfoContratacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Producto;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Simulacion;
+import es.sanitas.seg.simulacionpoliza.services.api.simulacion.vo.Tarificacion;
+import es.sanitas.soporte.RESTResponse;
+import es.sanitas.soporte.SimulacionWS;
+
+public class SimulacionWSSingleFlightTest {
+
+	private static final int LLAMANTES = 8;
+
+	private ExecutorService ejecutor;
+	private ServicioBloqueado servicio;
+	private SimulacionWSSingleFlight singleFlight;
+
+	@Before
+	public void setUp() {
+		ejecutor = Executors.newFixedThreadPool(LLAMANTES);
+		servicio = new ServicioBloqueado();
+		singleFlight = new SimulacionWSSingleFlight(servicio);
+	}
+
+	@After
+	public void tearDown() {
+		ejecutor.shutdownNow();
+	}
+
+	@Test
+	public void lasPeticionesIdenticasCompartenUnaLlamada() throws Exception {
+		final List<Future<RESTResponse<Tarificacion, Error>>> futuros = lanzar();
+		servicio.liberar.countDown();
+
+		final Set<Tarificacion> tarificaciones = Collections
+				.newSetFromMap(new IdentityHashMap<Tarificacion, Boolean>());
+		for (final Future<RESTResponse<Tarificacion, Error>> futuro : futuros) {
+			final RESTResponse<Tarificacion, Error> respuesta = futuro.get(5, TimeUnit.SECONDS);
+			assertNotNull(respuesta.out);
+			tarificaciones.add(respuesta.out);
+		}
+
+		assertEquals(1, servicio.llamadas.get());
+		assertEquals(1, singleFlight.getLlamadas());
+		assertEquals(LLAMANTES - 1, singleFlight.getAgrupadas());
+		// Cada llamante tiene su propia copia
+		assertEquals(LLAMANTES, tarificaciones.size());
+	}
+
+	@Test
+	public void elErrorLlegaATodos() throws Exception {
+		servicio.fallar = true;
+		final List<Future<RESTResponse<Tarificacion, Error>>> futuros = lanzar();
+		servicio.liberar.countDown();
+
+		for (final Future<RESTResponse<Tarificacion, Error>> futuro : futuros) {
+			try {
+				futuro.get(5, TimeUnit.SECONDS);
+			} catch (final ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+		assertEquals(1, servicio.llamadas.get());
+
+		// Terminada la llamada, la siguiente petición vuelve a llamar al servicio
+		servicio.fallar = false;
+		assertNotSame(null, singleFlight.simular(simulacion()).out);
+		assertEquals(2, servicio.llamadas.get());
+	}
+
+	private List<Future<RESTResponse<Tarificacion, Error>>> lanzar() throws InterruptedException {
+		final List<Future<RESTResponse<Tarificacion, Error>>> futuros = new ArrayList<Future<RESTResponse<Tarificacion, Error>>>();
+		for (int i = 0; i < LLAMANTES; i++) {
+			futuros.add(ejecutor.submit(() -> singleFlight.simular(simulacion())));
+		}
+
+		// Espera a que todos estén dentro: uno en el servicio y el resto agrupados
+		final long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (singleFlight.getAgrupadas() < LLAMANTES - 1 && System.nanoTime() < limite) {
+			Thread.sleep(5);
+		}
+		return futuros;
+	}
+
+	private static Simulacion simulacion() {
+		final InfoContratacion info = new InfoContratacion();
+		info.setFechaEfecto("01/02/2018");
+		info.setFrecuenciaPago(1);
+
+		final Producto producto = new Producto();
+		producto.setIdProducto(1);
+
+		final Beneficiario beneficiario = new Beneficiario();
+		beneficiario.setFechaNacimiento("01/03/1980");
+		beneficiario.setSexo(1);
+		beneficiario.setListaProductos(new Producto[] { producto });
+
+		final Simulacion simulacion = new Simulacion();
+		simulacion.setInfoContratacion(info);
+		simulacion.setListaBeneficiarios(new Beneficiario[] { beneficiario });
+		return simulacion;
+	}
+
+	private static class ServicioBloqueado implements SimulacionWS {
+
+		private final SimulacionWS stub = new SimulacionWSStub();
+		private final AtomicInteger llamadas = new AtomicInteger();
+		private final CountDownLatch liberar = new CountDownLatch(1);
+		private volatile boolean fallar;
+
+		public RESTResponse<Tarificacion, Error> simular(final Simulacion in) {
+			llamadas.incrementAndGet();
+			try {
+				liberar.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (fallar) {
+				throw new IllegalStateException("Servicio no disponible");
+			}
+			return stub.simular(in);
+		}
+	}
+}
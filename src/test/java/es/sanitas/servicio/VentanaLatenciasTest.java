@@ -0,0 +1,38 @@
+package es.sanitas.servicio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class VentanaLatenciasTest {
+
+	@Test
+	public void losPercentilesCoincidenConOrdenarLaVentana() {
+		final VentanaLatencias ventana = new VentanaLatencias(50);
+		final long[] recientes = new long[50];
+		final SplittableRandom aleatorio = new SplittableRandom(42L);
+
+		for (int i = 0; i < 500; i++) {
+			// Valores repetidos para cubrir los empates al quitar muestras
+			final long nanos = aleatorio.nextInt(40);
+			ventana.registrar(nanos);
+			recientes[i % recientes.length] = nanos;
+
+			final long[] ordenadas = Arrays.copyOf(recientes, Math.min(i + 1, recientes.length));
+			Arrays.sort(ordenadas);
+			for (final double percentil : new double[] { 0.0, 0.5, 0.95, 1.0 }) {
+				final int indice = Math.max(0, (int) Math.ceil(percentil * ordenadas.length) - 1);
+				assertEquals(ordenadas[indice], ventana.percentil(percentil));
+			}
+		}
+		assertEquals(50, ventana.getTamano());
+	}
+
+	@Test
+	public void unaVentanaVaciaNoTienePercentil() {
+		assertEquals(-1L, new VentanaLatencias(10).percentil(0.5));
+	}
+}